@@ -0,0 +1,45 @@
+package application.controllers;
+
+import core.StatisticsStore;
+import core.Sudoku;
+import javafx.fxml.FXML;
+import javafx.scene.control.Label;
+
+/**
+ * Controller for the ending scene.
+ * Shows the solve time of the finished game and how it compares
+ * with earlier games of the same size and difficulty.
+ */
+public class EndingController {
+
+    @FXML private Label timeLabel;		// time, mistakes and hints of this game
+    @FXML private Label recordLabel;	// best and median time of earlier games
+
+    /**
+     * Fills in the labels from the finished game and the statistics store.
+     * Called automatically by JavaFX after FXML loading.
+     */
+    public void initialize() {
+
+        Sudoku game = SceneContoller.GameSettings.sudoku;
+        StatisticsStore statistics = SceneContoller.GameSettings.statistics;
+
+        if (game == null) {
+            return;
+        }
+
+        timeLabel.setText("Time: " + StatisticsStore.formatTime(game.getElapsedTime() / 1_000_000)
+                + "   Mistakes: " + game.getMistakes() + "   Hints: " + game.getHints());
+
+        if (statistics != null) {
+            int size = game.getBoard().getSize();
+            int difficulty = game.getBoard().getDifficultyLevel();
+
+            recordLabel.setText("Best: " + StatisticsStore.formatTime(statistics.getBestTime(size, difficulty))
+                    + "   Median: " + StatisticsStore.formatTime(statistics.getSolveTimePercentile(size, difficulty, 50))
+                    + "   Games: " + statistics.getGames(size, difficulty));
+        }
+
+    }
+
+}
@@ -18,10 +18,14 @@ public class ExitDialogController {
 
     /**
      * Handles the "Yes" button click.
-     * Closes both the main application window and the dialog window.
+     * Saves the game in progress, then closes both the main application window and the dialog window.
      */
     @FXML
     private void handleYes() {
+        if (SceneContoller.GameSettings.journal != null) {
+            SceneContoller.GameSettings.journal.close();	// writes the pending moves; the game resumes on next start
+        }
+
         Stage dialogStage = (Stage) yesButton.getScene().getWindow();
         Stage mainStage = (Stage) dialogStage.getOwner();
         mainStage.close();   // close the main application window
@@ -1,13 +1,26 @@
 package application.controllers;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import core.BoardListener;
+import core.Cages;
+import core.ConflictTracker;
+import core.Journal;
+import core.Metrics;
+import core.MoveEvent;
+import core.Notes;
+import core.StatisticsStore;
 import core.Sudoku;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
 import javafx.scene.control.Button;
+import javafx.scene.control.Label;
 import javafx.scene.layout.GridPane;
 import javafx.stage.Stage;
 
@@ -22,11 +35,24 @@ public class GameController {
     @FXML private GridPane gridPane; 
     @FXML private Button btn1, btn2, btn3, btn4, btn5, btn6, btn7, btn8, btn9;
     @FXML private Button btnClear;
+    @FXML private Button btnNotes;
+    @FXML private Button btnHint;
 
     // Internal representation of the grid buttons
     private Button[][] cells;
     private Button selectedCell;		// currently selected cell
     private Sudoku game;				// current Sudoku game instance
+    private final List<Button> conflictCells = new ArrayList<>();	// cells currently marked as conflicting
+    private boolean notesMode;			// number buttons edit notes instead of values
+    private int highlightedRow = -1;	// row and column of the highlighted selection, -1 if none
+    private int highlightedCol = -1;
+    private Button rejectedCell;		// cell shown in red after an invalid move
+    private LatencyMonitor latency;		// input-to-frame latency, F3 shows it
+
+    private static final String CONFLICT_STYLE = " -fx-text-fill: red;";
+    private static final String CAGE_STYLE = "-fx-border-color: #555555; -fx-border-style: dashed; -fx-border-insets: 2px; -fx-font-size: 9px; -fx-padding: 1px 0px 0px 4px;";
+    private static final String NOTES_STYLE = " -fx-font-family: monospace; -fx-font-size: 10px; -fx-font-weight: normal;";
+    private static final double CREATED_CELL_SIZE = 36;		// cells created by createCells(), three lines of notes high
 
     /**
      * Initializes the game UI and board.
@@ -34,13 +60,23 @@ public class GameController {
      */
     public void initialize() {
     	
-        // Get Sudoku game instance from settings
+        latency = new LatencyMonitor(gridPane);
+        latency.inputReceived(Metrics.INPUT_START);		// until the first frame of the scene
+
+        // Get Sudoku game instance from settings, generated off the FX thread or restored from the autosave
     	 	game = SceneContoller.GameSettings.sudoku;
 
-        // Initialize the board with values and hidden cells
-        game.getBoard().initializeBoard();     
+        if (SceneContoller.GameSettings.journal != null) {
+            SceneContoller.GameSettings.journal.close();
+        }
+
+        SceneContoller.GameSettings.journal = Journal.start(Journal.DEFAULT_FILE, game.getBoard());
         cells = new Button[game.getBoard().getSize()][game.getBoard().getSize()];
 
+        if (gridPane.getChildren().isEmpty()) {
+            createCells();
+        }
+
         // Loop through all nodes in the GridPane and assign buttons
         for (Node node : gridPane.getChildren()) {
         	
@@ -59,6 +95,7 @@ public class GameController {
                 final int r = row, c = col;
                 
                 btn.setOnAction(e -> {
+                    latency.inputReceived(Metrics.INPUT_SELECT);
                     selectedCell = btn;
 
                     // find the row/col of this button
@@ -72,11 +109,18 @@ public class GameController {
 
                 // Pre-fill values from Board
                 int val = game.getBoard().getValue(r, c);
-                if (val != 0) {
+                if (game.getBoard().isCellFixed(r, c)) {
                     btn.setText(String.valueOf(val));
                     btn.setUserData("fixed");
                     btn.setStyle("-fx-background-color: white; -fx-font-size: 16px; -fx-font-weight: bold;");
                 } 
+
+                else if (val != 0) {
+                    // Value entered before the game was resumed
+                    btn.setText(String.valueOf(val));
+                    btn.setUserData("editable");
+                    btn.setStyle("-fx-background-color: #F0FCF8; -fx-font-size: 16px;");
+                }
                 
                 else {
                     btn.setText(" ");
@@ -89,7 +133,94 @@ public class GameController {
             
         }
 
+        showCages();
+
+        // Only the changed cell and the notes of its peers are redrawn after a move
+        game.getBoard().addListener(new BoardListener() {
+
+            @Override
+            public void cellChanged(int row, int col, int oldValue, int newValue) {
+                showValue(row, col);
+
+                if (newValue != 0) {
+                    // The board removed the value from the peers' notes
+                    int size = game.getBoard().getSize();
+                    for (int peer : game.getBoard().getLayout().getPeers(row * size + col)) {
+                        showNotes(peer / size, peer % size);
+                    }
+                }
+            }
+
+            @Override
+            public void changesApplied() {
+                markConflicts();
+            }
+
+        });
+
         setupNumberButtons();
+        markConflicts();
+    }
+
+    /**
+     * Creates the cell buttons of a scene whose grid is empty in the FXML, as on Samurai
+     * boards: one button per cell of the layout and none on the void cells between the
+     * grids, with a wider gap before every box.
+     */
+    private void createCells() {
+
+        int size = game.getBoard().getSize();
+        int boxRows = game.getBoard().getLayout().getBoxRows();
+        int boxColumns = game.getBoard().getLayout().getBoxColumns();
+
+        for (int row = 0 ; row < size ; row++) {
+            for (int col = 0 ; col < size ; col++) {
+
+                if (!game.getBoard().isCell(row, col)) {
+                    continue;
+                }
+
+                Button btn = new Button();
+                btn.setPrefSize(CREATED_CELL_SIZE, CREATED_CELL_SIZE);
+                btn.setMinSize(CREATED_CELL_SIZE, CREATED_CELL_SIZE);
+                btn.setPadding(Insets.EMPTY);		// room for the notes
+                GridPane.setMargin(btn, new Insets(row > 0 && row % boxRows == 0 ? 2 : 0, 0, 0, col > 0 && col % boxColumns == 0 ? 2 : 0));
+                gridPane.add(btn, col, row);
+            }
+        }
+    }
+
+    /**
+     * Draws the cages of a Killer board on top of the cells: every cell gets a label
+     * that ignores the mouse, with a dashed line on the sides where its cage ends and
+     * the sum of the cage in the cage's first cell.
+     */
+    private void showCages() {
+
+        Cages cages = game.getBoard().getCages();
+
+        if (cages == null) {
+            return;
+        }
+
+        int size = game.getBoard().getSize();
+
+        for (int k = 0 ; k < size * size ; k++) {
+
+            int row = k / size, col = k % size, cage = cages.getCage(k);
+            boolean top = row == 0 || cages.getCage(k - size) != cage;
+            boolean right = col == size - 1 || cages.getCage(k + 1) != cage;
+            boolean bottom = row == size - 1 || cages.getCage(k + size) != cage;
+            boolean left = col == 0 || cages.getCage(k - 1) != cage;
+
+            Label label = new Label(cages.getFirstCell(cage) == k ? String.valueOf(cages.getSum(cage)) : "");
+            label.setMouseTransparent(true);
+            label.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
+            label.setAlignment(Pos.TOP_LEFT);
+            label.setStyle(CAGE_STYLE + " -fx-border-width: " + (top ? 1 : 0) + "px " + (right ? 1 : 0) + "px "
+                    + (bottom ? 1 : 0) + "px " + (left ? 1 : 0) + "px;");
+            gridPane.add(label, col, row);
+        }
     }
 
     /**
@@ -102,8 +233,10 @@ public class GameController {
     	    Button[] allButtons = {btn1, btn2, btn3, btn4, btn5, btn6, btn7, btn8, btn9};
     	    btnClear.setVisible(true);
     	    btnClear.setOnAction(e -> handleClearCell());
+    	    btnNotes.setOnAction(e -> toggleNotesMode());
+    	    btnHint.setOnAction(e -> handleHint());
 
-    	    for (int i = 0 ; i < game.getBoard().getSize() ; i++) {
+    	    for (int i = 0 ; i < game.getBoard().getLayout().getValueCount() ; i++) {
     	        int value = i + 1;
 
     	        if (allButtons[i] != null) {  // safeguard
@@ -113,7 +246,7 @@ public class GameController {
     	    }
 
         // Hide extra buttons if board size < 9
-    	    for (int i = game.getBoard().getSize() ; i < allButtons.length ; i++) {
+    	    for (int i = game.getBoard().getLayout().getValueCount() ; i < allButtons.length ; i++) {
     	        if (allButtons[i] != null) {
     	            allButtons[i].setVisible(false);
     	        }
@@ -128,7 +261,9 @@ public class GameController {
      * @param value number to insert
      */
     private void handleNumberSelection(int value) {
-    	
+
+        latency.inputReceived(Metrics.INPUT_NUMBER);
+
         if (selectedCell == null) {
             return; // nothing selected
         }
@@ -142,44 +277,128 @@ public class GameController {
         int row = (rowIndex == null) ? 0 : rowIndex;
         int col = (colIndex == null) ? 0 : colIndex;
 
-        if (game.getBoard().isValidMove(row, col, value)) {
+        if (notesMode) {
+            if (game.getBoard().getValue(row, col) == 0) {
+                game.getBoard().getNotes().toggle(row, col, value);
+                showNotes(row, col);
+            }
+            return;
+        }
+
+        if (game.getBoard().getValue(row, col) == value) {
+            return; // the cell already holds this value, nothing to check or count
+        }
+
+        MoveEvent event = new MoveEvent();
+        event.begin();
+
+        boolean legal = game.getBoard().isValidMove(row, col, value);
+        boolean valid = legal && game.getBoard().isCorrect(row, col, value);		// legal values leading to a dead end are mistakes too
+        Metrics.recordMove(valid);
+        event.end("gui", game.getBoard(), row, col, value, valid ? "accepted" : legal ? "incorrect" : "rejected");
+
+        if (valid) {
         	
-            game.getBoard().setValue(row, col, value);
-            selectedCell.setText(String.valueOf(value));
             selectedCell.setStyle("-fx-background-color: #F0FCF8; -fx-font-size: 16px;");		// clear previous red highlight
+            rejectedCell = null;
+            game.getBoard().setValue(row, col, value);		// the board listener redraws the cells
 
             if (game.finished()) {
-            	
-                try {
-                	
-                    FXMLLoader loader = new FXMLLoader(getClass().getResource("/application/fxml/EndingScene.fxml"));
-                    Parent root = loader.load();
-                    Stage stage = (Stage) gridPane.getScene().getWindow();
-                    stage.setScene(new Scene(root));
-                    stage.setOnCloseRequest(null); // remove the confirmation handler
-                    stage.centerOnScreen();
-                    stage.show();
-                    
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+                showEndingScene();
             }
             
         } 
         
         else {
             // Highlight invalid move
+            game.recordMistake();
             selectedCell.setStyle("-fx-background-color: red;");
+            rejectedCell = selectedCell;
+            showNotes(row, col);
         }
         
     }
 
+    /**
+     * Reveals the value of the selected cell and counts it as a hint.
+     * Does nothing if the cell is fixed, not empty or nothing is selected.
+     */
+    private void handleHint() {
+
+        latency.inputReceived(Metrics.INPUT_HINT);
+
+        if (selectedCell == null || "fixed".equals(selectedCell.getUserData())) {
+            return;
+        }
+
+        Integer rowIndex = GridPane.getRowIndex(selectedCell);
+        Integer colIndex = GridPane.getColumnIndex(selectedCell);
+        int row = (rowIndex == null) ? 0 : rowIndex;
+        int col = (colIndex == null) ? 0 : colIndex;
+
+        if (game.getBoard().getValue(row, col) != 0) {
+            return;
+        }
+
+        if (!game.getBoard().hasSolution()) {
+            return; // solution not known
+        }
+
+        selectedCell.setUserData("fixed");		// revealed cells become clues
+        selectedCell.setStyle("-fx-background-color: white; -fx-font-size: 16px; -fx-font-weight: bold;");
+        rejectedCell = null;
+
+        MoveEvent event = new MoveEvent();
+        event.begin();
+        int value = game.revealCell(row, col);	// the board listener redraws the cells
+        event.end("gui", game.getBoard(), row, col, value, "hint");
+
+        if (game.finished()) {
+            showEndingScene();
+        }
+
+    }
+
+    /**
+     * Records the solved game and switches to the ending scene.
+     */
+    private void showEndingScene() {
+
+        SceneContoller.GameSettings.journal.discard();
+        Metrics.recordCompletion(game.getElapsedTime());
+
+        try {
+            StatisticsStore statistics = StatisticsStore.load(StatisticsStore.DEFAULT_FILE);
+            game.recordStatistics(statistics);
+            statistics.save(StatisticsStore.DEFAULT_FILE);
+            SceneContoller.GameSettings.statistics = statistics;
+        } catch (IOException e) {
+            e.printStackTrace();	// the ending scene still shows this game
+        }
+
+        try {
+        	
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/application/fxml/EndingScene.fxml"));
+            Parent root = loader.load();
+            Stage stage = (Stage) gridPane.getScene().getWindow();
+            stage.setScene(new Scene(root));
+            stage.setOnCloseRequest(null); // remove the confirmation handler
+            stage.centerOnScreen();
+            stage.show();
+            
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Clears the value of the selected cell.
      * Does nothing if the cell is fixed or nothing is selected.
      */
     private void handleClearCell() {
-    	
+
+        latency.inputReceived(Metrics.INPUT_CLEAR);
+
         if (selectedCell == null) {
             return; // nothing selected
         }
@@ -193,66 +412,179 @@ public class GameController {
         int row = (rowIndex == null) ? 0 : rowIndex;
         int col = (colIndex == null) ? 0 : colIndex;
 
-        game.getBoard().setValue(row, col, 0); // reset value in board
-        selectedCell.setText(" ");             // clear button label
+        MoveEvent event = new MoveEvent();
+        event.begin();
+
+        if (game.getBoard().getValue(row, col) == 0) {
+            game.getBoard().getNotes().clear(row, col);	// an empty cell clears its notes
+        }
+
         selectedCell.setStyle("");             // reset styling
+        rejectedCell = null;
+        game.getBoard().setValue(row, col, 0); // the board listener redraws the cell and the conflicts
+
+        event.end("gui", game.getBoard(), row, col, 0, "accepted");
         
     }
 
     /**
      * Highlights the selected row, column, and cell.
-     * Resets all other cells to default styling.
+     * Only the previously highlighted row and column are reset, so a selection
+     * restyles a few cells instead of the whole board.
      * @param row row index of selected cell
      * @param col column index of selected cell
      */
     private void highlightRowAndColumn(int row, int col) {
-    	
-        // Reset all styles first
-        for (int r = 0 ; r < game.getBoard().getSize() ; r++) {
-            for (int c = 0 ; c < game.getBoard().getSize() ; c++) {
-                if (!cells[r][c].isDisabled()) {
-	                	 if ("fixed".equals(cells[r][c].getUserData())) {
-	                     // Fixed = white
-	                     cells[r][c].setStyle("-fx-background-color: white; -fx-font-size: 16px; -fx-font-weight: bold;");
-	                 } 
-	                	 
-	                	 else {
-	                     // Editable = light green
-	                     cells[r][c].setStyle("-fx-background-color: #F0FCF8; -fx-font-size: 16px;");
-	                 }
-                }
-            }  
-        }
 
-        // Highlight row
-        for (int c = 0 ; c < game.getBoard().getSize() ; c++) {
-        		if ("fixed".equals(cells[row][c].getUserData())) {
-                cells[row][c].setStyle("-fx-background-color: #C8E6DB; -fx-font-size: 16px; -fx-font-weight: bold;");
-            } 
-           	 
-        		else if (!cells[row][c].isDisabled()) {
-                cells[row][c].setStyle("-fx-background-color: #C8E6DB; -fx-font-size: 16px;");
+        int size = game.getBoard().getSize();
+
+        // Reset the previous selection
+        if (highlightedRow >= 0) {
+            for (int i = 0 ; i < size ; i++) {
+                styleCell(highlightedRow, i, null);
+                styleCell(i, highlightedCol, null);
             }
         }
 
-        // Highlight column
-        for (int r = 0 ; r < game.getBoard().getSize() ; r++) {
-        		if ("fixed".equals(cells[r][col].getUserData())) {
-                cells[r][col].setStyle("-fx-background-color: #C8E6DB; -fx-font-size: 16px; -fx-font-weight: bold;");
-            } 
-        		
-        		else if (!cells[r][col].isDisabled()) {
-                cells[r][col].setStyle("-fx-background-color: #C8E6DB; -fx-font-size: 16px;");
-            }
+        if (rejectedCell != null) {
+            Integer rIndex = GridPane.getRowIndex(rejectedCell);
+            Integer cIndex = GridPane.getColumnIndex(rejectedCell);
+            styleCell((rIndex == null) ? 0 : rIndex, (cIndex == null) ? 0 : cIndex, null);
+            rejectedCell = null;
+        }
+
+        // Highlight row and column
+        for (int i = 0 ; i < size ; i++) {
+            styleCell(row, i, "#C8E6DB");
+            styleCell(i, col, "#C8E6DB");
         }
 
         // Highlight the selected cell stronger
-        if ("fixed".equals(cells[row][col].getUserData())) {
-            cells[row][col].setStyle("-fx-background-color: #A7D1C2; -fx-font-size: 16px; -fx-font-weight: bold;");
-        } 
-        
+        styleCell(row, col, "#A7D1C2");
+
+        highlightedRow = row;
+        highlightedCol = col;
+    }
+
+    /**
+     * Sets the style of a cell from its background and what it shows: bold for fixed
+     * cells, the notes font for notes and red text for conflicts.
+     * @param row row index
+     * @param col column index
+     * @param background background color, or null for the default of the cell
+     */
+    private void styleCell(int row, int col, String background) {
+
+        Button btn = cells[row][col];
+
+        if (btn == null || btn.isDisabled()) {
+            return;		// no cell there on Samurai boards
+        }
+
+        boolean fixed = "fixed".equals(btn.getUserData());
+        String style = "-fx-background-color: " + (background != null ? background : fixed ? "white" : "#F0FCF8") + "; -fx-font-size: 16px;";
+
+        if (fixed) {
+            style += " -fx-font-weight: bold;";
+        }
+
+        if (game.getBoard().getValue(row, col) == 0 && game.getBoard().getNotes().getMask(row, col) != 0) {
+            style += NOTES_STYLE;
+        }
+
+        if (conflictCells.contains(btn)) {
+            style += CONFLICT_STYLE;
+        }
+
+        btn.setStyle(style);
+    }
+
+    /**
+     * Switches the number buttons between entering values and editing notes.
+     */
+    private void toggleNotesMode() {
+        notesMode = !notesMode;
+        btnNotes.setStyle(notesMode ? "-fx-background-color: #6290D1; -fx-text-fill: white;" : "");
+    }
+
+    /**
+     * Shows the value of a cell, or its notes if it is empty.
+     * @param row row index
+     * @param col column index
+     */
+    private void showValue(int row, int col) {
+
+        int value = game.getBoard().getValue(row, col);
+
+        if (value == 0) {
+            showNotes(row, col);
+        }
+
+        else {
+            Button btn = cells[row][col];
+            btn.setText(String.valueOf(value));
+            btn.setStyle(btn.getStyle().replace(NOTES_STYLE, ""));
+        }
+
+    }
+
+    /**
+     * Shows the notes of an empty cell as the button's text, one line per row of candidates,
+     * in a smaller font. Cells holding a value are left as they are.
+     * @param row row index
+     * @param col column index
+     */
+    private void showNotes(int row, int col) {
+
+        if (game.getBoard().getValue(row, col) != 0) {
+            return;
+        }
+
+        Notes notes = game.getBoard().getNotes();
+        Button btn = cells[row][col];
+        String style = btn.getStyle().replace(NOTES_STYLE, "");
+
+        if (notes.getMask(row, col) == 0) {
+            btn.setText(" ");
+            btn.setStyle(style);
+        }
+
         else {
-            cells[row][col].setStyle("-fx-background-color: #A7D1C2; -fx-font-size: 16px;");
+            btn.setText(notes.format(row, col));
+            btn.setStyle(style + NOTES_STYLE);
+        }
+
+    }
+
+    /**
+     * Shows every cell whose value repeats in its row, column or box in red text,
+     * and removes the mark from cells that are no longer in conflict.
+     * The board keeps its conflicts up to date, so this only touches marked cells.
+     */
+    private void markConflicts() {
+
+        // Unmark the previous conflicts
+        for (Button btn : conflictCells) {
+            btn.setStyle(btn.getStyle().replace(CONFLICT_STYLE, ""));
+        }
+
+        conflictCells.clear();
+
+        ConflictTracker conflicts = game.getBoard().getConflictTracker();
+
+        if (!conflicts.hasConflicts()) {
+            return;
+        }
+
+        for (ConflictTracker.Conflict conflict : conflicts.getConflicts()) {
+            for (int[] cell : conflict.getCells()) {
+                Button btn = cells[cell[0]][cell[1]];
+
+                if (!conflictCells.contains(btn)) {
+                    btn.setStyle(btn.getStyle() + CONFLICT_STYLE);
+                    conflictCells.add(btn);
+                }
+            }
         }
 
     }
@@ -0,0 +1,142 @@
+package application.controllers;
+
+import core.Histogram;
+import core.Metrics;
+import javafx.application.Platform;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.layout.StackPane;
+
+/**
+ * Measures how long the game scene takes to show the result of an input.
+ *
+ * Input handlers call {@link #inputReceived(int)} before doing anything else. The time
+ * until the end of the next layout pulse of the scene, when the CSS and layout of the
+ * frame showing the result are done and the frame is handed to the renderer, is recorded
+ * in {@link Metrics} as the latency of that input. The CSS and layout time of every
+ * pulse is recorded too, so slow frames can be told apart from slow handlers.
+ *
+ * Pressing F3 shows the percentiles on top of the game scene.
+ * Everything runs on the JavaFX application thread.
+ */
+class LatencyMonitor {
+
+    private static final long OVERLAY_REFRESH_NANOS = 250_000_000L;
+
+    private final long[] pending = new long[Metrics.INPUT_KINDS];	// input times waiting for a pulse, 0 if none
+    private long pulseStart;			// start of the current pulse, 0 outside pulses
+    private Label overlay;				// created on first use
+    private long overlayUpdated;
+
+    /**
+     * Starts monitoring the scene of a node, as soon as the node is part of one.
+     * @param node any node of the game scene
+     */
+    LatencyMonitor(Node node) {
+
+        if (node.getScene() != null) {
+            attach(node.getScene());
+        }
+
+        node.sceneProperty().addListener((observable, oldScene, newScene) -> {
+            if (newScene != null) {
+                attach(newScene);
+            }
+        });
+    }
+
+    /**
+     * Timestamps an input. An input waiting for the same pulse as an earlier one of
+     * its kind is counted with it.
+     * @param input Metrics.INPUT_START to INPUT_HINT
+     */
+    void inputReceived(int input) {
+
+        if (pending[input] == 0) {
+            pending[input] = System.nanoTime();
+        }
+
+        Platform.requestNextPulse();	// inputs that change nothing on screen still get their pulse
+    }
+
+    private void attach(Scene scene) {
+
+        scene.addPreLayoutPulseListener(() -> pulseStart = System.nanoTime());
+        scene.addPostLayoutPulseListener(this::pulseDone);
+        scene.addEventFilter(KeyEvent.KEY_PRESSED, e -> {
+            if (e.getCode() == KeyCode.F3) {
+                toggleOverlay(scene);
+            }
+        });
+    }
+
+    /**
+     * Records the pulse and the latency of the inputs waiting for it.
+     */
+    private void pulseDone() {
+
+        long now = System.nanoTime();
+
+        if (pulseStart != 0) {
+            Metrics.recordPulse(now - pulseStart);
+            pulseStart = 0;
+        }
+
+        for (int input = 0 ; input < pending.length ; input++) {
+            if (pending[input] != 0) {
+                Metrics.recordInputLatency(input, now - pending[input]);
+                pending[input] = 0;
+            }
+        }
+
+        // Refreshing the overlay causes a pulse itself, so limit the rate
+        if (overlay != null && overlay.isVisible() && now - overlayUpdated > OVERLAY_REFRESH_NANOS) {
+            overlay.setText(formatOverlay());
+            overlayUpdated = now;
+        }
+    }
+
+    private void toggleOverlay(Scene scene) {
+
+        if (overlay == null) {
+
+            if (!(scene.getRoot() instanceof StackPane root)) {
+                return;		// the game scenes have a StackPane root
+            }
+
+            overlay = new Label();
+            overlay.setMouseTransparent(true);
+            overlay.setStyle("-fx-font-family: monospace; -fx-font-size: 11px; -fx-background-color: rgba(255, 255, 255, 0.85); -fx-padding: 4px;");
+            overlay.setVisible(false);
+            StackPane.setAlignment(overlay, Pos.BOTTOM_LEFT);
+            root.getChildren().add(overlay);
+        }
+
+        overlay.setVisible(!overlay.isVisible());
+        overlay.setText(formatOverlay());
+    }
+
+    private static String formatOverlay() {
+
+        StringBuilder out = new StringBuilder(256);
+        out.append(String.format("%-7s %6s %8s %8s%n", "", "count", "p50 ms", "p99 ms"));
+
+        for (int input = 0 ; input < Metrics.INPUT_KINDS ; input++) {
+            appendLine(out, Metrics.getInputName(input), Metrics.getInputLatency(input));
+        }
+
+        appendLine(out, "pulse", Metrics.getPulseTime());
+
+        return out.toString().stripTrailing();
+    }
+
+    private static void appendLine(StringBuilder out, String name, Histogram histogram) {
+        out.append(String.format("%-7s %6d %8.2f %8.2f%n", name, histogram.getCount(),
+                histogram.getPercentile(50) / 1e6, histogram.getPercentile(99) / 1e6));
+    }
+
+}
@@ -1,6 +1,11 @@
 package application.controllers;
 	
 import java.io.IOException;
+import core.Board;
+import core.Journal;
+import core.Layout;
+import core.Metrics;
+import core.Sudoku;
 import javafx.application.Application;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
@@ -21,15 +26,31 @@ public class MainController extends Application {
 	
 	/**
      * Entry point for JavaFX application.
-     * Initializes and shows the main stage with the size selection scene.
+     * Initializes and shows the main stage with the size selection scene,
+     * or straight with the game scene when a saved game can be resumed.
      * @param stage the primary stage provided by JavaFX
      */
 	@Override
 	public void start(Stage stage) {
 		
+		Metrics.registerMBean();	// input latencies can be read with JConsole
+		
 		try {
 			
-			Parent root = FXMLLoader.load(getClass().getResource("/application/fxml/SizeSelectionScene.fxml"));
+			String fxml = "/application/fxml/SizeSelectionScene.fxml";
+			Board saved = Journal.resume(Journal.DEFAULT_FILE);
+			
+			// The game scenes draw classic boxes, Killer cages and Samurai grids only; other variants resume in the terminal
+			if(saved != null && ((saved.getLayout().getVariant() == Layout.VARIANT_CLASSIC || saved.getLayout().getVariant() == Layout.VARIANT_KILLER)
+					&& (saved.getSize() == Board.SIZE_EASY || saved.getSize() == Board.SIZE_STANDARD) || saved.getLayout().getVariant() == Layout.VARIANT_SAMURAI)) {
+				SceneContoller.GameSettings.size = saved.getSize();
+				SceneContoller.GameSettings.difficulty = saved.getDifficultyLevel();
+				SceneContoller.GameSettings.variant = saved.getLayout().getVariant();
+				SceneContoller.GameSettings.sudoku = new Sudoku(saved);
+				fxml = "/application/fxml/GameScene" + saved.getSize() + ".fxml";
+			}
+			
+			Parent root = FXMLLoader.load(getClass().getResource(fxml));
 			
 			Scene scene = new Scene(root);
 			scene.getStylesheets().add(getClass().getResource("/application/css/application.css").toExternalForm());
@@ -1,12 +1,21 @@
 package application.controllers;
 
+import core.Board;
+import core.Journal;
+import core.Layout;
+import core.PortfolioGenerator;
+import core.StatisticsStore;
 import core.Sudoku;
 import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.CheckBox;
 import javafx.stage.Stage;
 import javafx.scene.Node;
 
@@ -21,9 +30,24 @@ public class SceneContoller {
      * Nested class to store game settings that persist across scenes.
      */
 	public class GameSettings {
-	    public static int size;			// Sudoku board size (4 or 9)
+	    public static int size;			// Sudoku board size (4, 9 or Layout.SAMURAI_SIZE)
 	    public static int difficulty;	// Difficulty level (1=Easy, 2=Medium, 3=Hard)
-	    public static Sudoku sudoku;		// Current Sudoku game instance
+	    public static int variant;		// Layout.VARIANT_CLASSIC, VARIANT_KILLER or VARIANT_SAMURAI
+	    public static Sudoku sudoku;		// Current Sudoku game instance, generated or restored before its scene is shown
+	    public static Journal journal;	// Autosave journal of the current game
+	    public static StatisticsStore statistics;	// Solve statistics, loaded when a game is finished
+	}
+	
+	@FXML private CheckBox killerBox;	// difficulty selection scene only
+	
+	/** Hides the Killer option for Samurai boards, which have no cages */
+	@FXML
+	private void initialize() {
+		
+		if(killerBox != null) {
+			killerBox.setVisible(GameSettings.size != Layout.SAMURAI_SIZE);
+		}
+		
 	}
 	
 	/** Navigate to size selection scene */
@@ -45,6 +69,13 @@ public class SceneContoller {
 	    goToDifficultySelection(event);
 	}
 	
+	/** Select a Samurai board (five overlapping 9x9 grids) and go to difficulty selection */
+	@FXML
+	private void selectSizeSamurai(ActionEvent event) throws IOException {
+		GameSettings.size = Layout.SAMURAI_SIZE;
+	    goToDifficultySelection(event);
+	}
+	
 	/** Navigate to difficulty selection scene */
 	public void goToDifficultySelection(ActionEvent event) throws IOException {
 	    switchSceneFixed(event, "/application/fxml/DifficultySelectionScene.fxml");
@@ -72,12 +103,70 @@ public class SceneContoller {
 	}
 
     /**
-     * Initializes the Sudoku game with selected size and difficulty,
-     * then navigates to the appropriate game scene.
+     * Generates a board of the selected size, difficulty and variant on a background thread,
+     * then navigates to the appropriate game scene. The current scene is disabled meanwhile;
+     * if no board is generated in time, an error is shown and the player can try again.
      */
-	public void goToGame(ActionEvent event) throws IOException {
+	public void goToGame(ActionEvent event) {
+		
+		if(GameSettings.size == Layout.SAMURAI_SIZE) {
+			GameSettings.variant = Layout.VARIANT_SAMURAI;
+		}
+		
+		else {
+			GameSettings.variant = killerBox != null && killerBox.isSelected() ? Layout.VARIANT_KILLER : Layout.VARIANT_CLASSIC;
+		}
+		
+		Layout layout = Layout.of(GameSettings.variant, GameSettings.size, null);
+		int difficulty = GameSettings.difficulty;
+		Node source = (Node) event.getSource();
+		
+		source.getScene().getRoot().setDisable(true);		// no second game while this one is generated
 		
-		GameSettings.sudoku = new Sudoku(GameSettings.size, GameSettings.difficulty);
+		Thread generation = new Thread(() -> {
+			
+			Board board = null;
+			
+			try {
+				board = PortfolioGenerator.getShared().generate(layout, difficulty, PortfolioGenerator.INTERACTIVE_TIMEOUT);
+			} catch(TimeoutException | InterruptedException e) {
+				// reported on the FX thread below
+			}
+			
+			Board generated = board;
+			Platform.runLater(() -> showGame(event, generated));
+			
+		}, "new-game");
+		
+		generation.setDaemon(true);
+		generation.start();
+	}
+	
+	/**
+	 * Shows the game scene for a generated board, or an error if there is none.
+	 * Runs on the FX thread.
+	 */
+	private void showGame(ActionEvent event, Board board) {
+		
+		((Node) event.getSource()).getScene().getRoot().setDisable(false);
+		
+		if(board == null) {
+			new Alert(Alert.AlertType.ERROR, "The board could not be generated in time, please try again.").show();
+			return;
+		}
+		
+		GameSettings.sudoku = new Sudoku(board);
+		
+		try {
+			switchGameScene(event);
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
+		
+	}
+	
+	/** Navigate to the game scene matching the board size */
+	private void switchGameScene(ActionEvent event) throws IOException {
 		
 		if(GameSettings.size == 4) {
 		    switchSceneFixed(event, "/application/fxml/GameScene4.fxml");
@@ -87,6 +176,10 @@ public class SceneContoller {
 		    switchSceneFixed(event, "/application/fxml/GameScene9.fxml");
 		}
 		
+		else if(GameSettings.size == Layout.SAMURAI_SIZE) {
+		    switchSceneFixed(event, "/application/fxml/GameScene21.fxml");
+		}
+		
 	}
 	
 	/**
@@ -1,17 +1,31 @@
 package core;
 
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Random;
 
 /**
- * Represents a Sudoku board of variable size (4x4 or 9x9).
+ * Represents a Sudoku board of variable size (e.g., 4x4, 6x6 or 9x9).
  * Provides methods to generate a valid Sudoku solution,
  * hide cells based on difficulty, and track fixed cells.
+ * The rules come from a {@link Layout}: classic, diagonal, Windoku, jigsaw, Killer or
+ * Samurai. Killer boards also keep their {@link Cages}. Samurai boards are 21x21 with
+ * values 1 to 9, and the void cells between their grids always stay empty.
  * 
  * Features:
- * - Recursive backtracking to fill the board
+ * - Backtracking to fill the board, most constrained cell first and without
+ *   allocating per level, restarted with a fresh
+ *   value order whenever a run exceeds its node budget
  * - Validation of rows, columns, and boxes
  * - Shuffling values to randomize boards
  * - Easy, Medium, and Hard difficulty levels
+ * - Minimal puzzles: uniquely solvable, and removing any clue breaks uniqueness
+ * - Boards up to 6x6 are filled from a {@link GridTable} instead of a search, and
+ *   4x4 puzzles are picked among the unique ones of a {@link PuzzleTable}
+ * - Cells are only hidden while the puzzle keeps a single solution, which is kept for
+ *   O(1) correctness checks and hints
+ * - Killer puzzles: random cages over the solution, then givens where two solutions
+ *   still differ until the cages and givens only admit one
  * 
  * Usage example:
  * Board board = new Board(Board.SIZE_STANDARD, Board.DIFFICULTY_MEDIUM);
@@ -29,10 +43,45 @@ public class Board {
 	public static final int DIFFICULTY_MEDIUM = 2;
 	public static final int DIFFICULTY_HARD = 3;
 	
+	// Search nodes a Killer uniqueness check may take before a given is added instead
+	private static final long KILLER_NODE_LIMIT = 20_000;
+	
+	// Search nodes a Samurai clue removal may take before the clue is kept instead
+	private static final long SAMURAI_NODE_LIMIT = 20_000;
+	
+	// Results of mostConstrainedCell besides a cell index
+	private static final int FULL = -1;
+	private static final int DEAD_END = -2;
+	
+	private static final BoardListener[] NO_LISTENERS = {};
+	
 	private int size;				// Size of the board (e.g., 4 or 9)
-	private int tableau[][];			// Sudoku board values
+	private Layout layout;			// Units and peers of every cell
+	private int cells[];				// Sudoku board values, row-major
 	private int difficultyLevel;		// Chosen difficulty level
-	private boolean fixed[][];		// Marks which cells are fixed (given clues)
+	private boolean fixed[];			// Marks which cells are fixed (given clues)
+	private boolean revealed[];		// Fixed cells revealed on request rather than given
+	private long searchNodes;		// Values tried by the last fillBoard run
+	private long backtracks;			// Values undone by the last fillBoard run
+	private long seed;				// Seed of the random generator, for reproducing a board
+	private long nodeLimit;			// searchNodes value at which the current fill run gives up
+	private long deadline;			// System.nanoTime() at which generation gives up, 0 = none
+	private boolean aborted;			// Set when the current fill run ran out of budget or time
+	private int restarts;			// Restarts needed by the last generation
+	private Random random;			// Drives value shuffling and cell hiding
+	private int unitMask[];			// Generation only: values used in every unit of the layout
+	private int stackCell[];			// Generation only: cell of every search level
+	private int stackFree[];			// Generation only: candidates not tried yet at every level
+	private int candidates[];		// Generation only: candidates of every empty cell, filled by mostConstrainedCell
+	private int choice;				// Values to try in the cell found by mostConstrainedCell
+	private ConflictTracker conflicts;	// Built on first request, then kept up to date as a listener
+	private Notes notes;				// Created on first request, placed values are removed from peers as a listener
+	private BoardListener listeners[] = NO_LISTENERS;	// Copied on every change, so notifying never allocates
+	private int batchDepth;			// Nesting of beginChanges calls not ended yet
+	private byte solution[];			// Complete grid the puzzle was carved from, null while unknown
+	private boolean solutionSearched;	// Set once a restored board was solved for its solution
+	private boolean unique;				// True once the solution is proven to be the only one
+	private Cages cages;				// Killer cages, null for other variants
 	
 	
     /**
@@ -48,10 +97,47 @@ public class Board {
      * @param difficultyLevel difficulty level (DIFFICULTY_EASY, DIFFICULTY_MEDIUM, DIFFICULTY_HARD)
      */
 	public Board(int size, int difficultyLevel) {
-		this.size = size;
-		this.tableau = new int[size][size];		 // Initialize empty board
+		this(size, difficultyLevel, new Random().nextLong());
+	}
+	
+    /**
+     * Constructor with a fixed random seed, so the same board can be generated again.
+     * @param size size of the board (e.g., 4 or 9)
+     * @param difficultyLevel difficulty level (DIFFICULTY_EASY, DIFFICULTY_MEDIUM, DIFFICULTY_HARD)
+     * @param seed seed for the random generator
+     */
+	public Board(int size, int difficultyLevel, long seed) {
+		this(Layout.standard(size), difficultyLevel, seed);
+	}
+	
+    /**
+     * Constructor for a variant.
+     * @param layout units of the variant (e.g., Layout.diagonal(9))
+     * @param difficultyLevel difficulty level (DIFFICULTY_EASY, DIFFICULTY_MEDIUM, DIFFICULTY_HARD)
+     */
+	public Board(Layout layout, int difficultyLevel) {
+		this(layout, difficultyLevel, new Random().nextLong());
+	}
+	
+    /**
+     * Constructor for a variant with a fixed random seed.
+     * @param layout units of the variant (e.g., Layout.diagonal(9))
+     * @param difficultyLevel difficulty level (DIFFICULTY_EASY, DIFFICULTY_MEDIUM, DIFFICULTY_HARD)
+     * @param seed seed for the random generator
+     */
+	public Board(Layout layout, int difficultyLevel, long seed) {
+		this.size = layout.getSize();
+		this.layout = layout;
+		this.cells = new int[size * size];		 // Initialize empty board
 		this.difficultyLevel = difficultyLevel;
-		this.fixed = new boolean[size][size];	 // Initialize fixed-cell tracking
+		this.fixed = new boolean[size * size];	 // Initialize fixed-cell tracking
+		this.revealed = new boolean[size * size];
+		this.unitMask = new int[layout.getUnitCount()];
+		this.stackCell = new int[size * size];
+		this.stackFree = new int[size * size];
+		this.candidates = new int[size * size];
+		this.seed = seed;
+		this.random = new Random(seed);
 	}
 	
 	/**
@@ -62,6 +148,31 @@ public class Board {
 		return this.size;
 	}
 	
+	/**
+     * Returns the layout holding the rules of the board.
+     * @return layout
+     */
+	public Layout getLayout() {
+		return this.layout;
+	}
+	
+	/**
+     * Returns the cages of a Killer board.
+     * @return cages, or null for other variants or before generation
+     */
+	public Cages getCages() {
+		return this.cages;
+	}
+	
+	/**
+     * Sets the cages of a Killer board.
+     * Used when restoring a saved board whose cages are already known.
+     * @param cages cages of the puzzle
+     */
+	void setCages(Cages cages) {
+		this.cages = cages;
+	}
+	
 	/**
 	 * Returns the value at a specific cell.
 	 * @param row Row index (0-based)
@@ -69,7 +180,7 @@ public class Board {
 	 * @return Value at the specified cell
 	 */
 	public int getValue(int row, int column) {
-		return this.tableau[row][column];
+		return this.cells[row * this.size + column];
 	}
 	
     /**
@@ -79,7 +190,147 @@ public class Board {
      * @param value value to set
      */
 	public void setValue(int row, int column, int value) {
-		this.tableau[row][column] = value;
+		
+		int k = row * this.size + column;
+		int oldValue = this.cells[k];
+		
+		this.cells[k] = value;
+		
+		for(BoardListener listener : this.listeners) {
+			listener.cellChanged(row, column, oldValue, value);
+		}
+		
+		if(this.batchDepth == 0) {
+			this.notifyChangesApplied();
+		}
+		
+	}
+	
+	/**
+     * Registers a listener for the changes of this board.
+     * @param listener listener to add
+     */
+	public void addListener(BoardListener listener) {
+		
+		BoardListener[] grown = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+		grown[grown.length - 1] = listener;
+		this.listeners = grown;
+	}
+	
+	/**
+     * Unregisters a listener. Does nothing if it is not registered.
+     * @param listener listener to remove
+     */
+	public void removeListener(BoardListener listener) {
+		
+		for(int i = 0 ; i < this.listeners.length ; i++) {
+			
+			if(this.listeners[i] == listener) {
+				
+				BoardListener[] shrunk = new BoardListener[this.listeners.length - 1];
+				System.arraycopy(this.listeners, 0, shrunk, 0, i);
+				System.arraycopy(this.listeners, i + 1, shrunk, i, shrunk.length - i);
+				this.listeners = shrunk;
+				return;
+			}
+			
+		}
+		
+	}
+	
+	/**
+     * Starts a batch of changes: listeners still see every cell change, but are told the
+     * changes are applied only once, by the matching {@link #endChanges()}. Batches nest.
+     */
+	public void beginChanges() {
+		this.batchDepth++;
+	}
+	
+	/**
+     * Ends a batch of changes started by {@link #beginChanges()}.
+     */
+	public void endChanges() {
+		
+		if(this.batchDepth > 0 && --this.batchDepth == 0) {
+			this.notifyChangesApplied();
+		}
+		
+	}
+	
+	private void notifyChangesApplied() {
+		
+		for(BoardListener listener : this.listeners) {
+			listener.changesApplied();
+		}
+		
+	}
+	
+	/**
+     * Tells the listeners that generation replaced every cell.
+     */
+	private void notifyBoardReplaced() {
+		
+		for(BoardListener listener : this.listeners) {
+			listener.boardReplaced();
+		}
+		
+	}
+	
+	/**
+     * Returns the tracker of every rule conflict on the board.
+     * The first call scans the board once; afterwards every setValue updates it in O(1).
+     * @return conflict tracker of this board
+     */
+	public ConflictTracker getConflictTracker() {
+		
+		if(this.conflicts == null) {
+			this.conflicts = new ConflictTracker(this);
+			this.addListener(this.conflicts);
+		}
+		
+		return this.conflicts;
+	}
+	
+	/**
+     * Returns the candidate notes of the board, empty at first.
+     * Every setValue placing a value removes it from the notes of the cell's peers.
+     * @return notes of this board
+     */
+	public Notes getNotes() {
+		
+		if(this.notes == null) {
+			this.notes = new Notes(this);
+			this.addListener(this.notes);
+		}
+		
+		return this.notes;
+	}
+	
+	/**
+     * Returns the difficulty level of the board.
+     * @return difficulty level (DIFFICULTY_EASY, DIFFICULTY_MEDIUM, DIFFICULTY_HARD)
+     */
+	public int getDifficultyLevel() {
+		return this.difficultyLevel;
+	}
+	
+	/**
+     * Returns the seed the board was generated from.
+     * @return random seed
+     */
+	public long getSeed() {
+		return this.seed;
+	}
+	
+	/**
+     * Checks whether a cell is part of the puzzle. Only the void cells between the grids
+     * of a Samurai board are not.
+     * @param row row index
+     * @param column column index
+     * @return false for void cells
+     */
+	public boolean isCell(int row, int column) {
+		return this.layout.isCell(row * this.size + column);
 	}
 	
 	/**
@@ -89,53 +340,241 @@ public class Board {
      * @return true if the cell is fixed
      */
 	public boolean isCellFixed(int row, int column) {
-		return this.fixed[row][column];
+		return this.fixed[row * this.size + column];
+	}
+	
+	/**
+	 * Marks a cell as fixed or editable.
+	 * Used when restoring a saved board whose clues are already known.
+	 * @param row row index
+	 * @param column column index
+	 * @param fixed true if the cell is a given clue
+	 */
+	void setCellFixed(int row, int column, boolean fixed) {
+		this.fixed[row * this.size + column] = fixed;
+	}
+	
+	/**
+     * Checks if a cell was fixed by {@link #revealCell(int, int)} rather than given.
+     * @param row row index
+     * @param column column index
+     * @return true if the cell was revealed
+     */
+	public boolean isCellRevealed(int row, int column) {
+		return this.revealed[row * this.size + column];
+	}
+	
+	/**
+     * Counts the cells revealed on request.
+     * @return revealed cell count
+     */
+	public int countRevealedCells() {
+		
+		int count = 0;
+		
+		for(boolean cell : this.revealed) {
+			count += cell ? 1 : 0;
+		}
+		
+		return count;
 	}
 	
     /**
-     * Recursive method to fill the board with a valid Sudoku solution.
-     * Uses backtracking algorithm.
+     * Fills the board with a valid Sudoku solution.
+     * Backtracking with an explicit stack: every level holds a cell and the candidates not
+     * tried yet, so no level allocates anything. The next cell is always the empty cell with
+     * the fewest candidates, and a dead end (an empty cell without candidates) is detected
+     * as soon as it appears. Values are picked at random among the candidates.
      * @return true if the board was successfully filled
      */
 	private boolean fillBoard() {
 		
-		for(int i = 0 ; i < this.size ; i++) {
+		int depth = 0;			// Levels on the stack
+		boolean descend = true;	// false while backtracking
+		
+		while(true) {
 			
-			for(int j = 0 ; j < this.size ; j++) {
+			if(descend) {
 				
-				if(this.tableau[i][j] == 0) {
-					
-					int array[] = new int[this.size];
+				if(this.searchNodes > this.nodeLimit || ((this.searchNodes & 1023) == 0 && isPastDeadline())) {
+					this.aborted = true;		// Out of budget, let the caller restart
+					return false;
+				}
+				
+				int k = this.mostConstrainedCell();
+				
+				if(k == FULL) {
+					return true;
+				}
+				
+				if(k != DEAD_END) {
+					this.stackCell[depth] = k;
+					this.stackFree[depth] = this.choice;
+					depth++;
+				}
+				
+			}
+			
+			if(depth == 0) {
+				return false;		// Every value of the first cell failed
+			}
+			
+			// Undo the value of the top level and try its next candidate
+			int level = depth - 1;
+			int k = this.stackCell[level];
+			
+			if(this.cells[k] != 0) {
+				this.unplace(k);
+				this.backtracks++;
+			}
+			
+			int free = this.stackFree[level];
+			
+			if(free == 0) {
+				depth--;
+				descend = false;
+				continue;
+			}
+			
+			int bit = randomBit(free);
+			this.stackFree[level] = free ^ bit;
+			this.place(k, Integer.numberOfTrailingZeros(bit));
+			this.searchNodes++;
+			descend = true;
+			
+		}
+		
+	}
+	
+	/**
+     * Finds the next cell to fill and leaves the values to try in {@link #choice}:
+     * a value that fits a single cell of some unit (hidden single) if there is one,
+     * otherwise every candidate of the empty cell with the fewest candidates.
+     * @return cell index, FULL if the board is full, or DEAD_END if an empty cell has no
+     *         candidate or a missing value has no room left in a unit
+     */
+	private int mostConstrainedCell() {
+		
+		int full = ((1 << this.layout.getValueCount()) - 1) << 1;
+		int best = FULL;
+		int bestCount = Integer.MAX_VALUE;
+		
+		for(int k = 0 ; k < this.cells.length ; k++) {
+			
+			if(this.cells[k] != 0 || !this.layout.isCell(k)) {
+				continue;
+			}
+			
+			int used = 0;
+			
+			for(int u : this.layout.getUnitsOf(k)) {
+				used |= this.unitMask[u];
+			}
+			
+			int free = full & ~used;
+			int count = Integer.bitCount(free);
+			
+			if(count == 0) {
+				return DEAD_END;
+			}
+			
+			this.candidates[k] = free;
+			
+			if(count < bestCount) {
+				best = k;
+				bestCount = count;
+				this.choice = free;
+			}
+			
+		}
+		
+		if(bestCount <= 1) {
+			return best;
+		}
+		
+		for(int u = 0 ; u < this.unitMask.length ; u++) {
+			
+			int[] unit = this.layout.getUnit(u);
+			int once = 0;		// Candidates of at least one empty cell of the unit
+			int twice = 0;		// Candidates of at least two
+			
+			for(int k : unit) {
+				
+				int free = this.cells[k] == 0 ? this.candidates[k] : 0;
+				
+				twice |= once & free;
+				once |= free;
+			}
+			
+			if((full & ~this.unitMask[u] & ~once) != 0) {
+				return DEAD_END;
+			}
+			
+			int single = once & ~twice;
+			
+			if(single != 0) {
+				
+				int bit = single & -single;
+				
+				for(int k : unit) {
 					
-					for(int value = 1 ; value <= this.size ; value++) {
-						array[value-1] = value;
+					if(this.cells[k] == 0 && (this.candidates[k] & bit) != 0) {
+						this.choice = bit;
+						return k;
 					}
 					
-					shuffle(array);
-					
-					for (int value : array) {
-						
-	                    if (isValidMove(i, j, value)) {
-	                    	
-	                        this.tableau[i][j] = value;
-
-	                        if (fillBoard()) {
-	                            return true;
-	                        }
-
-	                        this.tableau[i][j] = 0;
-	                    }
-	                    
-	                }
-					
-					return false;
 				}
 				
 			}
 			
 		}
 		
-		return true;
+		return best;
+		
+	}
+	
+	/**
+     * Picks one set bit of a mask at random.
+     * @param mask non-zero mask
+     * @return mask with only the chosen bit set
+     */
+	private int randomBit(int mask) {
+		
+		for(int skip = this.random.nextInt(Integer.bitCount(mask)) ; skip > 0 ; skip--) {
+			mask &= mask - 1;
+		}
+		
+		return mask & -mask;
+		
+	}
+	
+	/**
+     * Writes a value during generation, updating the unit masks.
+     */
+	private void place(int k, int value) {
+		
+		int bit = 1 << value;
+		
+		this.cells[k] = value;
+		
+		for(int u : this.layout.getUnitsOf(k)) {
+			this.unitMask[u] |= bit;
+		}
+		
+	}
+	
+	/**
+     * Empties a cell during generation, updating the unit masks.
+     */
+	private void unplace(int k) {
+		
+		int bit = ~(1 << this.cells[k]);
+		
+		this.cells[k] = 0;
+		
+		for(int u : this.layout.getUnitsOf(k)) {
+			this.unitMask[u] &= bit;
+		}
 		
 	}
 	
@@ -146,30 +585,67 @@ public class Board {
      * @return true if value can be placed in the row
      */	
 	public boolean checkRow(int row, int value) {
+		return checkUnits(Layout.UNIT_ROW, row, value);
+	}
+	
+	/**
+     * Checks if a value is not already in the given column.
+     * @param column column index
+     * @param value value to check
+     * @return true if value can be placed in the column
+     */
+	public boolean checkColumn(int column, int value) {
+		return checkUnits(Layout.UNIT_COLUMN, column, value);
+	}
+	
+	 /**
+     * Checks if a value is not already in the box (or jigsaw region) containing the cell.
+     * @param row row index
+     * @param column column index
+     * @param value value to check
+     * @return true if value can be placed in the box
+     */
+	public boolean checkBox(int row, int column, int value) {
 		
-		for(int j = 0 ; j < this.size ; j++) {
+		for(int unit : this.layout.getUnitsOf(row * this.size + column)) {
 			
-			if(value == this.tableau[row][j]) {
+			if(this.layout.getUnitType(unit) == Layout.UNIT_REGION && !checkUnit(unit, value)) {
 				return false;
 			}
 			
 		}
 		
 		return true;
+	}
+	
+	/**
+     * Checks every unit of a type and index for a value. On Samurai boards, a row or
+     * column of the board can cross two grids and so be two units.
+     */
+	private boolean checkUnits(int type, int index, int value) {
 		
+		for(int unit = 0 ; unit < this.layout.getUnitCount() ; unit++) {
+			
+			if(this.layout.getUnitType(unit) == type && this.layout.getUnitIndex(unit) == index && !checkUnit(unit, value)) {
+				return false;
+			}
+			
+		}
+		
+		return true;
 	}
 	
 	/**
-     * Checks if a value is not already in the given column.
-     * @param column column index
+     * Checks if a value is not already in a unit of the layout.
+     * @param unit unit index (see {@link Layout})
      * @param value value to check
-     * @return true if value can be placed in the column
+     * @return true if value can be placed in the unit
      */
-	public boolean checkColumn(int column, int value) {
+	public boolean checkUnit(int unit, int value) {
 		
-		for(int i = 0 ; i < this.size ; i++) {
+		for(int k : this.layout.getUnit(unit)) {
 			
-			if(value == this.tableau[i][column]) {
+			if(value == this.cells[k]) {
 				return false;
 			}
 			
@@ -179,44 +655,174 @@ public class Board {
 		
 	}
 	
-	 /**
-     * Checks if a value is not already in the sub-box containing the cell.
+	/**
+     * Checks if a value fits the Killer cage of a cell: no other cell of the cage holds it,
+     * and the cage sum can still be reached with the cells left empty.
      * @param row row index
      * @param column column index
      * @param value value to check
-     * @return true if value can be placed in the box
+     * @return true if value can be placed in the cage, or if the board has no cages
      */
-	public boolean checkBox(int row, int column, int value) {
+	public boolean checkCage(int row, int column, int value) {
+		return this.cages == null || this.cages.canPlace(this.cells, row * this.size + column, value);
+	}
+	
+	/**
+     * Finds the first unit of a cell that already holds a value,
+     * in layout order: row, column, box, then the extra units of the variant.
+     * @param row row index
+     * @param column column index
+     * @param value value to check
+     * @return unit index, or -1 if the value can be placed
+     */
+	public int findConflictingUnit(int row, int column, int value) {
 		
-		int boxSize = (int)Math.sqrt(this.size);
-		int startRow = row - (row % boxSize);
-		int startColumn = column - (column % boxSize);
+		for(int unit : this.layout.getUnitsOf(row * this.size + column)) {
+			
+			if(!checkUnit(unit, value)) {
+				return unit;
+			}
+			
+		}
+		
+		return -1;
+		
+	}
 	
-		for(int i = startRow ; i < startRow + Math.sqrt(this.size) ; i++) {
+	/**
+     * Checks whether the solution of the board is known. Generated boards keep the grid they
+     * were carved from; for restored boards the solution is searched once from the fixed
+     * cells on the first call, along with a second one to tell whether it is unique.
+     * @return true if the solution is known
+     */
+	public boolean hasSolution() {
+		
+		if(this.solution == null && !this.solutionSearched) {
 			
-			for(int j = startColumn ; j < startColumn + Math.sqrt(this.size) ; j++) {
-				
-				if(value == this.tableau[i][j]) {
-					return false;
-				}
-				
+			this.solutionSearched = true;
+			
+			int[] givens = new int[this.cells.length];
+			
+			for(int k = 0 ; k < givens.length ; k++) {
+				givens[k] = this.fixed[k] ? this.cells[k] : 0;
+			}
+			
+			Solver solver = new Solver(this.layout, this.cages);
+			
+			int found = solver.load(givens) ? solver.solve(2) : 0;
+			
+			if(found > 0) {
+				this.solution = toSolution(solver.getSolution());
+				this.unique = found == 1;
 			}
 			
 		}
 		
-		return true;
+		return this.solution != null;
+	}
+	
+	/**
+     * Checks whether the puzzle is proven to have a single solution, the one kept by the board.
+     * @return true if the solution is known and unique
+     */
+	public boolean isUnique() {
+		return this.hasSolution() && this.unique;
+	}
+	
+	/**
+     * Returns the value of a cell in the solution.
+     * @param row row index
+     * @param column column index
+     * @return solution value, or 0 if the solution is not known
+     */
+	public int getSolutionValue(int row, int column) {
+		return this.hasSolution() ? this.solution[row * this.size + column] : 0;
+	}
+	
+	/**
+     * Checks a placement against the solution with a single lookup. Unlike
+     * {@link #isValidMove(int, int, int)}, this also catches values that break no rule yet
+     * but lead to a dead end. Unless the solution is known to be unique it falls back to
+     * isValidMove, since a value differing from the kept solution may be part of another.
+     * @param row row index
+     * @param column column index
+     * @param value value to check
+     * @return true if the value is the solution value of the cell
+     */
+	public boolean isCorrect(int row, int column, int value) {
 		
+		if(!this.isUnique()) {
+			return this.isValidMove(row, column, value);
+		}
+		
+		return this.solution[row * this.size + column] == value;
 	}
 	
 	/**
-     * Checks if a value can be placed in a cell considering row, column, and box constraints.
+     * Fills a cell with its solution value and fixes it, like a given clue.
+     * @param row row index
+     * @param column column index
+     * @return value revealed, or 0 if the solution is not known
+     */
+	public int revealCell(int row, int column) {
+		
+		int value = this.getSolutionValue(row, column);
+		
+		if(value != 0) {
+			this.fixed[row * this.size + column] = true;		// Before the change, so listeners see a clue
+			this.revealed[row * this.size + column] = true;
+			this.setValue(row, column, value);
+		}
+		
+		return value;
+	}
+	
+	/**
+     * Packs a complete grid, one byte per cell.
+     */
+	private static byte[] toSolution(int[] grid) {
+		
+		byte[] packed = new byte[grid.length];
+		
+		for(int k = 0 ; k < grid.length ; k++) {
+			packed[k] = (byte) grid[k];
+		}
+		
+		return packed;
+	}
+	
+	/**
+     * Checks if a value can be placed in a cell considering every unit of the cell
+     * (row, column, box and the extra units of the variant) and its Killer cage.
      * @param row row index
      * @param column column index
      * @param value value to check
      * @return true if valid
      */
 	public boolean isValidMove(int row, int column, int value) {
-		return checkRow(row, value) && checkColumn(column, value) && checkBox(row, column, value);
+		
+		int k = row * this.size + column;
+		
+		return this.layout.isCell(k) && this.cells[k] != value && canPlace(k, value) && checkCage(row, column, value);
+	}
+	
+	/**
+     * Checks the peers of a cell, as listed by the layout, for a value.
+     * @param k row-major cell index
+     * @param value value to check
+     * @return true if no peer holds the value
+     */
+	private boolean canPlace(int k, int value) {
+		
+		for(int peer : this.layout.getPeers(k)) {
+			
+			if(this.cells[peer] == value) {
+				return false;
+			}
+			
+		}
+		
+		return true;
 	}
 	
 	/**
@@ -225,7 +831,7 @@ public class Board {
      */
 	private void shuffle(int array[]) {
 		
-		Random rand = new Random();
+		Random rand = this.random;
 		
 	    for (int i = array.length - 1; i > 0; i--) {
 	    	
@@ -241,12 +847,13 @@ public class Board {
 
     /**
      * Hides cells in the board based on difficulty level.
-     * The higher the difficulty, the more cells are hidden.
+     * The higher the difficulty, the more cells are hidden. Cells are visited in random
+     * order and a cell is only hidden if the puzzle keeps a single solution, so fewer
+     * cells are hidden in the rare grids where no more can go, or once the deadline passes.
      */
 	private void hide() {
 		
 		int hide = 0;
-		Random rand = new Random();
 		
         // Determine number of cells to hide
 		if(this.difficultyLevel == DIFFICULTY_EASY) {
@@ -259,6 +866,10 @@ public class Board {
 				hide = 34;
 			}
 			
+			else {
+				hide = this.layout.getCellCount() * 34 / 81;		// Same share as on a 9x9 board
+			}
+			
 		}
 		
 		else if(this.difficultyLevel == DIFFICULTY_MEDIUM) {
@@ -271,6 +882,10 @@ public class Board {
 				hide = 40;
 			}
 			
+			else {
+				hide = this.layout.getCellCount() * 40 / 81;
+			}
+			
 		}
 		
 		else if(this.difficultyLevel == DIFFICULTY_HARD) {
@@ -282,46 +897,156 @@ public class Board {
 			else if(this.size == SIZE_STANDARD) {
 				hide = 45;
 			}
+			
+			else {
+				hide = this.layout.getCellCount() * 45 / 81;
+			}
 
 		}
 		
-        // Randomly set chosen cells to 0
-		for(int i = 0 ; i < hide ; i++) {
+		if(PuzzleTable.supports(this.layout) && this.hideUnique(hide)) {
+			this.unique = true;
+			return;
+		}
+		
+		UniquenessChecker checker = new UniquenessChecker(this.layout);
+		int[] order = new int[this.cells.length];
+		int hidden = 0;
+		
+		if(this.layout.getVariant() == Layout.VARIANT_SAMURAI) {
+			checker.setNodeLimit(SAMURAI_NODE_LIMIT);
+		}
+		
+		for(int k = 0 ; k < order.length ; k++) {
+			order[k] = k;
+		}
+		
+		checker.load(this.cells);
+		shuffle(order);
+		
+        // Hide the chosen cells that leave the solution unique
+		for(int i = 0 ; i < order.length && hidden < hide && !isPastDeadline() ; i++) {
 			
-			int randomRow, randomColumn;
+			if(this.cells[order[i]] != 0 && checker.tryRemove(order[i])) {
+				hidden++;
+			}
 			
-			 do {
-				 
-				 randomRow = rand.nextInt(this.size);  
-				 randomColumn = rand.nextInt(this.size);
-				 
-			 } while(this.tableau[randomRow][randomColumn]==0);
+		}
+		
+		this.searchNodes += checker.getNodes();
+		checker.copyPuzzle(this.cells);
+		this.unique = true;
+	}
+	
+    /**
+     * Hides cells so that the remaining clues form a random unique puzzle of the layout's {@link PuzzleTable}.
+     * @param hide number of cells to hide
+     * @return false if no unique puzzle has that few clues
+     */
+	private boolean hideUnique(int hide) {
+		
+		int[] puzzles = PuzzleTable.of(this.layout).getPuzzles(this.cells, this.cells.length - hide);
+		
+		if(puzzles.length == 0) {
+			return false;
+		}
+		
+		int clues = puzzles[this.random.nextInt(puzzles.length)];
+		
+		for(int k = 0 ; k < this.cells.length ; k++) {
+			
+			if((clues & 1 << k) == 0) {
+				this.cells[k] = 0;
+			}
 			
-			 this.tableau[randomRow][randomColumn]=0;
-					 
 		}
 		
+		return true;
 	}
 	
     /**
-     * Marks non-empty cells as fixed (clues) and empty cells as non-fixed.
+     * Splits the solution into random cages, larger the higher the difficulty, and empties
+     * the board. While the puzzle still has two solutions, the solution value of a random
+     * cell where they differ becomes a given; each given rules at least one of them out,
+     * so the loop ends with a unique puzzle, usually after a handful of givens or none.
+     * A check that runs out of nodes adds the value of a random empty cell instead: the
+     * slow puzzles are the ones with many solutions, and every given narrows the search.
+     * Only a check that finished proves the puzzle unique; an aborted one may have missed
+     * the second solution.
+     * @return true if the puzzle is unique, false if the deadline passed first
      */
-	private void markFixedCells() {
+	private boolean hideKiller() {
 		
-		for(int i = 0 ; i < size ; i++) {
-			for(int j = 0 ; j < size ; j++) {
+		int maxCageSize = this.difficultyLevel == DIFFICULTY_EASY ? 3 : this.difficultyLevel == DIFFICULTY_MEDIUM ? 4 : 5;
+		int[] solution = this.cells.clone();
+		int[] givens = new int[this.cells.length];
+		int[] differing = new int[this.cells.length];
+		
+		this.cages = Cages.random(this.layout, solution, maxCageSize, this.random);
+		
+		Solver solver = new Solver(this.layout, this.cages);
+		solver.setDeadline(this.deadline);
+		solver.setNodeLimit(KILLER_NODE_LIMIT);
+		
+		while(true) {
+			
+			if(!solver.load(givens) || isPastDeadline()) {
+				this.searchNodes += solver.getNodes();
+				return false;
+			}
+			
+			int found = solver.solve(2);
+			this.searchNodes += solver.getNodes();
+			
+			if(found == 1 && !solver.isAborted()) {
+				break;		// Proven unique
+			}
+			
+			if(solver.isAborted()) {
 				
-				if(this.tableau[i][j] != 0) {
-					fixed[i][j]=true;
+				if(isPastDeadline()) {
+					return false;
 				}
 				
-				else {
-					fixed[i][j]=false;
-				}
+				int k;
+				
+				do {
+					k = this.random.nextInt(givens.length);
+				} while(givens[k] != 0);
 				
+				givens[k] = solution[k];
+				continue;
+			}
+			
+			int[] first = solver.getSolution();
+			int[] other = solver.getOtherSolution();
+			int count = 0;
+			
+			for(int k = 0 ; k < givens.length ; k++) {
+				if(other[k] != first[k]) {
+					differing[count++] = k;
+				}
 			}
+			
+			int k = differing[this.random.nextInt(count)];
+			givens[k] = solution[k];
+		}
+		
+		System.arraycopy(givens, 0, this.cells, 0, givens.length);
+		
+		return true;
+	}
+	
+    /**
+     * Marks non-empty cells as fixed (clues) and empty cells as non-fixed.
+     */
+	private void markFixedCells() {
+		
+		for(int k = 0 ; k < this.cells.length ; k++) {
+			fixed[k] = this.cells[k] != 0;
 		}
 		
+		Arrays.fill(this.revealed, false);
 	}
 	
 	/**
@@ -329,10 +1054,258 @@ public class Board {
      * hiding cells according to difficulty, and marking fixed cells.
      */
 	public void initializeBoard() {
+		this.generate(0);
+	}
+	
+	/**
+     * Initializes the board like {@link #initializeBoard()}, but gives up once the timeout expires
+     * or the calling thread is interrupted.
+     * @param timeout maximum time to spend generating
+     * @return true if the board was generated, false if it timed out (the board is then left empty)
+     */
+	public boolean initializeBoard(Duration timeout) {
+		return this.generate(System.nanoTime() + Math.max(1, timeout.toNanos()));
+	}
+	
+	/**
+     * Returns how many times the last generation restarted its search.
+     * @return restart count
+     */
+	public int getRestarts() {
+		return this.restarts;
+	}
+	
+	/**
+     * Initializes the board with a minimal puzzle: it has exactly one solution and
+     * removing any of its clues would give it more than one.
+     */
+	public void initializeMinimalBoard() {
+		this.generateMinimal(0, 0);
+	}
+	
+	/**
+     * Initializes the board with a minimal puzzle of at most the given number of clues
+     * (e.g., 22 for a 9x9 board). Complete grids are carved until one reaches the target
+     * or the timeout expires; in the latter case the board holds the minimal puzzle with
+     * the fewest clues found so far, or is left empty if no grid could be filled in time.
+     * @param targetClues largest acceptable clue count, or 0 to accept the first minimal puzzle
+     * @param timeout maximum time to spend generating
+     * @return true if a puzzle with at most targetClues clues was generated
+     */
+	public boolean initializeMinimalBoard(int targetClues, Duration timeout) {
+		return this.generateMinimal(targetClues, System.nanoTime() + Math.max(1, timeout.toNanos()));
+	}
+	
+	/**
+     * Generates a complete solution, then hides cells according to difficulty.
+     * @param deadline System.nanoTime() at which to give up, or 0 for none
+     * @return true if the board was generated
+     */
+	private boolean generate(long deadline) {
+		
+		  long start = System.nanoTime();
+		  GenerationEvent generation = new GenerationEvent();
+		  generation.begin();
+		  this.searchNodes = 0;
+		  this.backtracks = 0;
+		  this.restarts = 0;
+		  this.deadline = deadline;
+		  
+		  boolean filled = this.fill();
+		  this.solution = filled ? toSolution(this.cells) : null;
+		  this.solutionSearched = false;
+		  this.unique = false;
+		  
+		  if(filled && this.layout.getVariant() == Layout.VARIANT_KILLER) {
+			  
+		      filled = this.hideKiller();      // Cages instead of clues
+		      
+		      if(filled) {
+		    	  this.unique = true;
+		    	  this.markFixedCells();
+		      }
+		      
+		      else {
+		    	  this.solution = null;		// Timed out before the puzzle was proven unique
+		    	  this.cages = null;
+		    	  this.clearBoard();
+		      }
+		      
+		  }
+		  
+		  else if(filled) {
+		      this.hide();            // Hide some cells based on difficulty
+		      this.markFixedCells();  // Mark remaining numbers as fixed
+		  }
+		  
+		  else {
+			  this.clearBoard();
+		  }
+		  
+		  this.notifyBoardReplaced();		// Generation writes cells directly, without cell events
+	      
+	      generation.end(this.size, this.difficultyLevel, this.seed, this.searchNodes, filled ? "generated" : "timeout");
+	      Metrics.recordGeneration(this.size, this.difficultyLevel, System.nanoTime() - start, this.searchNodes, this.backtracks);
+	      Metrics.recordRestarts(this.restarts);
+	      
+	      return filled;
+	}
+	
+	/**
+     * Generates minimal puzzles: every cell of a complete solution is visited once in
+     * random order and its clue removed if the puzzle stays unique. A clue that was
+     * needed stays needed as more clues are removed, so one pass yields a minimal puzzle.
+     * Killer puzzles only get the givens their cages need, so they are generated as usual.
+     * @param targetClues largest acceptable clue count, or 0 to accept the first minimal puzzle
+     * @param deadline System.nanoTime() at which to stop trying new grids, or 0 for none
+     * @return true if the target was reached
+     */
+	private boolean generateMinimal(int targetClues, long deadline) {
+		
+		if(this.layout.getVariant() == Layout.VARIANT_KILLER) {
+			return this.generate(deadline);
+		}
+		
+		long start = System.nanoTime();
+		GenerationEvent generation = new GenerationEvent();
+		generation.begin();
+		this.searchNodes = 0;
+		this.backtracks = 0;
+		this.restarts = 0;
+		this.deadline = deadline;
+		
+		int cellCount = this.size * this.size;
+		UniquenessChecker checker = new UniquenessChecker(this.layout);
+		
+		if(this.layout.getVariant() == Layout.VARIANT_SAMURAI) {
+			checker.setNodeLimit(SAMURAI_NODE_LIMIT);		// Some of the 369 checks take seconds; keep those clues
+		}
+		int[] order = new int[cellCount];
+		int[] best = null;
+		byte[] bestSolution = null;		// Grid the best puzzle was carved from
+		int bestClues = Integer.MAX_VALUE;
+		
+		for(int k = 0 ; k < cellCount ; k++) {
+			order[k] = k;
+		}
+		
+		do {
+			
+			if(!this.fill()) {
+				break;
+			}
+			
+			checker.load(this.cells);
+			shuffle(order);
+			
+			for(int cell : order) {
+				checker.tryRemove(cell);
+			}
+			
+			this.searchNodes += checker.getNodes();
+			
+			if(checker.getClueCount() < bestClues) {
+				bestClues = checker.getClueCount();
+				best = new int[cellCount];
+				checker.copyPuzzle(best);
+				bestSolution = toSolution(this.cells);
+			}
+			
+		} while(targetClues > 0 && bestClues > targetClues && !isPastDeadline());
+		
+		this.clearBoard();
+		this.solution = bestSolution;
+		this.solutionSearched = false;
+		this.unique = bestSolution != null;		// Minimal puzzles are unique
+		
+		if(best != null) {
+			
+			System.arraycopy(best, 0, this.cells, 0, cellCount);
+			
+			this.markFixedCells();
+		}
+		
+		this.notifyBoardReplaced();
+		
+		boolean reached = best != null && (targetClues <= 0 || bestClues <= targetClues);
 		
-		  this.fillBoard();       // Fill board with valid solution
-	      this.hide();            // Hide some cells based on difficulty
-	      this.markFixedCells();  // Mark remaining numbers as fixed
+		generation.end(this.size, this.difficultyLevel, this.seed, this.searchNodes, reached ? "minimal" : best != null ? "minimal-above-target" : "timeout");
+		Metrics.recordGeneration(this.size, this.difficultyLevel, System.nanoTime() - start, this.searchNodes, this.backtracks);
+		Metrics.recordRestarts(this.restarts);
+		
+		return reached;
+	}
+	
+	/**
+     * Fills the board with a random solution: looked up in the layout's {@link GridTable}
+     * for small layouts, searched for otherwise.
+     * @return true if the board was filled
+     */
+	private boolean fill() {
+		
+		if(!GridTable.supports(this.layout)) {
+			return this.fillWithRestarts();
+		}
+		
+		this.clearBoard();
+		
+		return GridTable.of(this.layout).fill(this.random, this.cells);
+	}
+	
+	/**
+     * Fills the board with randomized restarts: each fill run gets a node budget,
+     * and a run that exceeds it starts over with a new value order and twice the budget.
+     * This cuts off the heavy tail of unlucky value orders while staying complete.
+     * Stops early once {@link #isPastDeadline()} holds.
+     * @return true if the board was filled
+     */
+	private boolean fillWithRestarts() {
+		
+		long budget = (long) this.size * this.size * this.size;	// First run: size^3 nodes
+		boolean filled;
+		
+		SearchEvent search = new SearchEvent();
+		search.begin();
+		
+		while(true) {
+			  
+			this.clearBoard();
+			this.aborted = false;
+			this.nodeLimit = this.searchNodes + budget;
+			  
+			filled = this.fillBoard();       // Fill board with valid solution
+			  
+			if(filled || isPastDeadline()) {
+				break;
+			}
+			  
+			this.restarts++;
+			budget *= 2;
+		}
+		  
+		search.end(this.size, this.difficultyLevel, this.seed, this.searchNodes, filled ? "solved" : "aborted");
+		
+		return filled;
+	}
+	
+	/**
+     * Empties every cell and clears the fixed marks.
+     */
+	private void clearBoard() {
+		
+		Arrays.fill(this.cells, 0);
+		Arrays.fill(this.fixed, false);
+		Arrays.fill(this.revealed, false);
+		Arrays.fill(this.unitMask, 0);
+		
+	}
+	
+	/**
+     * Checks whether generation must stop: the deadline passed or the thread was interrupted.
+     * @return true if generation must stop
+     */
+	private boolean isPastDeadline() {
+		return (this.deadline != 0 && System.nanoTime() - this.deadline > 0) || Thread.currentThread().isInterrupted();
 	}
 
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,43 @@
+package core;
+
+/**
+ * Receives the changes of a {@link Board}, so views, counters and the autosave can
+ * update only what changed instead of rescanning the board after every move.
+ *
+ * Events carry plain ints, so notifying a listener never allocates. A change is
+ * reported as soon as it is made, with the board already holding the new value;
+ * {@link #changesApplied()} follows once the change, or a whole batch of changes
+ * (see {@link Board#beginChanges()}), is complete. Work that only needs the final
+ * state, like repainting, belongs there.
+ *
+ * Usage example:
+ * <pre>
+ * board.addListener((row, column, oldValue, newValue) -&gt; dirtyRows[row] = true);
+ * </pre>
+ */
+@FunctionalInterface
+public interface BoardListener {
+
+	/**
+	 * Called after a cell changed.
+	 * @param row row index
+	 * @param column column index
+	 * @param oldValue previous value, 0 if the cell was empty
+	 * @param newValue new value, 0 if the cell was cleared
+	 */
+	void cellChanged(int row, int column, int oldValue, int newValue);
+
+	/**
+	 * Called once a change, or a batch of changes, is complete.
+	 */
+	default void changesApplied() {
+	}
+
+	/**
+	 * Called after every cell was replaced at once, e.g. by generating a new puzzle.
+	 * No cellChanged events are sent for such a replacement.
+	 */
+	default void boardReplaced() {
+	}
+
+}
@@ -0,0 +1,182 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Validates many flat-packed grids at once and reports the first conflict of each.
+ *
+ * Grids are stored back to back in one byte array, {@code size * size} bytes per grid in
+ * row-major order, 0 for an empty cell. A cell is in conflict when its value is out of
+ * range or repeats in its row, column or box; the reported conflict of a grid is the
+ * lowest such cell index, or {@link #NO_CONFLICT}.
+ *
+ * When the {@code jdk.incubator.vector} module is present (run with
+ * {@code --add-modules jdk.incubator.vector}), 4x4 and 9x9 grids are screened with SIMD
+ * lanes, one lane per unit. Otherwise, and for other sizes, a scalar pass with one
+ * bitmask per unit is used. Grids that fail the screen get a second scalar pass to
+ * locate their first conflicting cell.
+ *
+ * Usage example:
+ * <pre>
+ * int[] conflicts = BulkValidator.findFirstConflicts(9, grids, gridCount);
+ * </pre>
+ */
+public final class BulkValidator {
+
+	public static final int NO_CONFLICT = -1;
+
+	private static final boolean VECTORIZED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+	private BulkValidator() {
+	}
+
+	/**
+	 * Returns whether the Vector API is used for the sizes it supports.
+	 * @return true if SIMD validation is available
+	 */
+	public static boolean isVectorized() {
+		return VECTORIZED;
+	}
+
+	/**
+	 * Finds the first conflicting cell of every grid.
+	 * @param size board size (e.g., 4 or 9)
+	 * @param grids flat-packed grids
+	 * @param count number of grids
+	 * @return per grid, the lowest conflicting cell index or {@link #NO_CONFLICT}
+	 */
+	public static int[] findFirstConflicts(int size, byte[] grids, int count) {
+
+		int[] conflicts = new int[count];
+		findFirstConflicts(size, grids, count, conflicts);
+
+		return conflicts;
+	}
+
+	/**
+	 * Finds the first conflicting cell of every grid into a caller-supplied array.
+	 * @param size board size (e.g., 4 or 9)
+	 * @param grids flat-packed grids
+	 * @param count number of grids
+	 * @param conflicts destination, at least count long
+	 */
+	public static void findFirstConflicts(int size, byte[] grids, int count, int[] conflicts) {
+
+		int cells = size * size;
+		Layout layout = Layout.standard(size);
+		int[] units = new int[layout.getUnitCount()];		// Scratch masks for the scalar screen
+
+		if(VECTORIZED && VectorValidator.supports(size)) {
+			VectorValidator.screen(size, grids, count, conflicts);
+		}
+
+		else {
+
+			for(int g = 0 ; g < count ; g++) {
+				conflicts[g] = hasConflict(layout, grids, g * cells, units) ? 0 : NO_CONFLICT;
+			}
+
+		}
+
+		// Screened grids only tell that a conflict exists; locate it
+		for(int g = 0 ; g < count ; g++) {
+
+			if(conflicts[g] != NO_CONFLICT) {
+				conflicts[g] = firstConflict(layout, grids, g * cells);
+			}
+
+		}
+
+	}
+
+	/**
+	 * Scalar screen: one bitmask of seen values per unit of the classic layout,
+	 * a repeat shows up as an overlap between the value's bit and the mask.
+	 * @param units scratch array of 3 * size masks (rows, columns, boxes), cleared here
+	 * @return true if the grid has at least one conflict
+	 */
+	static boolean hasConflict(Layout layout, byte[] grids, int base, int[] units) {
+
+		int size = layout.getSize();
+		int repeated = 0;
+
+		Arrays.fill(units, 0);
+
+		for(int k = 0 ; k < size * size ; k++) {
+
+			int value = grids[base + k];
+
+			if(value == 0) {
+				continue;
+			}
+
+			if(value < 0 || value > size) {
+				return true;
+			}
+
+			int bit = 1 << value;
+
+			for(int u : layout.getUnitsOf(k)) {
+				repeated |= units[u] & bit;
+				units[u] |= bit;
+			}
+
+		}
+
+		return repeated != 0;
+	}
+
+	/**
+	 * Locates the lowest conflicting cell: a first pass records, per unit, which values
+	 * occur more than once, a second pass returns the first cell holding one of them
+	 * or a value out of range.
+	 * @return cell index within the grid, or NO_CONFLICT
+	 */
+	static int firstConflict(Layout layout, byte[] grids, int base) {
+
+		int size = layout.getSize();
+		long[] seen = new long[layout.getUnitCount()];		// Rows, then columns, then boxes
+		long[] repeated = new long[layout.getUnitCount()];
+
+		for(int pass = 0 ; pass < 2 ; pass++) {
+
+			for(int k = 0 ; k < size * size ; k++) {
+
+				int value = grids[base + k];
+
+				if(value == 0) {
+					continue;
+				}
+
+				if(value < 0 || value > size) {
+
+					if(pass == 1) {
+						return k;
+					}
+
+					continue;		// Conflicts on its own, returned in order by the second pass
+				}
+
+				long bit = 1L << value;
+
+				for(int u : layout.getUnitsOf(k)) {
+
+					if(pass == 0) {
+						repeated[u] |= seen[u] & bit;
+						seen[u] |= bit;
+					}
+
+					else if((repeated[u] & bit) != 0) {
+						return k;
+					}
+
+				}
+
+			}
+
+		}
+
+		return NO_CONFLICT;
+	}
+
+}
@@ -0,0 +1,344 @@
+package core;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The cages of a Killer Sudoku: groups of cells whose values must add up to the cage's
+ * sum, without repeating a value inside the cage.
+ *
+ * Whether a value fits a cage only depends on how many of its cells are still empty,
+ * what is left of its sum and which values it already holds. For every board size, all
+ * sets of values are grouped once into a table by (number of values, sum), as bitmasks
+ * (bit v set when value v is in the set), so {@link #allowed(int, int, int)} is a table
+ * lookup and a few mask operations, cheap enough to run at every node of a search.
+ *
+ * Usage example:
+ * <pre>
+ * Cages cages = Cages.random(layout, solution, 4, random);
+ * int candidates = cages.allowed(cagesLeft, sumLeft, used);
+ * </pre>
+ */
+public final class Cages {
+
+	private static final int MAX_SIZE = 16;		// Largest board size with combination tables
+	private static final AtomicReferenceArray<int[][][]> COMBINATIONS = new AtomicReferenceArray<>(MAX_SIZE + 1);
+
+	private final int size;
+	private final int[] cageOf;			// Cage of every cell
+	private final int[][] cells;		// Cells of every cage, in row-major order
+	private final int[] sums;			// Sum of every cage
+	private final int[][][] combinations;	// Value sets of this board size, by count and sum
+
+	/**
+	 * Creates the cages of a board.
+	 * @param size board size
+	 * @param cageOf row-major cage of every cell, cages numbered from 0 without gaps
+	 * @param sums sum of every cage
+	 * @throws IllegalArgumentException if a cage is empty, larger than the board size,
+	 *         or its sum cannot be made of distinct values
+	 */
+	public Cages(int size, int[] cageOf, int[] sums) {
+
+		if(size > MAX_SIZE || cageOf.length != size * size) {
+			throw new IllegalArgumentException("Expected " + size * size + " cage entries for a board of size up to " + MAX_SIZE);
+		}
+
+		int[] counts = new int[sums.length];
+
+		for(int cage : cageOf) {
+
+			if(cage < 0 || cage >= sums.length) {
+				throw new IllegalArgumentException("Unknown cage " + cage);
+			}
+
+			counts[cage]++;
+		}
+
+		this.size = size;
+		this.cageOf = cageOf.clone();
+		this.cells = new int[sums.length][];
+		this.sums = sums.clone();
+		this.combinations = combinationsOf(size);
+
+		for(int cage = 0 ; cage < sums.length ; cage++) {
+
+			if(counts[cage] == 0 || counts[cage] > size || sums[cage] < 0 || sums[cage] >= this.combinations[counts[cage]].length
+					|| this.combinations[counts[cage]][sums[cage]].length == 0) {
+				throw new IllegalArgumentException("Cage " + cage + " of " + counts[cage] + " cells cannot add up to " + sums[cage]);
+			}
+
+			this.cells[cage] = new int[counts[cage]];
+			counts[cage] = 0;
+		}
+
+		for(int k = 0 ; k < cageOf.length ; k++) {
+			this.cells[cageOf[k]][counts[cageOf[k]]++] = k;
+		}
+
+	}
+
+	/**
+	 * Splits a solved grid into random cages. Every cage lies inside one region, its cells
+	 * are connected, and its values are distinct in the solution.
+	 * @param layout layout of the board
+	 * @param solution row-major solved grid
+	 * @param maxCageSize largest cage, at least 1
+	 * @param random source of randomness
+	 * @return cages, with their sums taken from the solution
+	 */
+	public static Cages random(Layout layout, int[] solution, int maxCageSize, Random random) {
+
+		int size = layout.getSize();
+		int cellCount = size * size;
+		int[] cageOf = new int[cellCount];
+		int[] order = new int[cellCount];
+		int[] frontier = new int[4 * cellCount];
+		int[] sums = new int[cellCount];
+		int cageCount = 0;
+
+		Arrays.fill(cageOf, -1);
+
+		for(int k = 0 ; k < cellCount ; k++) {
+			order[k] = k;
+		}
+
+		for(int i = cellCount - 1 ; i > 0 ; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = order[i];
+			order[i] = order[j];
+			order[j] = swap;
+		}
+
+		for(int start : order) {
+
+			if(cageOf[start] >= 0) {
+				continue;
+			}
+
+			int cage = cageCount++;
+			int target = 1 + random.nextInt(maxCageSize);
+			int used = 1 << solution[start];
+			int count = 1;
+			int frontierSize = 0;
+
+			cageOf[start] = cage;
+			sums[cage] = solution[start];
+			frontierSize = addNeighbours(size, start, frontier, frontierSize);
+
+			// Grow into a random free neighbour of the cage, in the same region, with a new value
+			while(count < target && frontierSize > 0) {
+
+				int pick = random.nextInt(frontierSize);
+				int cell = frontier[pick];
+				frontier[pick] = frontier[--frontierSize];
+
+				if(cageOf[cell] >= 0 || layout.getRegion(cell) != layout.getRegion(start) || (used & 1 << solution[cell]) != 0) {
+					continue;
+				}
+
+				cageOf[cell] = cage;
+				sums[cage] += solution[cell];
+				used |= 1 << solution[cell];
+				count++;
+				frontierSize = addNeighbours(size, cell, frontier, frontierSize);
+			}
+
+		}
+
+		return new Cages(size, cageOf, Arrays.copyOf(sums, cageCount));
+	}
+
+	/**
+	 * Returns the board size.
+	 * @return board size
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the number of cages.
+	 * @return cage count
+	 */
+	public int getCageCount() {
+		return this.sums.length;
+	}
+
+	/**
+	 * Returns the cage of a cell.
+	 * @param cell row-major cell index
+	 * @return cage index
+	 */
+	public int getCage(int cell) {
+		return this.cageOf[cell];
+	}
+
+	/**
+	 * Returns the cells of a cage.
+	 * @param cage cage index
+	 * @return row-major cell indexes in ascending order (shared, do not modify)
+	 */
+	public int[] getCells(int cage) {
+		return this.cells[cage];
+	}
+
+	/**
+	 * Returns the sum of a cage.
+	 * @param cage cage index
+	 * @return sum of the values of its cells
+	 */
+	public int getSum(int cage) {
+		return this.sums[cage];
+	}
+
+	/**
+	 * Returns the first cell of a cage in row-major order, where its sum is shown.
+	 * @param cage cage index
+	 * @return row-major cell index
+	 */
+	public int getFirstCell(int cage) {
+		return this.cells[cage][0];
+	}
+
+	/**
+	 * Returns the values that can still go into an empty cell of a cage.
+	 * @param cellsLeft empty cells of the cage, including the cell, at least 1
+	 * @param sumLeft cage sum minus the values already in the cage
+	 * @param used bitmask of the values already in the cage
+	 * @return bitmask of the values that belong to some set of cellsLeft distinct values,
+	 *         none of them used, adding up to sumLeft
+	 */
+	public int allowed(int cellsLeft, int sumLeft, int used) {
+
+		if(sumLeft < 0 || sumLeft >= this.combinations[cellsLeft].length) {
+			return 0;
+		}
+
+		int allowed = 0;
+
+		for(int combination : this.combinations[cellsLeft][sumLeft]) {
+			if((combination & used) == 0) {
+				allowed |= combination;
+			}
+		}
+
+		return allowed;
+	}
+
+	/**
+	 * Checks whether a value can go into a cell without repeating a value of its cage or
+	 * making the cage sum unreachable, given the values already on the board.
+	 * @param values row-major board values, 0 for empty cells
+	 * @param cell row-major cell index
+	 * @param value value to check
+	 * @return true if the cage still admits the value
+	 */
+	public boolean canPlace(int[] values, int cell, int value) {
+
+		int cage = this.cageOf[cell];
+		int used = 0;
+		int sumLeft = this.sums[cage];
+		int cellsLeft = 0;
+
+		for(int k : this.cells[cage]) {
+
+			if(k == cell) {
+				continue;
+			}
+
+			if(values[k] == 0) {
+				cellsLeft++;
+			}
+
+			else {
+				used |= 1 << values[k];
+				sumLeft -= values[k];
+			}
+
+		}
+
+		return (this.allowed(cellsLeft + 1, sumLeft, used) & 1 << value) != 0;
+	}
+
+	/**
+	 * Returns the table of value sets for a board size, building it on first use.
+	 * @return combinations[count][sum]: bitmasks of the sets of count distinct values adding up to sum
+	 */
+	private static int[][][] combinationsOf(int size) {
+
+		int[][][] table = COMBINATIONS.get(size);
+
+		if(table != null) {
+			return table;
+		}
+
+		int maxSum = size * (size + 1) / 2;
+		int[][] counts = new int[size + 1][maxSum + 1];
+		table = new int[size + 1][maxSum + 1][];
+
+		for(int pass = 0 ; pass < 2 ; pass++) {		// Count, then fill
+
+			for(int set = 0 ; set < 1 << size ; set++) {
+
+				int mask = set << 1;		// Bit v for value v
+				int count = Integer.bitCount(mask);
+				int sum = 0;
+
+				for(int bits = mask ; bits != 0 ; bits &= bits - 1) {
+					sum += Integer.numberOfTrailingZeros(bits);
+				}
+
+				if(pass == 0) {
+					counts[count][sum]++;
+				}
+
+				else {
+					table[count][sum][--counts[count][sum]] = mask;
+				}
+
+			}
+
+			if(pass == 0) {
+
+				for(int count = 0 ; count <= size ; count++) {
+					for(int sum = 0 ; sum <= maxSum ; sum++) {
+						table[count][sum] = new int[counts[count][sum]];
+					}
+				}
+
+			}
+
+		}
+
+		COMBINATIONS.compareAndSet(size, null, table);
+
+		return COMBINATIONS.get(size);
+	}
+
+	private static int addNeighbours(int size, int cell, int[] frontier, int frontierSize) {
+
+		int row = cell / size;
+		int column = cell % size;
+
+		if(row > 0) {
+			frontier[frontierSize++] = cell - size;
+		}
+
+		if(row < size - 1) {
+			frontier[frontierSize++] = cell + size;
+		}
+
+		if(column > 0) {
+			frontier[frontierSize++] = cell - 1;
+		}
+
+		if(column < size - 1) {
+			frontier[frontierSize++] = cell + 1;
+		}
+
+		return frontierSize;
+	}
+
+}
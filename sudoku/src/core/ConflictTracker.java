@@ -0,0 +1,387 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tracks every rule conflict on a board: values repeated within a row, column, box or
+ * any other unit of the board's {@link Layout}, and on Killer boards values repeated
+ * within a cage and cage sums that are exceeded, or missed once the cage is full.
+ *
+ * The tracker counts, for every unit, how often each value occurs; cages are counted as
+ * extra units after those of the layout, and keep a running sum. It is built in one
+ * pass over the board and then updated in O(1) per changed cell, so asking whether the
+ * board has conflicts, or whether a given cell is part of one, never rescans the board.
+ * Listing the conflicts only visits the units that actually hold a repeated value.
+ *
+ * Usage example:
+ * <pre>
+ * ConflictTracker conflicts = board.getConflictTracker();
+ * for(ConflictTracker.Conflict conflict : conflicts.getConflicts()) {
+ *     System.out.println(conflict);
+ * }
+ * </pre>
+ */
+public class ConflictTracker implements BoardListener {
+
+	/**
+	 * A value repeated within one unit, with every cell holding it, or a broken cage sum,
+	 * with every filled cell of the cage.
+	 */
+	public static class Conflict {
+
+		private final int unitType;
+		private final int unitIndex;
+		private final String unitName;
+		private final int value;
+		private final int sum;
+		private final int expectedSum;
+		private final int[][] cells;
+
+		Conflict(int unitType, int unitIndex, String unitName, int value, int[][] cells) {
+			this(unitType, unitIndex, unitName, value, 0, 0, cells);
+		}
+
+		Conflict(int unitType, int unitIndex, String unitName, int value, int sum, int expectedSum, int[][] cells) {
+			this.unitType = unitType;
+			this.unitIndex = unitIndex;
+			this.unitName = unitName;
+			this.value = value;
+			this.sum = sum;
+			this.expectedSum = expectedSum;
+			this.cells = cells;
+		}
+
+		/** @return one of the Layout.UNIT_ constants, Layout.UNIT_CAGE for Killer cages */
+		public int getUnitType() {
+			return this.unitType;
+		}
+
+		/** @return index of the unit among the units of its type (0-based, boxes in row-major order) */
+		public int getUnitIndex() {
+			return this.unitIndex;
+		}
+
+		/** @return the repeated value, 0 for a broken cage sum */
+		public int getValue() {
+			return this.value;
+		}
+
+		/** @return sum of the filled cells of the cage for a broken cage sum, otherwise 0 */
+		public int getSum() {
+			return this.sum;
+		}
+
+		/** @return sum the cage must add up to for a broken cage sum, otherwise 0 */
+		public int getExpectedSum() {
+			return this.expectedSum;
+		}
+
+		/** @return {row, column} of every cell holding the value in this unit, or of every filled cell of the cage */
+		public int[][] getCells() {
+			return this.cells;
+		}
+
+		/**
+		 * Describes the conflict with 1-based positions, e.g. "Row 3: value 5 at (3,1) (3,7)"
+		 * or "Cage 4: sum 19 instead of 15 at (2,1) (2,2) (3,1)".
+		 */
+		@Override
+		public String toString() {
+
+			StringBuilder out = new StringBuilder();
+			out.append(Character.toUpperCase(this.unitName.charAt(0))).append(this.unitName, 1, this.unitName.length());
+			out.append(' ').append(this.unitIndex + 1);
+
+			if(this.value == 0) {
+				out.append(": sum ").append(this.sum).append(" instead of ").append(this.expectedSum).append(" at");
+			}
+
+			else {
+				out.append(": value ").append(this.value).append(" at");
+			}
+
+
+			for(int[] cell : this.cells) {
+				out.append(" (").append(cell[0] + 1).append(',').append(cell[1] + 1).append(')');
+			}
+
+			return out.toString();
+		}
+	}
+
+	private final Board board;
+	private final Layout layout;
+	private final int size;
+	private final int unitCount;		// Units of the layout; the cages follow them
+	private Cages cages;				// Cages counted, null for boards without cages
+	private int[][] counts;				// counts[unit][value], units numbered as in the layout, then the cages
+	private int[] repeatedValues;		// Per unit, number of values occurring more than once
+	private int[] cageSums;				// Per cage, sum of its filled cells
+	private int[] cageFilled;			// Per cage, number of filled cells
+	private int conflictingUnits;		// Units with at least one repeated value
+	private int brokenSums;				// Cages whose sum is exceeded, or missed while full
+
+	/**
+	 * Builds the tracker with a single pass over the board.
+	 * @param board board to track
+	 */
+	ConflictTracker(Board board) {
+
+		this.board = board;
+		this.layout = board.getLayout();
+		this.size = board.getSize();
+		this.unitCount = this.layout.getUnitCount();
+
+		boardReplaced();
+	}
+
+	/**
+	 * Updates the counts after a cell changed. Called by the board on every change.
+	 * @param row row index
+	 * @param column column index
+	 * @param oldValue previous value, 0 if empty
+	 * @param newValue new value, 0 if cleared
+	 */
+	@Override
+	public void cellChanged(int row, int column, int oldValue, int newValue) {
+		remove(row, column, oldValue);
+		add(row, column, newValue);
+	}
+
+	/**
+	 * Counts the whole board again after generation replaced it, with its new cages.
+	 */
+	@Override
+	public void boardReplaced() {
+
+		Cages cages = this.board.getCages();
+		int cageCount = cages == null ? 0 : cages.getCageCount();
+
+		if(this.counts == null || cages != this.cages) {
+			this.cages = cages;
+			this.counts = new int[this.unitCount + cageCount][this.size + 1];
+			this.repeatedValues = new int[this.counts.length];
+			this.cageSums = new int[cageCount];
+			this.cageFilled = new int[cageCount];
+		}
+
+		else {
+
+			for(int[] unitCounts : this.counts) {
+				Arrays.fill(unitCounts, 0);
+			}
+
+			Arrays.fill(this.repeatedValues, 0);
+			Arrays.fill(this.cageSums, 0);
+			Arrays.fill(this.cageFilled, 0);
+		}
+
+		this.conflictingUnits = 0;
+		this.brokenSums = 0;
+
+		for(int i = 0 ; i < this.size ; i++) {
+			for(int j = 0 ; j < this.size ; j++) {
+				add(i, j, this.board.getValue(i, j));
+			}
+		}
+
+	}
+
+	/**
+	 * Returns whether any unit holds a repeated value or any cage sum is broken.
+	 * @return true if the board has conflicts
+	 */
+	public boolean hasConflicts() {
+		return this.conflictingUnits > 0 || this.brokenSums > 0;
+	}
+
+	/**
+	 * Returns whether a cell's value is repeated in any of its units or its cage,
+	 * or its cage's sum is broken.
+	 * @param row row index
+	 * @param column column index
+	 * @return true if the cell is part of a conflict
+	 */
+	public boolean isConflicting(int row, int column) {
+
+		int value = this.board.getValue(row, column);
+
+		if(value <= 0 || value > this.size) {
+			return false;
+		}
+
+		int k = row * this.size + column;
+
+		for(int unit : this.layout.getUnitsOf(k)) {
+
+			if(this.counts[unit][value] > 1) {
+				return true;
+			}
+
+		}
+
+		if(this.cages == null) {
+			return false;
+		}
+
+		int cage = this.cages.getCage(k);
+
+		return this.counts[this.unitCount + cage][value] > 1 || isSumBroken(cage);
+	}
+
+	/**
+	 * Lists every conflict, grouped by unit: rows first, then columns, boxes and extra units,
+	 * then cages, each with its repeated values before its broken sum.
+	 * @return conflicts, empty if there are none
+	 */
+	public List<Conflict> getConflicts() {
+
+		List<Conflict> conflicts = new ArrayList<>();
+
+		if(!hasConflicts()) {
+			return conflicts;
+		}
+
+		for(int unit = 0 ; unit < this.counts.length ; unit++) {
+
+			boolean cage = unit >= this.unitCount;
+
+			if(this.repeatedValues[unit] > 0) {
+
+				for(int value = 1 ; value <= this.size ; value++) {
+
+					if(this.counts[unit][value] > 1) {
+						conflicts.add(cage
+								? new Conflict(Layout.UNIT_CAGE, unit - this.unitCount, "cage", value, cellsWith(unit, value, this.counts[unit][value]))
+								: new Conflict(this.layout.getUnitType(unit), this.layout.getUnitIndex(unit), this.layout.getUnitName(unit),
+										value, cellsWith(unit, value, this.counts[unit][value])));
+					}
+
+				}
+
+			}
+
+			if(cage && isSumBroken(unit - this.unitCount)) {
+
+				int index = unit - this.unitCount;
+
+				conflicts.add(new Conflict(Layout.UNIT_CAGE, index, "cage", 0, this.cageSums[index], this.cages.getSum(index),
+						cellsWith(unit, -1, this.cageFilled[index])));
+			}
+
+		}
+
+		return conflicts;
+	}
+
+	/**
+	 * Lists the cells of a unit or cage holding a value, or every filled cell for value -1.
+	 */
+	private int[][] cellsWith(int unit, int value, int count) {
+
+		int[][] cells = new int[count][];
+		int found = 0;
+
+		for(int k : unit < this.unitCount ? this.layout.getUnit(unit) : this.cages.getCells(unit - this.unitCount)) {
+
+			int row = k / this.size;
+			int column = k % this.size;
+			int held = this.board.getValue(row, column);
+
+			if(value < 0 ? held > 0 : held == value) {
+				cells[found++] = new int[] {row, column};
+			}
+
+		}
+
+		return cells;
+	}
+
+	private void add(int row, int column, int value) {
+
+		if(value <= 0 || value > this.size) {
+			return;
+		}
+
+		int k = row * this.size + column;
+
+		for(int unit : this.layout.getUnitsOf(k)) {
+			increment(unit, value);
+		}
+
+		if(this.cages != null) {
+
+			int cage = this.cages.getCage(k);
+			boolean broken = isSumBroken(cage);
+
+			increment(this.unitCount + cage, value);
+			this.cageSums[cage] += value;
+			this.cageFilled[cage]++;
+			sumChanged(cage, broken);
+		}
+
+	}
+
+	private void remove(int row, int column, int value) {
+
+		if(value <= 0 || value > this.size) {
+			return;
+		}
+
+		int k = row * this.size + column;
+
+		for(int unit : this.layout.getUnitsOf(k)) {
+			decrement(unit, value);
+		}
+
+		if(this.cages != null) {
+
+			int cage = this.cages.getCage(k);
+			boolean broken = isSumBroken(cage);
+
+			decrement(this.unitCount + cage, value);
+			this.cageSums[cage] -= value;
+			this.cageFilled[cage]--;
+			sumChanged(cage, broken);
+		}
+
+	}
+
+	/**
+	 * Checks whether a cage's filled cells add up to more than its sum, or, once every
+	 * cell is filled, to anything but its sum.
+	 */
+	private boolean isSumBroken(int cage) {
+
+		int expected = this.cages.getSum(cage);
+
+		return this.cageSums[cage] > expected || this.cageFilled[cage] == this.cages.getCells(cage).length && this.cageSums[cage] != expected;
+	}
+
+	private void sumChanged(int cage, boolean wasBroken) {
+
+		if(isSumBroken(cage) != wasBroken) {
+			this.brokenSums += wasBroken ? -1 : 1;
+		}
+
+	}
+
+	private void increment(int unit, int value) {
+
+		if(++this.counts[unit][value] == 2 && this.repeatedValues[unit]++ == 0) {
+			this.conflictingUnits++;
+		}
+
+	}
+
+	private void decrement(int unit, int value) {
+
+		if(this.counts[unit][value]-- == 2 && --this.repeatedValues[unit] == 0) {
+			this.conflictingUnits--;
+		}
+
+	}
+
+}
@@ -0,0 +1,433 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Rates puzzles by the techniques a human needs to solve them, rather than by how
+ * many cells are hidden.
+ *
+ * The rater solves the puzzle by logic only, always using the simplest technique that
+ * makes progress, and the rating is the hardest technique it had to use:
+ * - RATING_EASY: naked and hidden singles
+ * - RATING_MEDIUM: locked candidates (a value confined to the intersection of two units
+ *   is removed from the rest of both)
+ * - RATING_HARD: naked pairs and triples (two or three cells of a unit sharing two or
+ *   three candidates remove them from the rest of the unit)
+ * - RATING_EXPERT: the techniques above get stuck and the puzzle needs trial and error
+ *
+ * Puzzles without exactly one solution are rated RATING_INVALID. Candidates are bitmasks
+ * (bit v set when value v is still possible), and every technique works on the units of
+ * the {@link Layout}, so variants are rated the same way; void Samurai cells count as
+ * filled. Killer puzzles are not rated: their cages call for techniques of their own.
+ *
+ * A rater instance keeps its buffers between runs and can be reused for any number
+ * of puzzles of the same layout. It is not thread-safe.
+ *
+ * Usage example:
+ * <pre>
+ * DifficultyRater rater = new DifficultyRater(Layout.standard(9));
+ * if(rater.rate(cells) == DifficultyRater.RATING_HARD) {
+ *     ...
+ * }
+ * </pre>
+ */
+public class DifficultyRater {
+
+	// Ratings
+	public static final int RATING_INVALID = 0;
+	public static final int RATING_EASY = 1;
+	public static final int RATING_MEDIUM = 2;
+	public static final int RATING_HARD = 3;
+	public static final int RATING_EXPERT = 4;
+
+	private static final String[] RATING_NAMES = {"invalid", "easy", "medium", "hard", "expert"};
+	private static final int MAX_SUBSET = 3;		// Largest naked subset looked for
+
+	private final int size;
+	private final int valueCount;		// Values of the board, 9 on a 21x21 Samurai board
+	private final Layout layout;
+	private final Solver solver;
+	private final boolean[][] inUnit;	// Membership of every cell in every unit
+	private final int[] cells;			// Working grid, 0 = empty
+	private final int[] candidates;		// Candidates of every empty cell, 0 once filled
+	private final int[] subset = new int[MAX_SUBSET];
+	private int filled;
+
+	/**
+	 * Creates a rater for boards of the given layout.
+	 * @param layout units of the variant to rate
+	 * @throws IllegalArgumentException for Killer layouts
+	 */
+	public DifficultyRater(Layout layout) {
+
+		if(layout.getVariant() == Layout.VARIANT_KILLER) {
+			throw new IllegalArgumentException("Killer puzzles cannot be rated");
+		}
+
+		int cellCount = layout.getSize() * layout.getSize();
+
+		this.size = layout.getSize();
+		this.valueCount = layout.getValueCount();
+		this.layout = layout;
+		this.solver = new Solver(layout);
+		this.inUnit = new boolean[layout.getUnitCount()][cellCount];
+		this.cells = new int[cellCount];
+		this.candidates = new int[cellCount];
+
+		for(int unit = 0 ; unit < layout.getUnitCount() ; unit++) {
+			for(int cell : layout.getUnit(unit)) {
+				this.inUnit[unit][cell] = true;
+			}
+		}
+
+	}
+
+	/**
+	 * Returns the layout this rater handles.
+	 * @return layout
+	 */
+	public Layout getLayout() {
+		return this.layout;
+	}
+
+	/**
+	 * Returns the lowercase name of a rating, e.g. "hard".
+	 * @param rating RATING_INVALID to RATING_EXPERT
+	 * @return rating name
+	 */
+	public static String getRatingName(int rating) {
+		return RATING_NAMES[rating];
+	}
+
+	/**
+	 * Rates a board's current values.
+	 * @param board board to rate
+	 * @return RATING_INVALID to RATING_EXPERT
+	 */
+	public int rate(Board board) {
+
+		int[] values = new int[this.size * this.size];
+
+		for(int k = 0 ; k < values.length ; k++) {
+			values[k] = board.getValue(k / this.size, k % this.size);
+		}
+
+		return rate(values);
+	}
+
+	/**
+	 * Rates a puzzle.
+	 * @param puzzle row-major values, 0 for empty cells
+	 * @return RATING_INVALID to RATING_EXPERT
+	 */
+	public int rate(int[] puzzle) {
+
+		int full = ((1 << this.valueCount) - 1) << 1;
+
+		Arrays.fill(this.cells, 0);
+		this.filled = 0;
+
+		for(int k = 0 ; k < this.candidates.length ; k++) {
+			boolean cell = this.layout.isCell(k);
+			this.candidates[k] = cell ? full : 0;
+			this.filled += cell ? 0 : 1;		// Void cells never take a value
+		}
+
+		for(int k = 0 ; k < puzzle.length ; k++) {
+
+			int value = puzzle[k];
+
+			if(value < 0 || value > this.valueCount || value != 0 && (this.candidates[k] & 1 << value) == 0) {
+				return RATING_INVALID;		// Out of range, a void cell, or a peer already holds the value
+			}
+
+			if(value != 0) {
+				place(k, value);
+			}
+
+		}
+
+		int rating = RATING_EASY;
+
+		while(true) {
+
+			placeSingles();
+
+			if(this.filled == this.cells.length) {
+				return rating;		// Every step was forced, so the solution is unique
+			}
+
+			if(isContradicted()) {
+				return RATING_INVALID;
+			}
+
+			if(eliminateLockedCandidates()) {
+				rating = Math.max(rating, RATING_MEDIUM);
+			}
+
+			else if(eliminateNakedSubsets()) {
+				rating = Math.max(rating, RATING_HARD);
+			}
+
+			else {
+				// Stuck: the deductions so far hold in every solution, so searching from here is enough
+				return this.solver.load(this.cells) && this.solver.solve(2) == 1 ? RATING_EXPERT : RATING_INVALID;
+			}
+
+		}
+
+	}
+
+	/**
+	 * Places naked singles (a cell with one candidate) and hidden singles (a value with
+	 * one place left in a unit) until there are none left.
+	 */
+	private void placeSingles() {
+
+		boolean progress = true;
+
+		while(progress) {
+
+			progress = false;
+
+			for(int k = 0 ; k < this.cells.length ; k++) {
+
+				int mask = this.candidates[k];
+
+				if(mask != 0 && (mask & (mask - 1)) == 0) {
+					place(k, Integer.numberOfTrailingZeros(mask));
+					progress = true;
+				}
+
+			}
+
+			for(int unit = 0 ; unit < this.layout.getUnitCount() ; unit++) {
+
+				int once = 0;
+				int twice = 0;
+
+				for(int cell : this.layout.getUnit(unit)) {
+					twice |= once & this.candidates[cell];
+					once |= this.candidates[cell];
+				}
+
+				int hidden = once & ~twice;
+
+				while(hidden != 0) {
+
+					int bit = hidden & -hidden;
+					hidden &= hidden - 1;
+
+					for(int cell : this.layout.getUnit(unit)) {
+
+						if((this.candidates[cell] & bit) != 0) {
+							place(cell, Integer.numberOfTrailingZeros(bit));
+							progress = true;
+							break;
+						}
+
+					}
+
+				}
+
+			}
+
+		}
+
+	}
+
+	/**
+	 * Looks for a value whose candidates in a unit all lie in one other unit, and removes
+	 * it from the rest of that other unit (pointing and claiming).
+	 * @return true if a candidate was removed
+	 */
+	private boolean eliminateLockedCandidates() {
+
+		for(int unit = 0 ; unit < this.layout.getUnitCount() ; unit++) {
+
+			int[] cellsOfUnit = this.layout.getUnit(unit);
+
+			for(int value = 1 ; value <= this.valueCount ; value++) {
+
+				int bit = 1 << value;
+				int first = -1;
+				int count = 0;
+
+				for(int cell : cellsOfUnit) {
+					if((this.candidates[cell] & bit) != 0) {
+						first = count++ == 0 ? cell : first;
+					}
+				}
+
+				if(count < 2) {
+					continue;
+				}
+
+				for(int other : this.layout.getUnitsOf(first)) {
+
+					if(other == unit || !containsAll(other, cellsOfUnit, bit)) {
+						continue;
+					}
+
+					boolean removed = false;
+
+					for(int cell : this.layout.getUnit(other)) {
+
+						if(!this.inUnit[unit][cell] && (this.candidates[cell] & bit) != 0) {
+							this.candidates[cell] &= ~bit;
+							removed = true;
+						}
+
+					}
+
+					if(removed) {
+						return true;
+					}
+
+				}
+
+			}
+
+		}
+
+		return false;
+	}
+
+	/**
+	 * Looks for two or three cells of a unit whose candidates together are just two or
+	 * three values, and removes those values from the other cells of the unit.
+	 * @return true if a candidate was removed
+	 */
+	private boolean eliminateNakedSubsets() {
+
+		for(int n = 2 ; n <= MAX_SUBSET ; n++) {
+			for(int unit = 0 ; unit < this.layout.getUnitCount() ; unit++) {
+				if(findNakedSubset(this.layout.getUnit(unit), n, 0, 0, 0)) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Extends a subset of cells of a unit, in unit order, to n cells whose union of
+	 * candidates has n values, and applies it as soon as one is found.
+	 * @return true if a subset removed a candidate
+	 */
+	private boolean findNakedSubset(int[] unit, int n, int depth, int from, int union) {
+
+		if(depth == n) {
+
+			if(Integer.bitCount(union) != n) {
+				return false;
+			}
+
+			boolean removed = false;
+
+			for(int cell : unit) {
+
+				if(this.candidates[cell] != 0 && !isInSubset(cell, n) && (this.candidates[cell] & union) != 0) {
+					this.candidates[cell] &= ~union;
+					removed = true;
+				}
+
+			}
+
+			return removed;
+		}
+
+		for(int i = from ; i < unit.length ; i++) {
+
+			int mask = this.candidates[unit[i]];
+			int next = union | mask;
+
+			if(mask == 0 || Integer.bitCount(mask) > n || Integer.bitCount(next) > n) {
+				continue;
+			}
+
+			this.subset[depth] = unit[i];
+
+			if(findNakedSubset(unit, n, depth + 1, i + 1, next)) {
+				return true;
+			}
+
+		}
+
+		return false;
+	}
+
+	private boolean isInSubset(int cell, int n) {
+
+		for(int i = 0 ; i < n ; i++) {
+			if(this.subset[i] == cell) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Checks whether an empty cell has no candidate left or a unit has no place left for one of its missing values.
+	 */
+	private boolean isContradicted() {
+
+		for(int k = 0 ; k < this.cells.length ; k++) {
+			if(this.cells[k] == 0 && this.candidates[k] == 0 && this.layout.isCell(k)) {
+				return true;
+			}
+		}
+
+		int full = ((1 << this.valueCount) - 1) << 1;
+
+		for(int unit = 0 ; unit < this.layout.getUnitCount() ; unit++) {
+
+			int covered = 0;
+
+			for(int cell : this.layout.getUnit(unit)) {
+				covered |= this.cells[cell] == 0 ? this.candidates[cell] : 1 << this.cells[cell];
+			}
+
+			if(covered != full) {
+				return true;
+			}
+
+		}
+
+		return false;
+	}
+
+	/**
+	 * Checks whether every cell of the given cells holding a candidate lies in a unit.
+	 */
+	private boolean containsAll(int unit, int[] cellsToCheck, int bit) {
+
+		for(int cell : cellsToCheck) {
+			if((this.candidates[cell] & bit) != 0 && !this.inUnit[unit][cell]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Fills a cell and removes its value from the candidates of its peers.
+	 */
+	private void place(int cell, int value) {
+
+		int clear = ~(1 << value);
+
+		this.cells[cell] = value;
+		this.candidates[cell] = 0;
+		this.filled++;
+
+		for(int peer : this.layout.getPeers(cell)) {
+			this.candidates[peer] &= clear;
+		}
+
+	}
+
+}
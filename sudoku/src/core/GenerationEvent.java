@@ -0,0 +1,55 @@
+package core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering one puzzle generation ({@link Board#initializeBoard()}),
+ * from the first value placed to the last cell hidden.
+ */
+@Name("sudoku.Generation")
+@Label("Puzzle Generation")
+@Category({"Sudoku", "Generation"})
+@Description("Generation of a complete Sudoku puzzle")
+public class GenerationEvent extends Event {
+
+	@Label("Size")
+	int size;
+
+	@Label("Difficulty")
+	int difficulty;
+
+	@Label("Seed")
+	long seed;
+
+	@Label("Nodes Visited")
+	long nodes;
+
+	@Label("Outcome")
+	String outcome;
+
+	/**
+	 * Fills in the event and commits it if the recording enables it.
+	 * @param size board size
+	 * @param difficulty difficulty level
+	 * @param seed random seed of the board
+	 * @param nodes search nodes visited
+	 * @param outcome result of the generation (e.g., "generated")
+	 */
+	public void end(int size, int difficulty, long seed, long nodes, String outcome) {
+
+		if(shouldCommit()) {
+			this.size = size;
+			this.difficulty = difficulty;
+			this.seed = seed;
+			this.nodes = nodes;
+			this.outcome = outcome;
+			commit();
+		}
+
+	}
+
+}
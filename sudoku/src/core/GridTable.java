@@ -0,0 +1,332 @@
+package core;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every solution grid of a small layout, enumerated once and kept in a packed table, so
+ * boards of that layout are filled by a lookup instead of a search.
+ *
+ * Relabeling the values of a solution gives another solution of any layout, so the table
+ * only holds the normalized grids, whose first row reads 1, 2, .., size: 12 for 4x4 and
+ * 39,168 for 6x6 with 2x3 boxes. Every solution is one of them with its values relabeled,
+ * and a random entry under a random relabeling is a uniformly random solution.
+ *
+ * A grid is packed into a long, each row after the first as the rank of its permutation
+ * of the values in lexicographic order, so the table of a 6x6 layout takes about 300 KB.
+ * Layouts up to {@link #MAX_SIZE} are supported; tables of all layouts but jigsaws,
+ * which are built fresh every game, are cached.
+ *
+ * Usage example:
+ * <pre>
+ * GridTable table = GridTable.of(Layout.standard(6));
+ * table.fill(random, cells);
+ * </pre>
+ */
+public final class GridTable {
+
+	public static final int MAX_SIZE = 6;		// (MAX_SIZE - 1) rows of ranks below MAX_SIZE! fit in a long
+
+	private static final Map<Layout, GridTable> CACHE = new ConcurrentHashMap<>();
+
+	private final Layout layout;
+	private final int size;
+	private final int rankBits;			// Bits of one packed row
+	private final long[] grids;			// Packed normalized grids, in ascending order
+
+	private GridTable(Layout layout) {
+
+		this.layout = layout;
+		this.size = layout.getSize();
+		this.rankBits = 64 - Long.numberOfLeadingZeros(factorial(this.size) - 1);
+		this.grids = new Enumerator().run();
+	}
+
+	/**
+	 * Checks whether a layout is small enough for a table.
+	 * @param layout layout to check
+	 * @return true if {@link #of(Layout)} accepts it
+	 */
+	public static boolean supports(Layout layout) {
+		return layout.getSize() <= MAX_SIZE;
+	}
+
+	/**
+	 * Returns the table of a layout, enumerating it on first use.
+	 * @param layout layout of at most MAX_SIZE values
+	 * @return grid table
+	 * @throws IllegalArgumentException if the layout is larger than MAX_SIZE
+	 */
+	public static GridTable of(Layout layout) {
+
+		if(!supports(layout)) {
+			throw new IllegalArgumentException("Grid tables hold layouts up to size " + MAX_SIZE + ", got " + layout.getSize());
+		}
+
+		if(layout.getVariant() == Layout.VARIANT_JIGSAW) {
+			return new GridTable(layout);
+		}
+
+		return CACHE.computeIfAbsent(layout, GridTable::new);
+	}
+
+	/**
+	 * Returns the layout of the grids.
+	 * @return layout
+	 */
+	public Layout getLayout() {
+		return this.layout;
+	}
+
+	/**
+	 * Returns the number of normalized grids. The layout has size! times as many solutions.
+	 * @return grid count, 0 if the layout has no solution
+	 */
+	public int getGridCount() {
+		return this.grids.length;
+	}
+
+	/**
+	 * Unpacks a normalized grid.
+	 * @param index grid index, 0 to getGridCount() - 1
+	 * @param cells receives the row-major values
+	 */
+	public void getGrid(int index, int[] cells) {
+
+		long packed = this.grids[index];
+		int mask = (1 << this.rankBits) - 1;
+
+		for(int column = 0 ; column < this.size ; column++) {
+			cells[column] = column + 1;
+		}
+
+		for(int row = this.size - 1 ; row >= 1 ; row--) {
+			unrank((int) packed & mask, cells, row * this.size);
+			packed >>>= this.rankBits;
+		}
+
+	}
+
+	/**
+	 * Fills cells with a uniformly random solution.
+	 * @param random source of randomness
+	 * @param cells receives the row-major values
+	 * @return false if the layout has no solution
+	 */
+	public boolean fill(Random random, int[] cells) {
+
+		if(this.grids.length == 0) {
+			return false;
+		}
+
+		getGrid(random.nextInt(this.grids.length), cells);
+		relabel(cells, random);
+
+		return true;
+	}
+
+	/**
+	 * Finds the normalized grid a solution is a relabeling of.
+	 * @param cells row-major values of a complete grid, each row a permutation of the values
+	 * @return grid index, or -1 if the grid is not a solution of the layout
+	 */
+	public int indexOf(int[] cells) {
+
+		int[] labels = new int[this.size + 1];		// Value in the solution -> normalized value
+		int[] row = new int[this.size];
+		long packed = 0;
+
+		for(int column = 0 ; column < this.size ; column++) {
+			labels[cells[column]] = column + 1;
+		}
+
+		for(int r = 1 ; r < this.size ; r++) {
+
+			for(int column = 0 ; column < this.size ; column++) {
+				row[column] = labels[cells[r * this.size + column]];
+			}
+
+			packed = packed << this.rankBits | rank(row);
+		}
+
+		int index = Arrays.binarySearch(this.grids, packed);
+
+		return index >= 0 ? index : -1;
+	}
+
+	/**
+	 * Applies a random permutation of the values to a grid. Empty cells stay empty.
+	 * @param cells row-major values, changed in place
+	 * @param random source of randomness
+	 */
+	public void relabel(int[] cells, Random random) {
+
+		int[] labels = new int[this.size + 1];
+
+		for(int v = 0 ; v <= this.size ; v++) {
+			labels[v] = v;
+		}
+
+		for(int v = this.size ; v > 1 ; v--) {
+			int w = 1 + random.nextInt(v);
+			int swap = labels[v];
+			labels[v] = labels[w];
+			labels[w] = swap;
+		}
+
+		for(int k = 0 ; k < cells.length ; k++) {
+			cells[k] = labels[cells[k]];
+		}
+
+	}
+
+	/**
+	 * Lexicographic rank of a permutation of 1..size (Lehmer code).
+	 */
+	private long rank(int[] row) {
+
+		long rank = 0;
+		int used = 0;
+
+		for(int i = 0 ; i < this.size ; i++) {
+			int smaller = Integer.bitCount(~used & ((1 << row[i]) - 2));		// Unused values below row[i]
+			rank = rank * (this.size - i) + smaller;
+			used |= 1 << row[i];
+		}
+
+		return rank;
+	}
+
+	/**
+	 * Writes the permutation of 1..size with the given rank.
+	 */
+	private void unrank(int rank, int[] cells, int offset) {
+
+		int free = ((1 << this.size) - 1) << 1;
+
+		for(int i = 0 ; i < this.size ; i++) {
+
+			int weight = (int) factorial(this.size - 1 - i);
+			int skip = rank / weight;
+			rank %= weight;
+
+			int bits = free;
+
+			for(int s = 0 ; s < skip ; s++) {
+				bits &= bits - 1;
+			}
+
+			int value = Integer.numberOfTrailingZeros(bits);
+			cells[offset + i] = value;
+			free &= ~(1 << value);
+		}
+
+	}
+
+	private static long factorial(int n) {
+
+		long result = 1;
+
+		for(int i = 2 ; i <= n ; i++) {
+			result *= i;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Backtracking over the cells after the first row, in row-major order with values
+	 * in ascending order, so grids are found in ascending packed order.
+	 */
+	private final class Enumerator {
+
+		private final int[] cells = new int[size * size];
+		private final int[] unitMask = new int[layout.getUnitCount()];
+		private final int[] row = new int[size];
+		private long[] found = new long[16];
+		private int count;
+
+		long[] run() {
+
+			for(int column = 0 ; column < size ; column++) {
+				place(column, column + 1);
+			}
+
+			search(size);
+
+			long[] grids = Arrays.copyOf(this.found, this.count);
+			Arrays.sort(grids);
+
+			return grids;
+		}
+
+		private void search(int k) {
+
+			if(k == this.cells.length) {
+				record();
+				return;
+			}
+
+			for(int value = 1 ; value <= size ; value++) {
+
+				if(canPlace(k, value)) {
+					place(k, value);
+					search(k + 1);
+					unplace(k);
+				}
+
+			}
+
+		}
+
+		private boolean canPlace(int k, int value) {
+
+			for(int unit : layout.getUnitsOf(k)) {
+				if((this.unitMask[unit] & 1 << value) != 0) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		private void place(int k, int value) {
+
+			this.cells[k] = value;
+
+			for(int unit : layout.getUnitsOf(k)) {
+				this.unitMask[unit] |= 1 << value;
+			}
+
+		}
+
+		private void unplace(int k) {
+
+			for(int unit : layout.getUnitsOf(k)) {
+				this.unitMask[unit] &= ~(1 << this.cells[k]);
+			}
+
+			this.cells[k] = 0;
+		}
+
+		private void record() {
+
+			long packed = 0;
+
+			for(int r = 1 ; r < size ; r++) {
+				System.arraycopy(this.cells, r * size, this.row, 0, size);
+				packed = packed << rankBits | rank(this.row);
+			}
+
+			if(this.count == this.found.length) {
+				this.found = Arrays.copyOf(this.found, this.count * 2);
+			}
+
+			this.found[this.count++] = packed;
+		}
+
+	}
+
+}
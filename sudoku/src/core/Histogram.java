@@ -0,0 +1,195 @@
+package core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, log-bucketed histogram of non-negative long values (e.g., nanoseconds).
+ *
+ * Every power of two is split into 16 linear sub-buckets, so any recorded value is
+ * reported within about 6% of its true value. Recording is a couple of bit operations
+ * plus one atomic increment and is safe from any number of threads. Percentile queries
+ * walk a fixed number of buckets, so their cost does not depend on how many values
+ * were recorded.
+ */
+public class Histogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	public static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+	/**
+	 * Records one value. Negative values are recorded as 0.
+	 * @param value value to record
+	 */
+	public void record(long value) {
+		this.counts.incrementAndGet(bucketOf(Math.max(0, value)));
+	}
+
+	/**
+	 * Records a value several times, e.g. when merging from another source.
+	 * @param value value to record
+	 * @param count number of occurrences
+	 */
+	public void record(long value, long count) {
+		this.counts.addAndGet(bucketOf(Math.max(0, value)), count);
+	}
+
+	/**
+	 * Returns the number of values recorded.
+	 * @return total count
+	 */
+	public long getCount() {
+
+		long total = 0;
+
+		for(int i = 0 ; i < BUCKET_COUNT ; i++) {
+			total += this.counts.get(i);
+		}
+
+		return total;
+	}
+
+	/**
+	 * Returns the value at the given percentile.
+	 * @param percentile percentile between 0 and 100
+	 * @return upper bound of the bucket holding that percentile, or 0 if empty
+	 */
+	public long getPercentile(double percentile) {
+
+		long total = getCount();
+
+		if(total == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+		long seen = 0;
+
+		for(int i = 0 ; i < BUCKET_COUNT ; i++) {
+
+			seen += this.counts.get(i);
+
+			if(seen >= rank) {
+				return upperBoundOf(i);
+			}
+
+		}
+
+		return upperBoundOf(BUCKET_COUNT - 1);
+	}
+
+	/**
+	 * Returns the smallest recorded value, rounded down to its bucket.
+	 * @return lower bound of the first non-empty bucket, or 0 if empty
+	 */
+	public long getMin() {
+
+		for(int i = 0 ; i < BUCKET_COUNT ; i++) {
+
+			if(this.counts.get(i) != 0) {
+				return lowerBoundOf(i);
+			}
+
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Returns the largest recorded value, rounded up to its bucket.
+	 * @return upper bound of the last non-empty bucket, or 0 if empty
+	 */
+	public long getMax() {
+
+		for(int i = BUCKET_COUNT - 1 ; i >= 0 ; i--) {
+
+			if(this.counts.get(i) != 0) {
+				return upperBoundOf(i);
+			}
+
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Returns the count held by a bucket.
+	 * @param bucket bucket index, 0 to BUCKET_COUNT - 1
+	 * @return count of the bucket
+	 */
+	public long getBucketCount(int bucket) {
+		return this.counts.get(bucket);
+	}
+
+	/**
+	 * Adds every count of another histogram to this one.
+	 * @param other histogram to merge in
+	 */
+	public void add(Histogram other) {
+
+		for(int i = 0 ; i < BUCKET_COUNT ; i++) {
+
+			long count = other.counts.get(i);
+
+			if(count != 0) {
+				this.counts.addAndGet(i, count);
+			}
+
+		}
+
+	}
+
+	/**
+	 * Clears all counts.
+	 */
+	public void reset() {
+
+		for(int i = 0 ; i < BUCKET_COUNT ; i++) {
+			this.counts.set(i, 0);
+		}
+
+	}
+
+	/**
+	 * Maps a value to its bucket: values below 16 get one bucket each,
+	 * larger ones are split by magnitude and then by their next 4 bits.
+	 */
+	static int bucketOf(long value) {
+
+		if(value < SUB_BUCKETS) {
+			return (int) value;
+		}
+
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);		// >= SUB_BUCKET_BITS
+		int shift = magnitude - SUB_BUCKET_BITS;
+		int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+
+		return (shift + 1) * SUB_BUCKETS + sub;
+	}
+
+	static long lowerBoundOf(int bucket) {
+
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		int shift = bucket / SUB_BUCKETS - 1;
+		long sub = bucket % SUB_BUCKETS;
+
+		return (SUB_BUCKETS + sub) << shift;
+	}
+
+	static long upperBoundOf(int bucket) {
+
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		int shift = bucket / SUB_BUCKETS - 1;
+
+		return lowerBoundOf(bucket) + (1L << shift) - 1;
+	}
+
+}
@@ -0,0 +1,516 @@
+package core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Append-only autosave journal of a game in progress.
+ *
+ * The journal file is a sequence of records:
+ * - snapshot: tag 1, then the board encoded with {@link BoardCodec}
+ * - move: tag 2, then row, column and value (one byte each)
+ * - reveal: tag 3, then row, column and value (one byte each), a cell revealed as a hint
+ *
+ * Snapshots hold revealed cells empty and are followed by a reveal record for each of
+ * them, so replaying counts every hint again, compacted or not.
+ *
+ * Moves are handed to a background writer thread through an unbounded queue, so the
+ * game thread never waits for the disk. The writer gathers the moves that arrive within
+ * a short interval and makes them durable with a single fsync. Every few hundred moves
+ * it compacts the journal: it writes a fresh snapshot to a temporary file and atomically
+ * replaces the journal with it. The writer keeps its own copy of the encoded board for
+ * this, so it never reads the board the game is modifying.
+ *
+ * The journal listens to the board it was started for, so every change of a cell is
+ * recorded without the front ends having to report it.
+ *
+ * {@link #resume(Path)} replays the last snapshot and the moves after it. A record cut
+ * short by a crash is ignored.
+ *
+ * Usage example:
+ * <pre>
+ * Board board = Journal.resume(Journal.DEFAULT_FILE);	// null if there is no saved game
+ * try(Journal journal = Journal.start(Journal.DEFAULT_FILE, board)) {
+ *     board.setValue(row, column, value);		// recorded by the journal
+ * }
+ * </pre>
+ */
+public class Journal implements AutoCloseable, BoardListener {
+
+	public static final Path DEFAULT_FILE = Path.of(System.getProperty("user.home"), ".sudoku", "autosave.journal");
+
+	private static final byte SNAPSHOT = 1;
+	private static final byte MOVE = 2;
+	private static final byte REVEAL = 3;
+	private static final int MOVE_LENGTH = 4;		// Reveal records have the same length
+	private static final int SNAPSHOT_INTERVAL = 256;		// Moves appended between compactions
+	private static final long SYNC_INTERVAL_MILLIS = 20;		// Moves arriving within this share one fsync
+
+	// Request kinds
+	private static final int KIND_MOVE = 0;
+	private static final int KIND_FLUSH = 1;
+	private static final int KIND_STOP = 2;
+	private static final int KIND_REVEAL = 3;
+
+	/**
+	 * One entry of the writer queue.
+	 */
+	private static final class Request {
+
+		final int kind;
+		final int row;
+		final int column;
+		final int value;
+		final CountDownLatch done;		// Released once the request is durable, null for moves and reveals
+
+		Request(int kind, int row, int column, int value, CountDownLatch done) {
+			this.kind = kind;
+			this.row = row;
+			this.column = column;
+			this.value = value;
+			this.done = done;
+		}
+	}
+
+	private final Path file;
+	private Board source;				// Board whose changes are recorded, null once closed
+	private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+	private final Thread writer;
+	private final byte[] board;			// Writer thread only: current board in BoardCodec form, revealed cells empty
+	private final byte[] revealed;		// Writer thread only: value of every revealed cell, 0 for the others
+	private final int size;
+	private volatile boolean closed;
+	private volatile IOException failure;	// First write error; the journal stops recording after it
+	private volatile long syncs;			// fsyncs done, written by the writer thread only
+	private volatile long compactions;
+	private FileChannel channel;
+	private int movesSinceSnapshot;
+
+	private Journal(Path file, byte[] board, byte[] revealed) {
+		this.file = file;
+		this.board = board;
+		this.revealed = revealed;
+		this.size = board[0];
+		this.writer = new Thread(this::run, "journal-writer");
+		this.writer.setDaemon(true);
+	}
+
+	/**
+	 * Starts journaling a board. The journal file is replaced by a snapshot of the board
+	 * in the background; the call itself does no I/O.
+	 * @param file journal file, its directory is created if needed
+	 * @param board board to journal, as it is now
+	 * @return running journal
+	 */
+	public static Journal start(Path file, Board board) {
+
+		int size = board.getSize();
+		byte[] encoded = BoardCodec.encodeUnrevealed(board);		// Revealed cells are recorded as reveals after the snapshot
+		byte[] revealed = new byte[size * size];
+
+		for(int i = 0 ; i < size ; i++) {
+
+			for(int j = 0 ; j < size ; j++) {
+
+				if(board.isCellRevealed(i, j)) {
+					revealed[i * size + j] = (byte) board.getValue(i, j);
+				}
+
+			}
+
+		}
+
+		Journal journal = new Journal(file, encoded, revealed);
+		journal.writer.start();
+		journal.source = board;
+		board.addListener(journal);
+
+		return journal;
+	}
+
+	/**
+	 * Rebuilds the board saved in a journal.
+	 * @param file journal file
+	 * @return the saved board, or null if there is none or it cannot be read
+	 */
+	public static Board resume(Path file) {
+
+		if(!Files.exists(file)) {
+			return null;
+		}
+
+		try {
+			return replay(Files.readAllBytes(file));
+		} catch(IOException e) {
+			System.err.println("Could not read autosave " + file + ": " + e.getMessage());
+			return null;
+		}
+
+	}
+
+	/**
+	 * Queues a move for writing. Never blocks.
+	 * @param row row index
+	 * @param column column index
+	 * @param value value placed, 0 when the cell was cleared
+	 */
+	public void recordMove(int row, int column, int value) {
+
+		if(!this.closed && this.failure == null) {
+			this.queue.offer(new Request(KIND_MOVE, row, column, value, null));
+		}
+
+	}
+
+	/**
+	 * Records a change of the journaled board. Called by the board on every change.
+	 * @param row row index
+	 * @param column column index
+	 * @param oldValue previous value, 0 if empty
+	 * @param newValue new value, 0 if cleared
+	 */
+	@Override
+	public void cellChanged(int row, int column, int oldValue, int newValue) {
+
+		if(newValue != 0 && this.source.isCellRevealed(row, column)) {
+
+			if(!this.closed && this.failure == null) {
+				this.queue.offer(new Request(KIND_REVEAL, row, column, newValue, null));
+			}
+
+		}
+
+		else {
+			recordMove(row, column, newValue);
+		}
+
+	}
+
+	/**
+	 * Waits until every move recorded so far is on disk.
+	 */
+	public void flush() {
+
+		if(!this.closed) {
+			await(KIND_FLUSH);
+		}
+
+	}
+
+	/**
+	 * Writes the remaining moves and stops the writer. The journal file is kept,
+	 * so the game can be resumed later.
+	 */
+	@Override
+	public void close() {
+
+		if(!this.closed) {
+
+			this.closed = true;
+
+			if(this.source != null) {
+				this.source.removeListener(this);
+				this.source = null;
+			}
+
+			await(KIND_STOP);
+		}
+
+	}
+
+	/**
+	 * Stops the writer and deletes the journal, e.g. once the game is solved.
+	 */
+	public void discard() {
+
+		close();
+
+		try {
+			Files.deleteIfExists(this.file);
+		} catch(IOException e) {
+			System.err.println("Could not delete autosave " + this.file + ": " + e.getMessage());
+		}
+
+	}
+
+	/**
+	 * Returns the number of fsyncs done so far.
+	 * @return fsync count
+	 */
+	public long getSyncs() {
+		return this.syncs;
+	}
+
+	/**
+	 * Returns the number of times the journal was compacted into a snapshot.
+	 * @return compaction count
+	 */
+	public long getCompactions() {
+		return this.compactions;
+	}
+
+	private void await(int kind) {
+
+		if(!this.writer.isAlive()) {
+			return;
+		}
+
+		CountDownLatch done = new CountDownLatch(1);
+		this.queue.offer(new Request(kind, 0, 0, 0, done));
+
+		try {
+			done.await();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+	}
+
+	/**
+	 * Writer loop: takes a batch of requests, appends its moves, syncs once, then
+	 * releases whoever waits on the batch.
+	 */
+	private void run() {
+
+		List<Request> batch = new ArrayList<>();
+		ByteBuffer buffer = ByteBuffer.allocate(MOVE_LENGTH * 64);
+		boolean stopping = false;
+
+		try {
+
+			compact();
+
+			while(!stopping) {
+
+				Request first = this.queue.take();
+				batch.add(first);
+
+				if(first.kind == KIND_MOVE) {
+					Thread.sleep(SYNC_INTERVAL_MILLIS);		// Group commit: let more moves arrive
+				}
+
+				this.queue.drainTo(batch);
+
+				for(Request request : batch) {
+
+					if(request.kind == KIND_MOVE) {
+
+						if(buffer.remaining() < MOVE_LENGTH) {
+							write(buffer);
+						}
+
+						buffer.put(MOVE).put((byte) request.row).put((byte) request.column).put((byte) request.value);
+						BoardCodec.setValue(this.board, request.row, request.column, request.value);
+						this.movesSinceSnapshot++;
+					}
+
+					else if(request.kind == KIND_REVEAL) {
+
+						if(buffer.remaining() < MOVE_LENGTH) {
+							write(buffer);
+						}
+
+						buffer.put(REVEAL).put((byte) request.row).put((byte) request.column).put((byte) request.value);
+						this.revealed[request.row * this.size + request.column] = (byte) request.value;
+						this.movesSinceSnapshot++;
+					}
+
+					else if(request.kind == KIND_STOP) {
+						stopping = true;
+					}
+
+				}
+
+				write(buffer);
+				this.channel.force(false);
+				this.syncs++;
+
+				if(this.movesSinceSnapshot >= SNAPSHOT_INTERVAL) {
+					compact();
+				}
+
+				release(batch);
+				batch.clear();
+			}
+
+		} catch(IOException e) {
+			this.failure = e;
+			System.err.println("Autosave stopped: " + e.getMessage());
+		} catch(InterruptedException e) {
+			// Shutting down
+		} finally {
+
+			closeChannel();
+
+			// Nobody may wait forever on a writer that is gone
+			release(batch);
+			this.queue.drainTo(batch);
+			release(batch);
+		}
+
+	}
+
+	private void write(ByteBuffer buffer) throws IOException {
+
+		buffer.flip();
+
+		while(buffer.hasRemaining()) {
+			this.channel.write(buffer);
+		}
+
+		buffer.clear();
+	}
+
+	/**
+	 * Replaces the journal with a single snapshot of the current board and its reveals.
+	 */
+	private void compact() throws IOException {
+
+		Path directory = this.file.toAbsolutePath().getParent();
+
+		if(directory != null) {
+			Files.createDirectories(directory);
+		}
+
+		Path temporary = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+
+		try(FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+			ByteBuffer snapshot = ByteBuffer.allocate(1 + this.board.length + MOVE_LENGTH * this.revealed.length);
+			snapshot.put(SNAPSHOT).put(this.board);
+
+			for(int k = 0 ; k < this.revealed.length ; k++) {
+
+				if(this.revealed[k] != 0) {
+					snapshot.put(REVEAL).put((byte) (k / this.size)).put((byte) (k % this.size)).put(this.revealed[k]);
+				}
+
+			}
+
+			snapshot.flip();
+
+			while(snapshot.hasRemaining()) {
+				out.write(snapshot);
+			}
+
+			out.force(false);
+		}
+
+		closeChannel();
+		Files.move(temporary, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		this.channel = FileChannel.open(this.file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		this.movesSinceSnapshot = 0;
+		this.compactions++;
+	}
+
+	private void closeChannel() {
+
+		if(this.channel != null) {
+
+			try {
+				this.channel.close();
+			} catch(IOException e) {
+				// Nothing left to write through it
+			}
+
+			this.channel = null;
+		}
+
+	}
+
+	private static void release(List<Request> batch) {
+
+		for(Request request : batch) {
+
+			if(request.done != null) {
+				request.done.countDown();
+			}
+
+		}
+
+	}
+
+	/**
+	 * Rebuilds a board from journal bytes: the last snapshot, then every move and reveal
+	 * after it. Reveals go through {@link Board#revealCell(int, int)}, so the cells are
+	 * fixed and counted as hints again. Stops at the first incomplete or unknown record.
+	 */
+	private static Board replay(byte[] data) {
+
+		Board board = null;
+		int pos = 0;
+
+		while(pos < data.length) {
+
+			if(data[pos] == SNAPSHOT) {
+
+				int length = BoardCodec.encodedLength(data, pos + 1);
+
+				if(length < 0 || pos + 1 + length > data.length) {
+					break;
+				}
+
+				try {
+					board = BoardCodec.decode(Arrays.copyOfRange(data, pos + 1, pos + 1 + length));
+				} catch(IllegalArgumentException e) {
+					break;		// Corrupt snapshot
+				}
+
+				pos += 1 + length;
+			}
+
+			else if(data[pos] == MOVE && board != null && pos + MOVE_LENGTH <= data.length) {
+
+				int row = data[pos + 1];
+				int column = data[pos + 2];
+				int value = data[pos + 3];
+
+				if(row < 0 || row >= board.getSize() || column < 0 || column >= board.getSize()
+						|| value < 0 || value > board.getSize()) {
+					break;
+				}
+
+				if(!board.isCellFixed(row, column)) {
+					board.setValue(row, column, value);
+				}
+
+				pos += MOVE_LENGTH;
+			}
+
+			else if(data[pos] == REVEAL && board != null && pos + MOVE_LENGTH <= data.length) {
+
+				int row = data[pos + 1];
+				int column = data[pos + 2];
+				int value = data[pos + 3];
+
+				if(row < 0 || row >= board.getSize() || column < 0 || column >= board.getSize()
+						|| board.isCellFixed(row, column) || board.getSolutionValue(row, column) != value) {
+					break;
+				}
+
+				board.revealCell(row, column);
+
+				pos += MOVE_LENGTH;
+			}
+
+			else {
+				break;
+			}
+
+		}
+
+		return board;
+	}
+
+}
@@ -0,0 +1,761 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Constraint layout of a Sudoku variant: the units, i.e. groups of cells that must hold
+ * every value exactly once, and for every cell the units it belongs to and its peers
+ * (the other cells sharing a unit with it).
+ *
+ * Cells are numbered in row-major order. Units are numbered as follows:
+ * - 0 to size - 1: rows
+ * - size to 2 * size - 1: columns
+ * - 2 * size to 3 * size - 1: regions (boxes, or jigsaw regions)
+ * - then the extra units of the variant (diagonals, windows)
+ *
+ * A Samurai layout is five 9x9 grids on a 21x21 board, the middle one sharing a corner
+ * box with each of the others. Its units are the rows, columns and boxes of every grid,
+ * each shared box once, so a cell of a shared box is in the row and the column of both
+ * of its grids and any search sees both sets of rules through its peers. The board is
+ * larger than the number of values, and the cells outside the grids are void: they
+ * belong to no unit and stay empty.
+ *
+ * Everything is computed once when the layout is built, so rule checks walk a short
+ * table instead of deriving box coordinates with square roots and divisions.
+ * Layouts are immutable and shared; all layouts but jigsaws are cached. Killer cages are
+ * not units (they need not hold every value), so they live in {@link Cages}, next to the
+ * layout.
+ * Boxes need not be square: a 6x6 board has boxes of 2 rows and 3 columns.
+ *
+ * Usage example:
+ * <pre>
+ * Layout layout = Layout.diagonal(9);
+ * for(int peer : layout.getPeers(cell)) {
+ *     ...
+ * }
+ * </pre>
+ */
+public final class Layout {
+
+	// Variants
+	public static final int VARIANT_CLASSIC = 0;
+	public static final int VARIANT_DIAGONAL = 1;		// X-Sudoku: both main diagonals are units
+	public static final int VARIANT_WINDOKU = 2;		// Extra boxes between the regular ones
+	public static final int VARIANT_JIGSAW = 3;			// Irregular regions instead of boxes
+	public static final int VARIANT_KILLER = 4;			// Classic units, plus cages with sums (see Cages)
+	public static final int VARIANT_SAMURAI = 5;		// Five overlapping 9x9 grids on a 21x21 board
+
+	// Samurai geometry: top-left corners of the five grids on the board
+	public static final int SAMURAI_SIZE = 21;
+	private static final int[][] SAMURAI_GRIDS = {{0, 0}, {0, 12}, {6, 6}, {12, 0}, {12, 12}};
+
+	// Search nodes a random jigsaw layout may take to show it has a solution before it is rejected
+	private static final long JIGSAW_NODE_LIMIT = 20_000;
+
+	// Random jigsaw layouts tried before giving up
+	private static final int JIGSAW_ATTEMPTS = 1_000;
+
+	// Unit types
+	public static final int UNIT_ROW = 0;
+	public static final int UNIT_COLUMN = 1;
+	public static final int UNIT_REGION = 2;
+	public static final int UNIT_DIAGONAL = 3;
+	public static final int UNIT_WINDOW = 4;
+	public static final int UNIT_CAGE = 5;		// Killer cages, reported as units by ConflictTracker but kept in Cages
+
+	private static final String[] VARIANT_NAMES = {"Classic", "Diagonal", "Windoku", "Jigsaw", "Killer", "Samurai"};
+	private static final Map<Integer, Layout> CACHE = new ConcurrentHashMap<>();
+
+	private final int variant;
+	private final int size;
+	private final int valueCount;		// Values of the puzzle, the size of every unit
+	private final int cellCount;		// Cells that are not void
+	private final int boxRows;			// Height of the boxes, 0 for jigsaw regions
+	private final int[] regionOf;		// Region of every cell, -1 for void cells
+	private final int[][] units;		// Cells of every unit
+	private final int[] unitTypes;
+	private final int[] unitIndexes;	// Index of every unit among the units of its type
+	private final int[][] unitsOf;		// Units of every cell
+	private final int[][] peers;		// Peers of every cell, without the cell itself
+
+	private Layout(int variant, int size, int valueCount, int boxRows, int[] regionOf, int[][] units, int[] unitTypes, int[] unitIndexes) {
+
+		int cellCount = size * size;
+		int unitCount = units.length;
+
+		this.variant = variant;
+		this.size = size;
+		this.valueCount = valueCount;
+		this.boxRows = boxRows;
+		this.regionOf = regionOf;
+		this.units = units;
+		this.unitTypes = unitTypes;
+		this.unitIndexes = unitIndexes;
+
+		// Units of every cell
+		int[] counts = new int[cellCount];
+
+		for(int[] unit : this.units) {
+			for(int cell : unit) {
+				counts[cell]++;
+			}
+		}
+
+		this.unitsOf = new int[cellCount][];
+
+		for(int k = 0 ; k < cellCount ; k++) {
+			this.unitsOf[k] = new int[counts[k]];
+			counts[k] = 0;
+		}
+
+		for(int u = 0 ; u < unitCount ; u++) {
+			for(int cell : this.units[u]) {
+				this.unitsOf[cell][counts[cell]++] = u;
+			}
+		}
+
+		// Peers: every other cell of those units, once
+		this.peers = new int[cellCount][];
+		int[] seen = new int[cellCount];
+		int[] buffer = new int[cellCount];
+
+		for(int k = 0 ; k < cellCount ; k++) {
+
+			int count = 0;
+			seen[k] = k + 1;
+
+			for(int u : this.unitsOf[k]) {
+
+				for(int cell : this.units[u]) {
+
+					if(seen[cell] != k + 1) {
+						seen[cell] = k + 1;
+						buffer[count++] = cell;
+					}
+
+				}
+
+			}
+
+			this.peers[k] = Arrays.copyOf(buffer, count);
+			Arrays.sort(this.peers[k]);
+		}
+
+		int active = 0;
+
+		for(int region : regionOf) {
+			active += region >= 0 ? 1 : 0;
+		}
+
+		this.cellCount = active;
+	}
+
+	/**
+	 * Builds a square layout: rows, columns and regions of size cells, then the extra units.
+	 */
+	private static Layout build(int variant, int size, int boxRows, int[] regionOf, List<int[]> extraUnits, int extraType) {
+
+		int unitCount = 3 * size + extraUnits.size();
+		int[][] units = new int[unitCount][];
+		int[] unitTypes = new int[unitCount];
+		int[] unitIndexes = new int[unitCount];
+		int[] regionFill = new int[size];
+
+		for(int i = 0 ; i < size ; i++) {
+			units[i] = new int[size];
+			units[size + i] = new int[size];
+			units[2 * size + i] = new int[size];
+		}
+
+		for(int k = 0 ; k < size * size ; k++) {
+			units[k / size][k % size] = k;
+			units[size + k % size][k / size] = k;
+			units[2 * size + regionOf[k]][regionFill[regionOf[k]]++] = k;
+		}
+
+		for(int u = 0 ; u < 3 * size ; u++) {
+			unitTypes[u] = u / size;
+			unitIndexes[u] = u % size;
+		}
+
+		for(int e = 0 ; e < extraUnits.size() ; e++) {
+			units[3 * size + e] = extraUnits.get(e);
+			unitTypes[3 * size + e] = extraType;
+			unitIndexes[3 * size + e] = e;
+		}
+
+		return new Layout(variant, size, size, boxRows, regionOf, units, unitTypes, unitIndexes);
+	}
+
+	/**
+	 * Returns the classic layout: rows, columns and boxes. Boxes are square when the size
+	 * is a perfect square, otherwise as close to square as possible and wider than high
+	 * (2 rows and 3 columns on a 6x6 board).
+	 * @param size board size (e.g., 4, 6 or 9)
+	 * @return shared layout
+	 * @throws IllegalArgumentException if the size cannot be split into boxes (e.g., a prime)
+	 */
+	public static Layout standard(int size) {
+		return boxes(boxRowsOf(size), size / boxRowsOf(size));
+	}
+
+	/**
+	 * Returns the classic layout with boxes of the given shape.
+	 * @param boxRows rows of every box
+	 * @param boxColumns columns of every box
+	 * @return shared layout of size boxRows * boxColumns
+	 * @throws IllegalArgumentException if a box dimension is smaller than 2 (or 1 for a 1x1 board)
+	 */
+	public static Layout boxes(int boxRows, int boxColumns) {
+
+		int size = boxRows * boxColumns;
+
+		if(boxRows < 1 || boxColumns < 1 || size > 1 && (boxRows < 2 || boxColumns < 2)) {
+			throw new IllegalArgumentException("Invalid box shape " + boxRows + "x" + boxColumns);
+		}
+
+		return CACHE.computeIfAbsent(key(VARIANT_CLASSIC, size, boxRows), key -> build(VARIANT_CLASSIC, size, boxRows, boxRegions(size, boxRows), List.of(), UNIT_REGION));
+	}
+
+	/**
+	 * Returns the diagonal (X-Sudoku) layout: classic rules, plus both main diagonals.
+	 * @param size board size, split into boxes as in {@link #standard(int)} (e.g., 4, 6 or 9)
+	 * @return shared layout
+	 * @throws IllegalArgumentException if the size cannot be split into boxes
+	 */
+	public static Layout diagonal(int size) {
+
+		int boxRows = boxRowsOf(size);
+
+		return CACHE.computeIfAbsent(key(VARIANT_DIAGONAL, size, boxRows), key -> {
+
+			int[] main = new int[size];
+			int[] anti = new int[size];
+
+			for(int i = 0 ; i < size ; i++) {
+				main[i] = i * size + i;
+				anti[i] = i * size + (size - 1 - i);
+			}
+
+			return build(VARIANT_DIAGONAL, size, boxRows, boxRegions(size, boxRows), List.of(main, anti), UNIT_DIAGONAL);
+		});
+	}
+
+	/**
+	 * Returns the Windoku layout: classic rules, plus extra boxes offset by one cell from
+	 * the board edge and separated by one row and column (four windows on a 9x9 board).
+	 * @param size board size, a perfect square (e.g., 4 or 9)
+	 * @return shared layout
+	 * @throws IllegalArgumentException if size is not a perfect square
+	 */
+	public static Layout windoku(int size) {
+
+		int boxSize = boxSizeOf(size);
+
+		return CACHE.computeIfAbsent(key(VARIANT_WINDOKU, size, boxSize), key -> {
+
+			List<int[]> windows = new ArrayList<>();
+
+			for(int top = 1 ; top + boxSize < size ; top += boxSize + 1) {
+
+				for(int left = 1 ; left + boxSize < size ; left += boxSize + 1) {
+
+					int[] window = new int[size];
+
+					for(int p = 0 ; p < size ; p++) {
+						window[p] = (top + p / boxSize) * size + left + p % boxSize;
+					}
+
+					windows.add(window);
+				}
+
+			}
+
+			return build(VARIANT_WINDOKU, size, boxSize, boxRegions(size, boxSize), windows, UNIT_WINDOW);
+		});
+	}
+
+	/**
+	 * Returns the Killer Sudoku layout: the classic units. The cages belong to the puzzle
+	 * and are kept by the board.
+	 * @param size board size, split into boxes as in {@link #standard(int)} (e.g., 4, 6 or 9)
+	 * @return shared layout
+	 * @throws IllegalArgumentException if the size cannot be split into boxes
+	 */
+	public static Layout killer(int size) {
+
+		int boxRows = boxRowsOf(size);
+
+		return CACHE.computeIfAbsent(key(VARIANT_KILLER, size, boxRows), key -> build(VARIANT_KILLER, size, boxRows, boxRegions(size, boxRows), List.of(), UNIT_REGION));
+	}
+
+	/**
+	 * Returns the Samurai layout: five 9x9 grids on a 21x21 board, one in every corner
+	 * and one in the middle sharing a corner box with each of them.
+	 * @return shared layout
+	 */
+	public static Layout samurai() {
+
+		return CACHE.computeIfAbsent(key(VARIANT_SAMURAI, SAMURAI_SIZE, 3), key -> {
+
+			int size = SAMURAI_SIZE;
+			int[] regions = new int[size * size];
+			List<int[]> units = new ArrayList<>();
+			List<int[]> rows = new ArrayList<>();
+			List<int[]> columns = new ArrayList<>();
+			int[][] boxes = new int[(size / 3) * (size / 3)][];
+
+			Arrays.fill(regions, -1);
+
+			for(int[] grid : SAMURAI_GRIDS) {
+
+				for(int i = 0 ; i < 9 ; i++) {
+
+					int[] row = new int[9];
+					int[] column = new int[9];
+					int[] box = new int[9];
+					int boxRow = grid[0] + i / 3 * 3;
+					int boxColumn = grid[1] + i % 3 * 3;
+
+					for(int j = 0 ; j < 9 ; j++) {
+						row[j] = (grid[0] + i) * size + grid[1] + j;
+						column[j] = (grid[0] + j) * size + grid[1] + i;
+						box[j] = (boxRow + j / 3) * size + boxColumn + j % 3;
+						regions[box[j]] = boxRow / 3 * (size / 3) + boxColumn / 3;
+					}
+
+					rows.add(row);
+					columns.add(column);
+					boxes[boxRow / 3 * (size / 3) + boxColumn / 3] = box;		// Shared boxes are kept once
+				}
+
+			}
+
+			units.addAll(rows);
+			units.addAll(columns);
+
+			for(int[] box : boxes) {
+				if(box != null) {
+					units.add(box);
+				}
+			}
+
+			int[] unitTypes = new int[units.size()];
+			int[] unitIndexes = new int[units.size()];
+
+			for(int u = 0 ; u < units.size() ; u++) {
+
+				int[] unit = units.get(u);
+				unitTypes[u] = u < rows.size() ? UNIT_ROW : u < 2 * rows.size() ? UNIT_COLUMN : UNIT_REGION;
+
+				// Rows and columns by their index on the board, so messages match the coordinates shown
+				unitIndexes[u] = unitTypes[u] == UNIT_ROW ? unit[0] / size : unitTypes[u] == UNIT_COLUMN ? unit[0] % size : regions[unit[0]];
+			}
+
+			return new Layout(VARIANT_SAMURAI, size, 9, 3, regions, units.toArray(new int[0][]), unitTypes, unitIndexes);
+		});
+	}
+
+	/**
+	 * Returns a jigsaw layout: rows, columns and the given irregular regions.
+	 * @param size board size
+	 * @param regions row-major region of every cell, each region 0 to size - 1 holding size cells
+	 * @return new layout
+	 * @throws IllegalArgumentException if the regions do not split the board into size regions of size cells
+	 */
+	public static Layout jigsaw(int size, int[] regions) {
+
+		if(regions.length != size * size) {
+			throw new IllegalArgumentException("Expected " + size * size + " region entries");
+		}
+
+		int[] counts = new int[size];
+
+		for(int region : regions) {
+
+			if(region < 0 || region >= size || ++counts[region] > size) {
+				throw new IllegalArgumentException("Every region must hold exactly " + size + " cells");
+			}
+
+		}
+
+		return build(VARIANT_JIGSAW, size, 0, regions.clone(), List.of(), UNIT_REGION);
+	}
+
+	/**
+	 * Builds a random jigsaw layout by repeatedly trading cells between neighbouring
+	 * boxes, keeping every region connected. Layouts that admit no solution, or take too
+	 * many search nodes to show one, are rejected; the node budget keeps the result the
+	 * same for the same random sequence on every machine.
+	 * @param size board size, split into boxes as in {@link #standard(int)} (e.g., 4, 6 or 9)
+	 * @param random source of randomness
+	 * @return new layout
+	 * @throws IllegalStateException if no solvable layout was found in JIGSAW_ATTEMPTS attempts
+	 */
+	public static Layout randomJigsaw(int size, Random random) {
+
+		int cellCount = size * size;
+
+		for(int tries = 0 ; tries < JIGSAW_ATTEMPTS ; tries++) {
+
+			int[] regions = boxRegions(size, boxRowsOf(size));
+
+			for(int attempt = 0 ; attempt < 4 * cellCount ; attempt++) {
+				tradeCells(size, regions, random);
+			}
+
+			Layout layout = build(VARIANT_JIGSAW, size, 0, regions, List.of(), UNIT_REGION);
+			Solver solver = new Solver(layout);
+			solver.setNodeLimit(JIGSAW_NODE_LIMIT);
+
+			if(solver.load(new int[cellCount]) && solver.solve(1) == 1) {
+				return layout;
+			}
+
+		}
+
+		throw new IllegalStateException("No solvable " + size + "x" + size + " jigsaw layout found in " + JIGSAW_ATTEMPTS + " attempts");
+	}
+
+	/**
+	 * Returns the layout of a variant.
+	 * @param variant VARIANT_CLASSIC, VARIANT_DIAGONAL, VARIANT_WINDOKU, VARIANT_JIGSAW, VARIANT_KILLER or VARIANT_SAMURAI
+	 * @param size board size (e.g., 4 or 9; Windoku needs a perfect square; ignored for Samurai)
+	 * @param random source of randomness for jigsaw regions
+	 * @return layout
+	 * @throws IllegalArgumentException for an unknown variant
+	 */
+	public static Layout of(int variant, int size, Random random) {
+
+		switch(variant) {
+			case VARIANT_CLASSIC: return standard(size);
+			case VARIANT_DIAGONAL: return diagonal(size);
+			case VARIANT_WINDOKU: return windoku(size);
+			case VARIANT_JIGSAW: return randomJigsaw(size, random);
+			case VARIANT_KILLER: return killer(size);
+			case VARIANT_SAMURAI: return samurai();
+			default: throw new IllegalArgumentException("Unknown variant " + variant);
+		}
+
+	}
+
+	/**
+	 * Returns the variant of this layout.
+	 * @return VARIANT_CLASSIC, VARIANT_DIAGONAL, VARIANT_WINDOKU, VARIANT_JIGSAW, VARIANT_KILLER or VARIANT_SAMURAI
+	 */
+	public int getVariant() {
+		return this.variant;
+	}
+
+	/**
+	 * Returns the display name of the variant, e.g. "Windoku".
+	 * @return variant name
+	 */
+	public String getVariantName() {
+		return VARIANT_NAMES[this.variant];
+	}
+
+	/**
+	 * Returns the board size.
+	 * @return number of rows (and columns)
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the number of values: cells hold 1 to getValueCount(), and every unit holds
+	 * each of them once. Equal to the size, except on Samurai boards.
+	 * @return value count
+	 */
+	public int getValueCount() {
+		return this.valueCount;
+	}
+
+	/**
+	 * Returns the number of cells that are part of the puzzle.
+	 * @return size * size, minus the void cells
+	 */
+	public int getCellCount() {
+		return this.cellCount;
+	}
+
+	/**
+	 * Checks whether a cell is part of the puzzle. Void cells, outside the grids of a
+	 * Samurai board, belong to no unit and always stay empty.
+	 * @param cell row-major cell index
+	 * @return false for void cells
+	 */
+	public boolean isCell(int cell) {
+		return this.regionOf[cell] >= 0;
+	}
+
+	/**
+	 * Returns the number of rows of every box.
+	 * @return box height, 0 for jigsaw regions
+	 */
+	public int getBoxRows() {
+		return this.boxRows;
+	}
+
+	/**
+	 * Returns the number of columns of every box.
+	 * @return box width, 0 for jigsaw regions
+	 */
+	public int getBoxColumns() {
+		return this.boxRows == 0 ? 0 : this.valueCount / this.boxRows;
+	}
+
+	/**
+	 * Returns the number of units.
+	 * @return unit count
+	 */
+	public int getUnitCount() {
+		return this.units.length;
+	}
+
+	/**
+	 * Returns the cells of a unit.
+	 * @param unit unit index
+	 * @return row-major cell indexes (shared, do not modify)
+	 */
+	public int[] getUnit(int unit) {
+		return this.units[unit];
+	}
+
+	/**
+	 * Returns the type of a unit.
+	 * @param unit unit index
+	 * @return UNIT_ROW, UNIT_COLUMN, UNIT_REGION, UNIT_DIAGONAL or UNIT_WINDOW
+	 */
+	public int getUnitType(int unit) {
+		return this.unitTypes[unit];
+	}
+
+	/**
+	 * Returns the position of a unit among the units of its type, e.g. 2 for the third row.
+	 * @param unit unit index
+	 * @return 0-based index within its type
+	 */
+	public int getUnitIndex(int unit) {
+		return this.unitIndexes[unit];
+	}
+
+	/**
+	 * Returns the lowercase name of a unit's type: "row", "column", "box", "region",
+	 * "diagonal" or "window". Regions are called boxes unless the layout is a jigsaw.
+	 * @param unit unit index
+	 * @return type name
+	 */
+	public String getUnitName(int unit) {
+
+		switch(this.unitTypes[unit]) {
+			case UNIT_ROW: return "row";
+			case UNIT_COLUMN: return "column";
+			case UNIT_REGION: return this.variant == VARIANT_JIGSAW ? "region" : "box";
+			case UNIT_DIAGONAL: return "diagonal";
+			default: return "window";
+		}
+
+	}
+
+	/**
+	 * Returns the units a cell belongs to.
+	 * @param cell row-major cell index
+	 * @return unit indexes (shared, do not modify)
+	 */
+	public int[] getUnitsOf(int cell) {
+		return this.unitsOf[cell];
+	}
+
+	/**
+	 * Returns the cells sharing at least one unit with a cell.
+	 * @param cell row-major cell index
+	 * @return sorted peer cell indexes, without the cell itself (shared, do not modify)
+	 */
+	public int[] getPeers(int cell) {
+		return this.peers[cell];
+	}
+
+	/**
+	 * Returns the region (box or jigsaw region) of a cell.
+	 * @param cell row-major cell index
+	 * @return region index, 0 to size - 1; on Samurai boards the position of the box
+	 *         among the 7x7 boxes of the board, or -1 for void cells
+	 */
+	public int getRegion(int cell) {
+		return this.regionOf[cell];
+	}
+
+	/**
+	 * Box regions in row-major order.
+	 */
+	private static int[] boxRegions(int size, int boxRows) {
+
+		int boxColumns = size / boxRows;
+		int[] regions = new int[size * size];
+
+		for(int k = 0 ; k < regions.length ; k++) {
+			int row = k / size;
+			int column = k % size;
+			regions[k] = (row / boxRows) * boxRows + column / boxColumns;
+		}
+
+		return regions;
+	}
+
+	/**
+	 * Height of the default boxes: the largest divisor of size not above its square root.
+	 */
+	private static int boxRowsOf(int size) {
+
+		int boxRows = (int) Math.sqrt(size);
+
+		while(boxRows > 1 && size % boxRows != 0) {
+			boxRows--;
+		}
+
+		if(size < 1 || size > 1 && boxRows < 2) {
+			throw new IllegalArgumentException("Board size cannot be split into boxes, got " + size);
+		}
+
+		return boxRows;
+	}
+
+	private static int key(int variant, int size, int boxRows) {
+		return (variant * 256 + size) * 256 + boxRows;
+	}
+
+	private static int boxSizeOf(int size) {
+
+		int boxSize = (int) Math.round(Math.sqrt(size));
+
+		if(size < 1 || boxSize * boxSize != size) {
+			throw new IllegalArgumentException("Board size must be a perfect square, got " + size);
+		}
+
+		return boxSize;
+	}
+
+	/**
+	 * Moves a random cell into a neighbouring region and a cell of that region back,
+	 * undoing the trade if either region would fall apart.
+	 */
+	private static void tradeCells(int size, int[] regions, Random random) {
+
+		int a = random.nextInt(regions.length);
+		int b = randomNeighbour(size, a, random);
+
+		if(b < 0 || regions[a] == regions[b]) {
+			return;
+		}
+
+		int from = regions[a];
+		int to = regions[b];
+
+		// A cell of region "to", other than b, bordering region "from"
+		int[] candidates = new int[regions.length];
+		int count = 0;
+
+		for(int k = 0 ; k < regions.length ; k++) {
+
+			if(regions[k] == to && k != b && borders(size, regions, k, from)) {
+				candidates[count++] = k;
+			}
+
+		}
+
+		if(count == 0) {
+			return;
+		}
+
+		int c = candidates[random.nextInt(count)];
+
+		regions[a] = to;
+		regions[c] = from;
+
+		if(!isConnected(size, regions, from) || !isConnected(size, regions, to)) {
+			regions[a] = from;
+			regions[c] = to;
+		}
+
+	}
+
+	private static int randomNeighbour(int size, int cell, Random random) {
+
+		int row = cell / size;
+		int column = cell % size;
+
+		switch(random.nextInt(4)) {
+			case 0: return row > 0 ? cell - size : -1;
+			case 1: return row < size - 1 ? cell + size : -1;
+			case 2: return column > 0 ? cell - 1 : -1;
+			default: return column < size - 1 ? cell + 1 : -1;
+		}
+
+	}
+
+	private static boolean borders(int size, int[] regions, int cell, int region) {
+
+		int row = cell / size;
+		int column = cell % size;
+
+		return (row > 0 && regions[cell - size] == region)
+				|| (row < size - 1 && regions[cell + size] == region)
+				|| (column > 0 && regions[cell - 1] == region)
+				|| (column < size - 1 && regions[cell + 1] == region);
+	}
+
+	/**
+	 * Flood fill from one cell of the region; connected if every cell of it is reached.
+	 */
+	private static boolean isConnected(int size, int[] regions, int region) {
+
+		int[] stack = new int[regions.length];
+		boolean[] reached = new boolean[regions.length];
+		int top = 0;
+		int found = 0;
+
+		for(int k = 0 ; k < regions.length && top == 0 ; k++) {
+
+			if(regions[k] == region) {
+				stack[top++] = k;
+				reached[k] = true;
+			}
+
+		}
+
+		while(top > 0) {
+
+			int cell = stack[--top];
+			int row = cell / size;
+			int column = cell % size;
+			found++;
+
+			int[] neighbours = {
+				row > 0 ? cell - size : -1,
+				row < size - 1 ? cell + size : -1,
+				column > 0 ? cell - 1 : -1,
+				column < size - 1 ? cell + 1 : -1
+			};
+
+			for(int next : neighbours) {
+
+				if(next >= 0 && !reached[next] && regions[next] == region) {
+					reached[next] = true;
+					stack[top++] = next;
+				}
+
+			}
+
+		}
+
+		return found == size;
+	}
+
+}
@@ -0,0 +1,450 @@
+package core;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide metrics for puzzle generation, solving and gameplay.
+ *
+ * Counters are {@link LongAdder}s and latencies go into {@link Histogram}s, so
+ * recording from hot paths costs a few nanoseconds and never takes a lock.
+ * Callers that loop (e.g., the backtracking search) should count locally and
+ * report once per run.
+ *
+ * The metrics can be read through JMX ({@link #registerMBean()}), as a text
+ * report ({@link #report()}), or dumped periodically ({@link #startReporter(Duration, PrintStream)}).
+ */
+public final class Metrics implements MetricsMBean {
+
+	public static final String OBJECT_NAME = "core:type=Metrics";
+
+	// GUI inputs whose latency is recorded
+	public static final int INPUT_START = 0;		// Game scene opened, including the board generation
+	public static final int INPUT_SELECT = 1;		// Cell selected
+	public static final int INPUT_NUMBER = 2;		// Number button, in value or notes mode
+	public static final int INPUT_CLEAR = 3;
+	public static final int INPUT_HINT = 4;
+	public static final int INPUT_KINDS = 5;
+
+	private static final int MAX_SIZE = 64;						// Largest board size with its own histograms
+	private static final int DIFFICULTY_SLOTS = 4;				// Difficulty levels 0..3
+	private static final String[] INPUT_NAMES = {"start", "select", "number", "clear", "hint"};
+	private static final Metrics INSTANCE = new Metrics();
+
+	private final LongAdder gamesGenerated = new LongAdder();
+	private final LongAdder searchNodes = new LongAdder();
+	private final LongAdder backtracks = new LongAdder();
+	private final LongAdder restarts = new LongAdder();
+	private final LongAdder movesValidated = new LongAdder();
+	private final LongAdder movesRejected = new LongAdder();
+	private final LongAdder gamesCompleted = new LongAdder();
+
+	private final Histogram generationTime = new Histogram();		// All sizes and difficulties
+	private final Histogram completionTime = new Histogram();
+	private final Histogram inputLatency = new Histogram();			// All GUI inputs
+	private final Histogram[] inputLatencyByKind = new Histogram[INPUT_KINDS];
+	private final Histogram pulseTime = new Histogram();			// CSS and layout of a GUI frame
+	private final AtomicReferenceArray<Histogram> generationTimeBySetting =
+			new AtomicReferenceArray<>((MAX_SIZE + 1) * DIFFICULTY_SLOTS);
+
+	private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+
+	private ScheduledExecutorService reporter;
+
+	private Metrics() {
+
+		for(int i = 0 ; i < INPUT_KINDS ; i++) {
+			this.inputLatencyByKind[i] = new Histogram();
+		}
+
+	}
+
+	/**
+	 * Returns the process-wide metrics instance.
+	 * @return metrics
+	 */
+	public static Metrics get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Records one finished board generation.
+	 * @param size board size
+	 * @param difficulty difficulty level
+	 * @param nanos time spent generating
+	 * @param nodes search nodes visited
+	 * @param backtracks values undone during the search
+	 */
+	public static void recordGeneration(int size, int difficulty, long nanos, long nodes, long backtracks) {
+
+		Metrics m = INSTANCE;
+
+		m.gamesGenerated.increment();
+		m.searchNodes.add(nodes);
+		m.backtracks.add(backtracks);
+		m.generationTime.record(nanos);
+
+		Histogram bySetting = m.generationHistogram(size, difficulty);
+
+		if(bySetting != null) {
+			bySetting.record(nanos);
+		}
+
+	}
+
+	/**
+	 * Records how many times a generation restarted its search.
+	 * @param count restart count
+	 */
+	public static void recordRestarts(long count) {
+
+		if(count != 0) {
+			INSTANCE.restarts.add(count);
+		}
+
+	}
+
+	/**
+	 * Records search effort that is not part of a generation (e.g., solving).
+	 * @param nodes search nodes visited
+	 */
+	public static void recordSearch(long nodes) {
+		INSTANCE.searchNodes.add(nodes);
+	}
+
+	/**
+	 * Records a player move that was checked against the rules.
+	 * @param accepted true if the move was valid
+	 */
+	public static void recordMove(boolean accepted) {
+
+		INSTANCE.movesValidated.increment();
+
+		if(!accepted) {
+			INSTANCE.movesRejected.increment();
+		}
+
+	}
+
+	/**
+	 * Records a solved game.
+	 * @param nanos time from the start of the game to its completion
+	 */
+	public static void recordCompletion(long nanos) {
+		INSTANCE.gamesCompleted.increment();
+		INSTANCE.completionTime.record(nanos);
+	}
+
+	/**
+	 * Records the time between a GUI input and the end of the layout of the frame showing its result.
+	 * @param input INPUT_START to INPUT_HINT
+	 * @param nanos input latency
+	 */
+	public static void recordInputLatency(int input, long nanos) {
+		INSTANCE.inputLatency.record(nanos);
+		INSTANCE.inputLatencyByKind[input].record(nanos);
+	}
+
+	/**
+	 * Records the CSS and layout time of one GUI frame.
+	 * @param nanos time spent in the pulse
+	 */
+	public static void recordPulse(long nanos) {
+		INSTANCE.pulseTime.record(nanos);
+	}
+
+	/**
+	 * Returns the latency histogram of a kind of GUI input.
+	 * @param input INPUT_START to INPUT_HINT
+	 * @return histogram, shared and still recording
+	 */
+	public static Histogram getInputLatency(int input) {
+		return INSTANCE.inputLatencyByKind[input];
+	}
+
+	/**
+	 * Returns the histogram of the CSS and layout time of GUI frames.
+	 * @return histogram, shared and still recording
+	 */
+	public static Histogram getPulseTime() {
+		return INSTANCE.pulseTime;
+	}
+
+	/**
+	 * Returns the lowercase name of a kind of GUI input, e.g. "select".
+	 * @param input INPUT_START to INPUT_HINT
+	 * @return input name
+	 */
+	public static String getInputName(int input) {
+		return INPUT_NAMES[input];
+	}
+
+	/**
+	 * Registers a gauge read whenever a report is produced.
+	 * Registering a name again replaces the previous gauge.
+	 * @param name gauge name
+	 * @param gauge current value supplier
+	 */
+	public static void registerGauge(String name, LongSupplier gauge) {
+		INSTANCE.gauges.put(name, gauge);
+	}
+
+	/**
+	 * Removes every gauge whose name starts with a prefix, e.g. the gauges of a stopped server.
+	 * @param prefix gauge name prefix
+	 */
+	public static void unregisterGauges(String prefix) {
+		INSTANCE.gauges.keySet().removeIf(name -> name.startsWith(prefix));
+	}
+
+	/**
+	 * Registers the metrics MBean with the platform MBean server. Safe to call more than once.
+	 */
+	public static void registerMBean() {
+
+		try {
+
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+
+			if(!server.isRegistered(name)) {
+				server.registerMBean(INSTANCE, name);
+			}
+
+		} catch(JMException e) {
+			System.err.println("Could not register metrics MBean: " + e.getMessage());
+		}
+
+	}
+
+	/**
+	 * Starts a daemon thread printing {@link #report()} at a fixed period.
+	 * @param period time between dumps
+	 * @param out stream receiving the dumps
+	 */
+	public static synchronized void startReporter(Duration period, PrintStream out) {
+
+		if(INSTANCE.reporter != null) {
+			return;
+		}
+
+		INSTANCE.reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "metrics-reporter");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		long millis = period.toMillis();
+		INSTANCE.reporter.scheduleAtFixedRate(() -> out.print(report()), millis, millis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops the periodic dump, if running.
+	 */
+	public static synchronized void stopReporter() {
+
+		if(INSTANCE.reporter != null) {
+			INSTANCE.reporter.shutdownNow();
+			INSTANCE.reporter = null;
+		}
+
+	}
+
+	/**
+	 * Builds a text report of every metric.
+	 * @return multi-line report
+	 */
+	public static String report() {
+
+		Metrics m = INSTANCE;
+		StringBuilder out = new StringBuilder(512);
+
+		out.append("games.generated ").append(m.gamesGenerated.sum()).append('\n');
+		out.append("search.nodes ").append(m.searchNodes.sum()).append('\n');
+		out.append("search.backtracks ").append(m.backtracks.sum()).append('\n');
+		out.append("search.restarts ").append(m.restarts.sum()).append('\n');
+		out.append("moves.validated ").append(m.movesValidated.sum()).append('\n');
+		out.append("moves.rejected ").append(m.movesRejected.sum()).append('\n');
+		out.append("games.completed ").append(m.gamesCompleted.sum()).append('\n');
+
+		appendHistogram(out, "generation.time", m.generationTime);
+
+		for(int size = 1 ; size <= MAX_SIZE ; size++) {
+
+			for(int difficulty = 0 ; difficulty < DIFFICULTY_SLOTS ; difficulty++) {
+
+				Histogram histogram = m.generationTimeBySetting.get(size * DIFFICULTY_SLOTS + difficulty);
+
+				if(histogram != null) {
+					appendHistogram(out, "generation.time." + size + "x" + size + ".d" + difficulty, histogram);
+				}
+
+			}
+
+		}
+
+		appendHistogram(out, "completion.time", m.completionTime);
+
+		if(m.inputLatency.getCount() > 0) {
+
+			appendHistogram(out, "input.latency", m.inputLatency);
+
+			for(int input = 0 ; input < INPUT_KINDS ; input++) {
+				appendHistogram(out, "input.latency." + INPUT_NAMES[input], m.inputLatencyByKind[input]);
+			}
+
+			appendHistogram(out, "gui.pulse.time", m.pulseTime);
+		}
+
+		for(Map.Entry<String, LongSupplier> gauge : m.gauges.entrySet()) {
+			out.append(gauge.getKey()).append(' ').append(gauge.getValue().getAsLong()).append('\n');
+		}
+
+		return out.toString();
+	}
+
+	@Override
+	public long getGamesGenerated() {
+		return this.gamesGenerated.sum();
+	}
+
+	@Override
+	public long getSearchNodes() {
+		return this.searchNodes.sum();
+	}
+
+	@Override
+	public long getBacktracks() {
+		return this.backtracks.sum();
+	}
+
+	@Override
+	public long getRestarts() {
+		return this.restarts.sum();
+	}
+
+	@Override
+	public long getMovesValidated() {
+		return this.movesValidated.sum();
+	}
+
+	@Override
+	public long getMovesRejected() {
+		return this.movesRejected.sum();
+	}
+
+	@Override
+	public long getGamesCompleted() {
+		return this.gamesCompleted.sum();
+	}
+
+	@Override
+	public long getGenerationP50Micros() {
+		return this.generationTime.getPercentile(50) / 1000;
+	}
+
+	@Override
+	public long getGenerationP99Micros() {
+		return this.generationTime.getPercentile(99) / 1000;
+	}
+
+	@Override
+	public long getCompletionP50Micros() {
+		return this.completionTime.getPercentile(50) / 1000;
+	}
+
+	@Override
+	public long getInputLatencyP50Micros() {
+		return this.inputLatency.getPercentile(50) / 1000;
+	}
+
+	@Override
+	public long getInputLatencyP99Micros() {
+		return this.inputLatency.getPercentile(99) / 1000;
+	}
+
+	@Override
+	public String getReport() {
+		return report();
+	}
+
+	@Override
+	public void reset() {
+
+		this.gamesGenerated.reset();
+		this.searchNodes.reset();
+		this.backtracks.reset();
+		this.restarts.reset();
+		this.movesValidated.reset();
+		this.movesRejected.reset();
+		this.gamesCompleted.reset();
+		this.generationTime.reset();
+		this.completionTime.reset();
+		this.inputLatency.reset();
+		this.pulseTime.reset();
+
+		for(Histogram histogram : this.inputLatencyByKind) {
+			histogram.reset();
+		}
+
+		for(int i = 0 ; i < this.generationTimeBySetting.length() ; i++) {
+
+			Histogram histogram = this.generationTimeBySetting.get(i);
+
+			if(histogram != null) {
+				histogram.reset();
+			}
+
+		}
+
+	}
+
+	/**
+	 * Returns the generation histogram for a size and difficulty, creating it on first use.
+	 * @return the histogram, or null for settings outside the tracked range
+	 */
+	private Histogram generationHistogram(int size, int difficulty) {
+
+		if(size < 1 || size > MAX_SIZE || difficulty < 0 || difficulty >= DIFFICULTY_SLOTS) {
+			return null;		// Unusual settings only count towards the total
+		}
+
+		int slot = size * DIFFICULTY_SLOTS + difficulty;
+		Histogram histogram = this.generationTimeBySetting.get(slot);
+
+		if(histogram == null) {
+			this.generationTimeBySetting.compareAndSet(slot, null, new Histogram());
+			histogram = this.generationTimeBySetting.get(slot);
+		}
+
+		return histogram;
+	}
+
+	private static void appendHistogram(StringBuilder out, String name, Histogram histogram) {
+
+		long count = histogram.getCount();
+
+		out.append(name).append(" count=").append(count);
+
+		if(count > 0) {
+			out.append(" p50=").append(histogram.getPercentile(50) / 1000).append("us");
+			out.append(" p99=").append(histogram.getPercentile(99) / 1000).append("us");
+			out.append(" max=").append(histogram.getMax() / 1000).append("us");
+		}
+
+		out.append('\n');
+	}
+
+}
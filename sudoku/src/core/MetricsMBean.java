@@ -0,0 +1,94 @@
+package core;
+
+/**
+ * JMX view of {@link Metrics}, registered as {@value Metrics#OBJECT_NAME}.
+ * Times are reported in microseconds. Counts and percentiles cover the time since
+ * start, or since the last {@link #reset()}.
+ */
+public interface MetricsMBean {
+
+	/**
+	 * Returns how many boards were generated.
+	 * @return generated board count
+	 */
+	long getGamesGenerated();
+
+	/**
+	 * Returns how many search nodes generation and solving visited.
+	 * @return search node count
+	 */
+	long getSearchNodes();
+
+	/**
+	 * Returns how many times generation undid a placement to try another value.
+	 * @return backtrack count
+	 */
+	long getBacktracks();
+
+	/**
+	 * Returns how many times generation gave up a search and started over.
+	 * @return restart count
+	 */
+	long getRestarts();
+
+	/**
+	 * Returns how many player moves were checked against the rules, accepted or not.
+	 * @return move count
+	 */
+	long getMovesValidated();
+
+	/**
+	 * Returns how many of the checked moves were rejected.
+	 * @return rejected move count
+	 */
+	long getMovesRejected();
+
+	/**
+	 * Returns how many games were finished.
+	 * @return completed game count
+	 */
+	long getGamesCompleted();
+
+	/**
+	 * Returns the median time to generate a board, across all sizes and difficulties.
+	 * @return 50th percentile in microseconds
+	 */
+	long getGenerationP50Micros();
+
+	/**
+	 * Returns the 99th percentile of the time to generate a board.
+	 * @return 99th percentile in microseconds
+	 */
+	long getGenerationP99Micros();
+
+	/**
+	 * Returns the median time from the start of a game to its completion.
+	 * @return 50th percentile in microseconds
+	 */
+	long getCompletionP50Micros();
+
+	/**
+	 * Returns the median latency of GUI inputs, from the input to the end of the
+	 * layout pulse of the frame showing its result.
+	 * @return 50th percentile in microseconds
+	 */
+	long getInputLatencyP50Micros();
+
+	/**
+	 * Returns the 99th percentile of the latency of GUI inputs.
+	 * @return 99th percentile in microseconds
+	 */
+	long getInputLatencyP99Micros();
+
+	/**
+	 * Returns the full text report, as printed by the periodic dump.
+	 * @return metrics report
+	 */
+	String getReport();
+
+	/**
+	 * Clears every counter and histogram.
+	 */
+	void reset();
+
+}
@@ -0,0 +1,70 @@
+package core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering the validation and application of one player move,
+ * or of a cell revealed as a hint. Like {@link GenerationEvent}, it names the board by
+ * size, difficulty and seed, so the moves of one puzzle can be grouped.
+ */
+@Name("sudoku.Move")
+@Label("Move")
+@Category({"Sudoku", "Gameplay"})
+@Description("Validation of a player move")
+public class MoveEvent extends Event {
+
+	@Label("Source")
+	@Description("Front end that received the move (terminal, gui, server)")
+	String source;
+
+	@Label("Size")
+	int size;
+
+	@Label("Difficulty")
+	int difficulty;
+
+	@Label("Seed")
+	long seed;
+
+	@Label("Row")
+	int row;
+
+	@Label("Column")
+	int column;
+
+	@Label("Value")
+	int value;
+
+	@Label("Outcome")
+	String outcome;
+
+	/**
+	 * Fills in the event and commits it if the recording enables it.
+	 * @param source front end that received the move
+	 * @param board board the move was played on
+	 * @param row row index (0-based)
+	 * @param column column index (0-based)
+	 * @param value value played, 0 for a clear, or the value revealed
+	 * @param outcome "accepted", "hint" for a revealed cell, or the reason the move was rejected
+	 */
+	public void end(String source, Board board, int row, int column, int value, String outcome) {
+
+		if(shouldCommit()) {
+			this.source = source;
+			this.size = board.getSize();
+			this.difficulty = board.getDifficultyLevel();
+			this.seed = board.getSeed();
+			this.row = row;
+			this.column = column;
+			this.value = value;
+			this.outcome = outcome;
+			commit();
+		}
+
+	}
+
+}
@@ -0,0 +1,204 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Candidate notes ("pencil marks") of a board: the values a player considers possible
+ * for each empty cell.
+ *
+ * The notes of a cell are one int, bit v set when v is a candidate, the same encoding the
+ * solvers use for their unit masks. Toggling a note is a single bit flip, and when the
+ * board places a value the notes of the cell are cleared and the value is removed from
+ * every peer with one AND per peer, so a placement on a 16x16 board touches 39 ints.
+ *
+ * Usage example:
+ * <pre>
+ * Notes notes = board.getNotes();
+ * notes.toggle(row, column, 5);
+ * board.setValue(row, otherColumn, 5);		// removes the note again
+ * </pre>
+ */
+public class Notes implements BoardListener {
+
+	private final Layout layout;
+	private final int size;
+	private final int valueCount;	// Values of the board, 9 on a 21x21 Samurai board
+	private final int[] marks;		// Per cell, bit v set when v is noted, row-major
+
+	/**
+	 * Creates empty notes for a board.
+	 * @param board board the notes belong to
+	 */
+	Notes(Board board) {
+		this.layout = board.getLayout();
+		this.size = board.getSize();
+		this.valueCount = this.layout.getValueCount();
+		this.marks = new int[this.size * this.size];
+	}
+
+	/**
+	 * Adds a note if it is missing, removes it otherwise.
+	 * @param row row index
+	 * @param column column index
+	 * @param value candidate value (1..size)
+	 * @return true if the note is now set
+	 */
+	public boolean toggle(int row, int column, int value) {
+
+		checkValue(value);
+
+		return ((this.marks[row * this.size + column] ^= 1 << value) & (1 << value)) != 0;
+	}
+
+	/**
+	 * Returns whether a value is noted in a cell.
+	 * @param row row index
+	 * @param column column index
+	 * @param value candidate value (1..size)
+	 * @return true if the note is set
+	 */
+	public boolean has(int row, int column, int value) {
+		return (this.marks[row * this.size + column] & (1 << value)) != 0;
+	}
+
+	/**
+	 * Returns every note of a cell as a bitmask.
+	 * @param row row index
+	 * @param column column index
+	 * @return bit v set when v is noted, 0 if the cell has no notes
+	 */
+	public int getMask(int row, int column) {
+		return this.marks[row * this.size + column];
+	}
+
+	/**
+	 * Returns the number of notes of a cell.
+	 * @param row row index
+	 * @param column column index
+	 * @return note count
+	 */
+	public int getCount(int row, int column) {
+		return Integer.bitCount(this.marks[row * this.size + column]);
+	}
+
+	/**
+	 * Removes every note of a cell.
+	 * @param row row index
+	 * @param column column index
+	 */
+	public void clear(int row, int column) {
+		this.marks[row * this.size + column] = 0;
+	}
+
+	/**
+	 * Updates the notes after a cell changed: a placed value clears the notes of the cell
+	 * and stops being a candidate of every peer. Called by the board on every change.
+	 * @param row row index
+	 * @param column column index
+	 * @param oldValue previous value, 0 if empty
+	 * @param newValue new value, 0 if cleared
+	 */
+	@Override
+	public void cellChanged(int row, int column, int oldValue, int newValue) {
+
+		if(newValue != 0) {
+			valuePlaced(row * this.size + column, newValue);
+		}
+
+	}
+
+	/**
+	 * Drops every note once generation replaced the board.
+	 */
+	@Override
+	public void boardReplaced() {
+		Arrays.fill(this.marks, 0);
+	}
+
+	/**
+	 * Clears the notes of a cell and removes the value from the notes of every peer.
+	 * @param k row-major cell index
+	 * @param value value placed (1..size)
+	 */
+	private void valuePlaced(int k, int value) {
+
+		int keep = ~(1 << value);
+
+		this.marks[k] = 0;
+
+		for(int peer : this.layout.getPeers(k)) {
+			this.marks[peer] &= keep;
+		}
+
+	}
+
+	/**
+	 * Formats the notes of a cell as a small square grid, one line per row of candidates,
+	 * e.g. "1 2  \n    6\n7    " for a 9x9 board. Missing notes are blanks, so every
+	 * cell of a board gets the same width and height. Values above 9 are letters (A = 10).
+	 * @param row row index
+	 * @param column column index
+	 * @return lines separated by '\n'
+	 */
+	public String format(int row, int column) {
+
+		int side = getSide();
+		int mask = this.marks[row * this.size + column];
+		StringBuilder out = new StringBuilder(side * side * 2);
+
+		for(int i = 0 ; i < side ; i++) {
+
+			if(i > 0) {
+				out.append('\n');
+			}
+
+			for(int j = 0 ; j < side ; j++) {
+
+				int value = i * side + j + 1;
+
+				if(j > 0) {
+					out.append(' ');
+				}
+
+				out.append(value <= this.valueCount && (mask & (1 << value)) != 0 ? symbolOf(value) : ' ');
+			}
+
+		}
+
+		return out.toString();
+	}
+
+	/**
+	 * Returns the number of candidates per line of {@link #format(int, int)}:
+	 * the smallest side of a square holding every value (3 for a 9x9 board).
+	 * @return candidates per line
+	 */
+	public int getSide() {
+
+		int side = 1;
+
+		while(side * side < this.valueCount) {
+			side++;
+		}
+
+		return side;
+	}
+
+	/**
+	 * Returns the one-character symbol of a value: its digit, or a letter from 10 on.
+	 * @param value value (1..35)
+	 * @return symbol
+	 */
+	public static char symbolOf(int value) {
+		return Character.toUpperCase(Character.forDigit(value, Character.MAX_RADIX));
+	}
+
+	private void checkValue(int value) {
+
+		if(value < 1 || value > this.valueCount) {
+			throw new IllegalArgumentException("Note value must be between 1 and " + this.valueCount + ": " + value);
+		}
+
+	}
+
+}
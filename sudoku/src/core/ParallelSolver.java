@@ -0,0 +1,502 @@
+package core;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Multi-threaded Sudoku solver for large boards (16x16, 25x25) and exhaustive solution counts.
+ *
+ * The search tree is split into {@link ForkJoinPool} tasks at shallow branch points: a task
+ * branches on the empty cell with the fewest candidates, and while it is near the root and
+ * the pool has no surplus of queued work, every candidate becomes a subtask with its own
+ * copy of the grid and unit masks. Deeper down, or once idle workers have enough tasks to
+ * steal, a task searches its subtree sequentially in place, like {@link Solver}.
+ *
+ * All tasks of a run share a cancellation flag. When looking for a solution, the first task
+ * to find one publishes it and raises the flag; when counting, the tasks add to a shared
+ * counter and raise the flag once the limit is reached. A deadline raises it too.
+ *
+ * Any variant works: void Samurai cells are never searched, values run up to the layout's
+ * value count, and Killer cages are tracked per task like in {@link Solver}.
+ *
+ * A solver instance can be reused for any number of puzzles of the same layout, one run at
+ * a time.
+ *
+ * Usage example:
+ * <pre>
+ * ParallelSolver solver = new ParallelSolver(Layout.standard(16));
+ * int[] solution = solver.solve(cells);			// null if there is none
+ * long count = solver.countSolutions(cells, 0);	// every solution
+ * </pre>
+ */
+public class ParallelSolver {
+
+	private static final int DEADLINE_CHECK_INTERVAL = 1024;	// Nodes between clock reads
+	private static final int MAX_SPLIT_DEPTH = 12;			// Deepest level at which tasks are forked
+	private static final int SURPLUS_TASKS = 3;				// Queued tasks beyond which a worker stops forking
+	private static final int FULL = -1;						// choose(): no empty cell left
+	private static final int DEAD_END = -2;					// choose(): a cell or a unit has no candidate left
+
+	private final Layout layout;
+	private final int size;
+	private final int valueCount;	// Values of the board, 9 on a 21x21 Samurai board
+	private final boolean[] isCell;	// false for void cells, from the layout
+	private final Cages cages;		// null for variants without cages
+	private final int[][] unitsOf;	// Units of every cell, from the layout
+	private final int[][] units;		// Cells of every unit, from the layout
+	private final ForkJoinPool pool;
+	private long deadline;			// System.nanoTime() limit, 0 = none
+
+	// State of the current run, shared by its tasks
+	private AtomicBoolean stop;
+	private AtomicReference<int[]> solution;
+	private AtomicLong solutions;
+	private LongAdder nodes;
+	private long limit;
+	private volatile boolean aborted;
+
+	/**
+	 * Creates a solver running on the common pool.
+	 * @param layout units of the variant to solve
+	 */
+	public ParallelSolver(Layout layout) {
+		this(layout, null, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a solver running on a given pool.
+	 * @param layout units of the variant to solve
+	 * @param pool pool executing the search tasks
+	 */
+	public ParallelSolver(Layout layout, ForkJoinPool pool) {
+		this(layout, null, pool);
+	}
+
+	/**
+	 * Creates a solver for Killer boards running on a given pool.
+	 * @param layout units of the variant to solve
+	 * @param cages cages of the puzzle, or null for variants without cages
+	 * @param pool pool executing the search tasks
+	 * @throws IllegalArgumentException if a Killer layout comes without its cages
+	 */
+	public ParallelSolver(Layout layout, Cages cages, ForkJoinPool pool) {
+
+		if(cages == null && layout.getVariant() == Layout.VARIANT_KILLER) {
+			throw new IllegalArgumentException("Killer puzzles need their cages");
+		}
+
+		int cellCount = layout.getSize() * layout.getSize();
+
+		this.layout = layout;
+		this.size = layout.getSize();
+		this.valueCount = layout.getValueCount();
+		this.isCell = new boolean[cellCount];
+		this.cages = cages;
+		this.pool = pool;
+		this.unitsOf = new int[cellCount][];
+		this.units = new int[layout.getUnitCount()][];
+
+		for(int k = 0 ; k < cellCount ; k++) {
+			this.unitsOf[k] = layout.getUnitsOf(k);
+			this.isCell[k] = layout.isCell(k);
+		}
+
+		for(int u = 0 ; u < this.units.length ; u++) {
+			this.units[u] = layout.getUnit(u);
+		}
+
+	}
+
+	/**
+	 * Returns the layout this solver handles.
+	 * @return layout
+	 */
+	public Layout getLayout() {
+		return this.layout;
+	}
+
+	/**
+	 * Sets a deadline for subsequent runs.
+	 * @param deadlineNanos System.nanoTime() value after which search stops, or 0 for none
+	 */
+	public void setDeadline(long deadlineNanos) {
+		this.deadline = deadlineNanos;
+	}
+
+	/**
+	 * Finds one solution of a puzzle.
+	 * @param cells row-major values, 0 for empty cells
+	 * @return a solution, or null if there is none, the givens break a rule or the deadline passed
+	 */
+	public synchronized int[] solve(int[] cells) {
+
+		run(cells, 1);
+
+		return this.solution.get();
+	}
+
+	/**
+	 * Counts the solutions of a puzzle.
+	 * @param cells row-major values, 0 for empty cells
+	 * @param limit stop once this many solutions are found, or 0 to count them all
+	 * @return number of solutions found, at most limit; a lower bound if the deadline passed
+	 */
+	public synchronized long countSolutions(int[] cells, long limit) {
+
+		run(cells, limit <= 0 ? Long.MAX_VALUE : limit);
+
+		return Math.min(this.solutions.get(), this.limit);
+	}
+
+	/**
+	 * Returns the number of search nodes visited by the last run, over all tasks.
+	 * @return node count
+	 */
+	public long getNodes() {
+		return this.nodes == null ? 0 : this.nodes.sum();
+	}
+
+	/**
+	 * Returns whether the last run stopped because of its deadline.
+	 * @return true if aborted
+	 */
+	public boolean isAborted() {
+		return this.aborted;
+	}
+
+	private void run(int[] cells, long limit) {
+
+		SearchEvent event = new SearchEvent();
+		event.begin();
+
+		this.stop = new AtomicBoolean();
+		this.solution = new AtomicReference<>();
+		this.solutions = new AtomicLong();
+		this.nodes = new LongAdder();
+		this.limit = limit;
+		this.aborted = false;
+
+		int cageCount = this.cages == null ? 0 : this.cages.getCageCount();
+		SearchTask root = new SearchTask(new int[cells.length], new int[this.layout.getUnitCount()], new int[3 * cageCount], 0);
+
+		if(root.load(cells)) {
+			this.pool.invoke(root);
+		}
+
+		event.end(this.size, 0, 0, this.nodes.sum(), this.aborted ? "aborted" : this.solutions.get() == 0 ? "unsolvable" : "solved");
+		Metrics.recordSearch(this.nodes.sum());
+	}
+
+	/**
+	 * Searches one subtree. Owns its grid, unit masks and cage state, so tasks never share
+	 * mutable state other than the run's flag and counters.
+	 */
+	private final class SearchTask extends RecursiveTask<Void> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] grid;
+		private final int[] unitMask;
+		private final int[] cageState;		// Values used, sum missing and empty cells of every cage, one block each
+		private final int depth;
+		private final int[] candidates;	// Scratch for choose(): candidates of every empty cell
+		private int choice;				// Values to try in the cell returned by choose()
+		private long visited;			// Nodes of this task, added to the run total at the end
+
+		SearchTask(int[] grid, int[] unitMask, int[] cageState, int depth) {
+			this.grid = grid;
+			this.unitMask = unitMask;
+			this.cageState = cageState;
+			this.depth = depth;
+			this.candidates = new int[grid.length];
+		}
+
+		@Override
+		protected Void compute() {
+
+			try {
+				branch();
+			} finally {
+				nodes.add(this.visited);
+			}
+
+			return null;
+		}
+
+		/**
+		 * Forks one subtask per candidate of the most constrained cell, or falls back
+		 * to the sequential search when splitting no longer pays.
+		 */
+		private void branch() {
+
+			if(stop.get()) {
+				return;
+			}
+
+			if(this.depth >= MAX_SPLIT_DEPTH || ForkJoinTask.getSurplusQueuedTaskCount() > SURPLUS_TASKS) {
+				search();
+				return;
+			}
+
+			int k = choose();
+			int free = this.choice;
+			this.visited++;
+
+			if(k == FULL) {
+				found();
+				return;
+			}
+
+			if(k == DEAD_END) {
+				return;
+			}
+
+			if(Integer.bitCount(free) == 1) {
+
+				// Forced cell: nothing to split, go one level deeper in this task
+				place(k, Integer.numberOfTrailingZeros(free));
+				branch();
+				return;
+			}
+
+			SearchTask[] children = new SearchTask[Integer.bitCount(free)];
+
+			for(int i = 0 ; free != 0 ; i++) {
+
+				int bit = free & -free;
+				free ^= bit;
+
+				SearchTask child = new SearchTask(this.grid.clone(), this.unitMask.clone(), this.cageState.clone(), this.depth + 1);
+				child.place(k, Integer.numberOfTrailingZeros(bit));
+				children[i] = child;
+			}
+
+			invokeAll(children);
+		}
+
+		/**
+		 * Sequential backtracking on the task's own grid, in the order given by {@link #choose()}.
+		 */
+		private void search() {
+
+			if(stop.get()) {
+				return;
+			}
+
+			if(++this.visited % DEADLINE_CHECK_INTERVAL == 0 && deadline != 0 && System.nanoTime() - deadline > 0) {
+				aborted = true;
+				stop.set(true);
+				return;
+			}
+
+			int k = choose();
+			int free = this.choice;
+
+			if(k == FULL) {
+				found();
+				return;
+			}
+
+			while(k != DEAD_END && free != 0 && !stop.get()) {
+
+				int bit = free & -free;
+				free ^= bit;
+
+				place(k, Integer.numberOfTrailingZeros(bit));
+				search();
+				remove(k);
+			}
+
+		}
+
+		/**
+		 * Records a complete grid: publishes the first solution, counts the others.
+		 */
+		private void found() {
+
+			solution.compareAndSet(null, this.grid.clone());
+
+			if(solutions.incrementAndGet() >= limit) {
+				stop.set(true);
+			}
+
+		}
+
+		/**
+		 * Picks the next branch point and leaves the values to try in {@link #choice}:
+		 * - a cell with a single candidate (naked single)
+		 * - else a value that fits a single cell of some unit (hidden single), tried alone
+		 * - else the empty cell with the fewest candidates
+		 * Large boards are hopeless without the hidden singles: most dead ends only show
+		 * as a value with no room left in a unit, long before any cell runs out of candidates.
+		 * @return cell index, {@link #FULL} or {@link #DEAD_END}
+		 */
+		private int choose() {
+
+			int full = (((1 << valueCount) - 1) << 1);
+			int best = FULL;
+			int bestCount = Integer.MAX_VALUE;
+
+			for(int k = 0 ; k < this.grid.length ; k++) {
+
+				if(this.grid[k] != 0 || !isCell[k]) {
+					this.candidates[k] = 0;
+					continue;
+				}
+
+				int free = candidates(k);
+				int count = Integer.bitCount(free);
+
+				if(count == 0) {
+					return DEAD_END;
+				}
+
+				this.candidates[k] = free;
+
+				if(count < bestCount) {
+					best = k;
+					bestCount = count;
+					this.choice = free;
+				}
+
+			}
+
+			if(bestCount <= 1) {
+				return best;
+			}
+
+			for(int u = 0 ; u < units.length ; u++) {
+
+				int once = 0;
+				int twice = 0;
+
+				for(int k : units[u]) {
+					twice |= once & this.candidates[k];
+					once |= this.candidates[k];
+				}
+
+				if((full & ~this.unitMask[u] & ~once) != 0) {
+					return DEAD_END;		// A missing value has no cell left in this unit
+				}
+
+				int single = once & ~twice;
+
+				if(single != 0) {
+
+					int bit = single & -single;
+
+					for(int k : units[u]) {
+
+						if((this.candidates[k] & bit) != 0) {
+							this.choice = bit;
+							return k;
+						}
+
+					}
+
+				}
+
+			}
+
+			return best;
+		}
+
+		boolean load(int[] cells) {
+
+			if(cages != null) {
+
+				int count = cages.getCageCount();
+
+				for(int cage = 0 ; cage < count ; cage++) {
+					this.cageState[count + cage] = cages.getSum(cage);
+					this.cageState[2 * count + cage] = cages.getCells(cage).length;
+				}
+
+			}
+
+			for(int k = 0 ; k < cells.length ; k++) {
+
+				int value = cells[k];
+
+				if(value == 0) {
+					continue;
+				}
+
+				if(value < 0 || value > valueCount || !isCell[k] || (candidates(k) & (1 << value)) == 0) {
+					return false;
+				}
+
+				place(k, value);
+			}
+
+			return true;
+		}
+
+		private int candidates(int k) {
+
+			int used = 0;
+
+			for(int u : unitsOf[k]) {
+				used |= this.unitMask[u];
+			}
+
+			int free = ~used & (((1 << valueCount) - 1) << 1);
+
+			if(cages != null) {
+				int count = cages.getCageCount();
+				int cage = cages.getCage(k);
+				free &= cages.allowed(this.cageState[2 * count + cage], this.cageState[count + cage], this.cageState[cage]);
+			}
+
+			return free;
+		}
+
+		private void place(int k, int value) {
+
+			int bit = 1 << value;
+
+			this.grid[k] = value;
+
+			for(int u : unitsOf[k]) {
+				this.unitMask[u] |= bit;
+			}
+
+			if(cages != null) {
+				int count = cages.getCageCount();
+				int cage = cages.getCage(k);
+				this.cageState[cage] |= bit;
+				this.cageState[count + cage] -= value;
+				this.cageState[2 * count + cage]--;
+			}
+
+		}
+
+		private void remove(int k) {
+
+			int value = this.grid[k];
+			int bit = ~(1 << value);
+
+			this.grid[k] = 0;
+
+			for(int u : unitsOf[k]) {
+				this.unitMask[u] &= bit;
+			}
+
+			if(cages != null) {
+				int count = cages.getCageCount();
+				int cage = cages.getCage(k);
+				this.cageState[cage] &= bit;
+				this.cageState[count + cage] += value;
+				this.cageState[2 * count + cage]++;
+			}
+
+		}
+
+	}
+
+}
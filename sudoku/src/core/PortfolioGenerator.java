@@ -0,0 +1,142 @@
+package core;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Generates boards with a portfolio of differently seeded searches.
+ *
+ * Each call races several {@link Board} generations on separate worker threads,
+ * returns the first board that completes and cancels the others (their search
+ * notices the interrupt and unwinds). Combined with the restarts inside
+ * {@link Board#initializeBoard(Duration)}, this bounds "new game" latency by the
+ * fastest of several independent runs rather than by one unlucky run.
+ *
+ * The local front ends share {@link #getShared()}; a server hosting many games creates
+ * its own.
+ *
+ * Usage example:
+ * <pre>
+ * try(PortfolioGenerator generator = new PortfolioGenerator(4)) {
+ *     Board board = generator.generate(Board.SIZE_STANDARD, Board.DIFFICULTY_HARD, Duration.ofMillis(50));
+ * }
+ * </pre>
+ */
+public class PortfolioGenerator implements AutoCloseable {
+
+	public static final Duration INTERACTIVE_TIMEOUT = Duration.ofSeconds(2);		// New games started by a player
+
+	/**
+	 * Holder of the shared generator, created on first use.
+	 */
+	private static final class Shared {
+		static final PortfolioGenerator INSTANCE = new PortfolioGenerator();
+	}
+
+	private final ExecutorService workers;
+	private final int width;					// Searches raced per board
+	private final SplittableRandom seeds = new SplittableRandom();
+
+	/**
+	 * Creates a portfolio generator.
+	 * @param width number of searches raced for each board, and of worker threads
+	 */
+	public PortfolioGenerator(int width) {
+
+		this.width = width;
+		this.workers = Executors.newFixedThreadPool(width, r -> {
+			Thread thread = new Thread(r, "portfolio-generator");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+	}
+
+	/**
+	 * Creates a portfolio generator racing one search per available core.
+	 */
+	public PortfolioGenerator() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Returns the generator shared by the front ends of this process, racing one search
+	 * per available core. Its threads are daemons, so it is never closed.
+	 * @return shared generator
+	 */
+	public static PortfolioGenerator getShared() {
+		return Shared.INSTANCE;
+	}
+
+	/**
+	 * Generates a classic board, returning the first of the raced searches to finish.
+	 * @param size board size
+	 * @param difficulty difficulty level
+	 * @param timeout maximum time to wait
+	 * @return generated board
+	 * @throws TimeoutException if no search finished in time
+	 * @throws InterruptedException if the calling thread was interrupted
+	 */
+	public Board generate(int size, int difficulty, Duration timeout) throws TimeoutException, InterruptedException {
+		return this.generate(Layout.standard(size), difficulty, timeout);
+	}
+
+	/**
+	 * Generates a board of any variant, returning the first of the raced searches to finish.
+	 * @param layout layout of the board, shared by the searches
+	 * @param difficulty difficulty level
+	 * @param timeout maximum time to wait
+	 * @return generated board
+	 * @throws TimeoutException if no search finished in time
+	 * @throws InterruptedException if the calling thread was interrupted
+	 */
+	public Board generate(Layout layout, int difficulty, Duration timeout) throws TimeoutException, InterruptedException {
+
+		List<Callable<Board>> searches = new ArrayList<>(this.width);
+
+		for(int i = 0 ; i < this.width ; i++) {
+
+			long seed;
+
+			synchronized(this.seeds) {
+				seed = this.seeds.nextLong();
+			}
+
+			searches.add(() -> {
+
+				Board board = new Board(layout, difficulty, seed);
+
+				if(!board.initializeBoard(timeout)) {
+					throw new TimeoutException("Search with seed " + seed + " timed out");
+				}
+
+				return board;
+			});
+
+		}
+
+		try {
+			return this.workers.invokeAny(searches, timeout.toNanos(), TimeUnit.NANOSECONDS);
+		} catch(ExecutionException e) {
+			throw new TimeoutException("No search finished within " + timeout);
+		}
+
+	}
+
+	/**
+	 * Stops the worker threads.
+	 */
+	@Override
+	public void close() {
+		this.workers.shutdownNow();
+	}
+
+}
@@ -0,0 +1,267 @@
+package core;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Every uniquely solvable puzzle of a layout of at most {@link #MAX_CELLS} cells (the 4x4
+ * boards), by clue count, so such puzzles are picked from a table instead of being carved
+ * and checked.
+ *
+ * A puzzle is a set of clue cells of a solution, stored as a bitmask of cells. It is unique
+ * when it tells its solution apart from every other solution, i.e. when it has a clue in
+ * every set of cells where the two differ. Relabeling changes neither these difference sets
+ * nor the puzzles, so they are computed for the normalized grids of the {@link GridTable}
+ * only, and the puzzles of a clue count are listed on first request by walking every cell
+ * set of that size.
+ *
+ * Usage example:
+ * <pre>
+ * int[] puzzles = PuzzleTable.of(Layout.standard(4)).getPuzzles(solution, 6);
+ * </pre>
+ */
+public final class PuzzleTable {
+
+	public static final int MAX_CELLS = 16;
+
+	private static final Map<Layout, PuzzleTable> CACHE = new ConcurrentHashMap<>();
+
+	private final GridTable grids;
+	private final int cellCount;
+	private final int[][] differences;		// Minimal difference sets of every grid against all other solutions
+	private final AtomicReferenceArray<int[][]> puzzles;	// Clue count -> grid -> clue masks, built on first request
+
+	private PuzzleTable(Layout layout) {
+
+		this.grids = GridTable.of(layout);
+		this.cellCount = layout.getSize() * layout.getSize();
+		this.differences = new int[this.grids.getGridCount()][];
+		this.puzzles = new AtomicReferenceArray<>(this.cellCount + 1);
+
+		for(int g = 0 ; g < this.differences.length ; g++) {
+			this.differences[g] = differencesOf(g);
+		}
+
+	}
+
+	/**
+	 * Checks whether a layout is small enough for a table.
+	 * @param layout layout to check
+	 * @return true if {@link #of(Layout)} accepts it
+	 */
+	public static boolean supports(Layout layout) {
+		return layout.getSize() * layout.getSize() <= MAX_CELLS;
+	}
+
+	/**
+	 * Returns the table of a layout, building it on first use.
+	 * @param layout layout of at most MAX_CELLS cells
+	 * @return puzzle table
+	 * @throws IllegalArgumentException if the layout has more than MAX_CELLS cells
+	 */
+	public static PuzzleTable of(Layout layout) {
+
+		if(!supports(layout)) {
+			throw new IllegalArgumentException("Puzzle tables hold layouts up to " + MAX_CELLS + " cells");
+		}
+
+		if(layout.getVariant() == Layout.VARIANT_JIGSAW) {
+			return new PuzzleTable(layout);
+		}
+
+		return CACHE.computeIfAbsent(layout, PuzzleTable::new);
+	}
+
+	/**
+	 * Returns the unique puzzles of a solution with the given number of clues.
+	 * @param solution row-major values of a complete solution of the layout
+	 * @param clues clue count
+	 * @return clue masks (bit k set when cell k is a clue, shared, do not modify), empty if there is none
+	 */
+	public int[] getPuzzles(int[] solution, int clues) {
+
+		int grid = this.grids.indexOf(solution);
+
+		if(grid < 0 || clues < 0 || clues > this.cellCount) {
+			return new int[0];
+		}
+
+		int[][] byGrid = this.puzzles.get(clues);
+
+		if(byGrid == null) {
+			this.puzzles.compareAndSet(clues, null, listPuzzles(clues));
+			byGrid = this.puzzles.get(clues);
+		}
+
+		return byGrid[grid];
+	}
+
+	/**
+	 * Lists, for every grid, the cell sets of the given size that hit all of its difference sets.
+	 */
+	private int[][] listPuzzles(int clues) {
+
+		int[][] byGrid = new int[this.differences.length][];
+		int[] buffer = new int[64];
+
+		for(int g = 0 ; g < this.differences.length ; g++) {
+
+			int count = 0;
+
+			for(long mask = (1L << clues) - 1 ; mask < 1L << this.cellCount ; mask = nextMask(mask)) {
+
+				if(isUnique((int) mask, this.differences[g])) {
+
+					if(count == buffer.length) {
+						buffer = Arrays.copyOf(buffer, count * 2);
+					}
+
+					buffer[count++] = (int) mask;
+				}
+
+				if(mask == 0) {
+					break;
+				}
+
+			}
+
+			byGrid[g] = Arrays.copyOf(buffer, count);
+		}
+
+		return byGrid;
+	}
+
+	private static boolean isUnique(int clues, int[] differences) {
+
+		for(int difference : differences) {
+			if((clues & difference) == 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Next larger mask with the same number of bits (Gosper's hack).
+	 */
+	private static long nextMask(long mask) {
+		long lowest = mask & -mask;
+		long ripple = mask + lowest;
+		return ripple | ((mask ^ ripple) >>> 2) / lowest;
+	}
+
+	/**
+	 * Difference sets of a grid against every relabeling of every grid, without the
+	 * sets that contain a smaller one (a clue in the smaller set already hits them).
+	 */
+	private int[] differencesOf(int grid) {
+
+		Layout layout = this.grids.getLayout();
+		int size = layout.getSize();
+		int[] cells = new int[this.cellCount];
+		int[] other = new int[this.cellCount];
+		int[] labels = new int[size + 1];
+		int[] found = new int[this.grids.getGridCount() * (int) factorial(size)];
+		int count = 0;
+
+		this.grids.getGrid(grid, cells);
+
+		for(int g = 0 ; g < this.grids.getGridCount() ; g++) {
+
+			this.grids.getGrid(g, other);
+
+			for(int v = 0 ; v <= size ; v++) {
+				labels[v] = v;
+			}
+
+			do {
+
+				int difference = 0;
+
+				for(int k = 0 ; k < this.cellCount ; k++) {
+					if(cells[k] != labels[other[k]]) {
+						difference |= 1 << k;
+					}
+				}
+
+				if(difference != 0) {
+					found[count++] = difference;
+				}
+
+			} while(nextPermutation(labels));
+
+		}
+
+		// Keep the minimal sets only
+		int[] minimal = new int[count];
+		int kept = 0;
+
+		Arrays.sort(found, 0, count);
+
+		for(int i = 0 ; i < count ; i++) {
+
+			boolean covered = false;
+
+			for(int j = 0 ; j < kept && !covered ; j++) {
+				covered = (found[i] & minimal[j]) == minimal[j];
+			}
+
+			if(!covered) {
+				minimal[kept++] = found[i];
+			}
+
+		}
+
+		return Arrays.copyOf(minimal, kept);
+	}
+
+	/**
+	 * Advances labels[1..] to the next permutation in lexicographic order.
+	 * @return false once the last permutation was passed
+	 */
+	private static boolean nextPermutation(int[] labels) {
+
+		int i = labels.length - 2;
+
+		while(i >= 1 && labels[i] >= labels[i + 1]) {
+			i--;
+		}
+
+		if(i < 1) {
+			return false;
+		}
+
+		int j = labels.length - 1;
+
+		while(labels[j] <= labels[i]) {
+			j--;
+		}
+
+		int swap = labels[i];
+		labels[i] = labels[j];
+		labels[j] = swap;
+
+		for(int a = i + 1, b = labels.length - 1 ; a < b ; a++, b--) {
+			swap = labels[a];
+			labels[a] = labels[b];
+			labels[b] = swap;
+		}
+
+		return true;
+	}
+
+	private static long factorial(int n) {
+
+		long result = 1;
+
+		for(int i = 2 ; i <= n ; i++) {
+			result *= i;
+		}
+
+		return result;
+	}
+
+}
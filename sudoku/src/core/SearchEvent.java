@@ -0,0 +1,55 @@
+package core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering one backtracking search, either the fill
+ * performed during generation or a {@link Solver} run.
+ */
+@Name("sudoku.Search")
+@Label("Search")
+@Category({"Sudoku", "Search"})
+@Description("Backtracking search filling or solving a grid")
+public class SearchEvent extends Event {
+
+	@Label("Size")
+	int size;
+
+	@Label("Difficulty")
+	int difficulty;
+
+	@Label("Seed")
+	long seed;
+
+	@Label("Nodes Visited")
+	long nodes;
+
+	@Label("Outcome")
+	String outcome;
+
+	/**
+	 * Fills in the event and commits it if the recording enables it.
+	 * @param size board size
+	 * @param difficulty difficulty level, 0 when unknown
+	 * @param seed random seed of the search, 0 when deterministic
+	 * @param nodes search nodes visited
+	 * @param outcome result of the search (e.g., "solved", "unsolvable", "aborted")
+	 */
+	public void end(int size, int difficulty, long seed, long nodes, String outcome) {
+
+		if(shouldCommit()) {
+			this.size = size;
+			this.difficulty = difficulty;
+			this.seed = seed;
+			this.nodes = nodes;
+			this.outcome = outcome;
+			commit();
+		}
+
+	}
+
+}
@@ -0,0 +1,563 @@
+package core;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Registry of concurrent Sudoku games keyed by session id.
+ *
+ * Sessions are spread over a fixed number of shards, each guarding its own
+ * map with a short-lived lock, so there is no global lock. Every session also
+ * carries its own lock: actions on one game are serialized, while actions on
+ * different games never wait on each other.
+ *
+ * Sessions idle for longer than the configured TTL are evicted by
+ * {@link #evictIdle()} (or periodically after {@link #startEviction(Duration)}).
+ * When a spill directory is set, evicted games are written there in
+ * {@link BoardCodec} form, after their start time, mistakes and hints, and
+ * transparently restored on their next access. Notes are not kept. An evicting
+ * session stays in its shard until its spill is written, and restores happen
+ * under the shard lock, so a game is always found in memory or on disk.
+ *
+ * Usage example:
+ * <pre>
+ * SessionRegistry registry = new SessionRegistry(64, Duration.ofMinutes(30), null);
+ * String id = registry.create(new Sudoku(Board.SIZE_STANDARD, Board.DIFFICULTY_EASY));
+ * boolean done = registry.withSession(id, Sudoku::finished);
+ * </pre>
+ */
+public class SessionRegistry implements AutoCloseable {
+
+	/**
+	 * A hosted game together with its lock and last access time.
+	 */
+	private static final class Session {
+
+		final String id;
+		final Sudoku game;
+		final ReentrantLock lock = new ReentrantLock();
+		volatile long lastAccess;		// System.nanoTime() of the last access
+		boolean evicted;				// Set under lock once the session is leaving its shard
+
+		Session(String id, Sudoku game) {
+			this.id = id;
+			this.game = game;
+			this.lastAccess = System.nanoTime();
+		}
+	}
+
+	/**
+	 * One partition of the session map.
+	 */
+	private static final class Shard {
+		final ReentrantLock lock = new ReentrantLock();
+		final HashMap<String, Session> sessions = new HashMap<>();
+	}
+
+	private static final int SPILL_HEADER = 16;		// Start time in epoch milliseconds, mistakes and hints, before the board
+
+	private final Shard[] shards;
+	private final int shardMask;
+	private final long ttlNanos;
+	private final Path spillDirectory;		// null when eviction discards games
+	private final AtomicInteger sessionCount = new AtomicInteger();
+
+	// Occupancy and contention metrics
+	private final LongAdder acquisitions = new LongAdder();
+	private final LongAdder contendedAcquisitions = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder spills = new LongAdder();
+	private final LongAdder restores = new LongAdder();
+
+	private ScheduledExecutorService evictor;
+
+	/**
+	 * Creates a registry.
+	 * @param shardCount number of shards, rounded up to a power of two
+	 * @param ttl how long a session may stay idle before it is evicted
+	 * @param spillDirectory directory receiving evicted games, or null to discard them
+	 */
+	public SessionRegistry(int shardCount, Duration ttl, Path spillDirectory) {
+
+		int count = Integer.highestOneBit(Math.max(1, shardCount - 1)) << 1;
+		this.shards = new Shard[count];
+
+		for(int i = 0 ; i < count ; i++) {
+			this.shards[i] = new Shard();
+		}
+
+		this.shardMask = count - 1;
+		this.ttlNanos = ttl.toNanos();
+		this.spillDirectory = spillDirectory;
+
+		if(spillDirectory != null) {
+
+			try {
+				Files.createDirectories(spillDirectory);
+			} catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+		}
+
+	}
+
+	/**
+	 * Registers a game under a fresh session id.
+	 * @param game game to host
+	 * @return session id
+	 */
+	public String create(Sudoku game) {
+
+		String id = UUID.randomUUID().toString();
+		Shard shard = shardFor(id);
+
+		shard.lock.lock();
+
+		try {
+			shard.sessions.put(id, new Session(id, game));
+		} finally {
+			shard.lock.unlock();
+		}
+
+		this.sessionCount.incrementAndGet();
+
+		return id;
+	}
+
+	/**
+	 * Runs an action on a game while holding that game's lock.
+	 * A spilled game is restored first.
+	 * @param id session id
+	 * @param action action to run on the game
+	 * @return the action's result
+	 * @throws NoSuchElementException if the session does not exist
+	 */
+	public <R> R withSession(String id, Function<Sudoku, R> action) {
+
+		while(true) {
+
+			Session session = lookup(id);
+
+			if(session == null) {
+				throw new NoSuchElementException("Unknown session: " + id);
+			}
+
+			this.acquisitions.increment();
+
+			if(!session.lock.tryLock()) {
+				this.contendedAcquisitions.increment();
+				session.lock.lock();
+			}
+
+			try {
+
+				if(session.evicted) {
+					continue;	// Evicted between lookup and lock, look it up again
+				}
+
+				session.lastAccess = System.nanoTime();
+
+				return action.apply(session.game);
+
+			} finally {
+				session.lock.unlock();
+			}
+
+		}
+
+	}
+
+	/**
+	 * Removes a session and any spilled copy of it.
+	 * @param id session id
+	 * @return true if the session existed
+	 */
+	public boolean remove(String id) {
+
+		Shard shard = shardFor(id);
+
+		while(true) {
+
+			Session session;
+
+			shard.lock.lock();
+
+			try {
+
+				session = shard.sessions.get(id);
+
+				if(session == null) {
+					return deleteSpill(id);		// Under the shard lock, so no lookup restores it meanwhile
+				}
+
+			} finally {
+				shard.lock.unlock();
+			}
+
+			session.lock.lock();
+
+			try {
+
+				if(session.evicted) {
+					continue;	// Spilled or removed between lookup and lock, look it up again
+				}
+
+				session.evicted = true;
+
+				shard.lock.lock();
+
+				try {
+					shard.sessions.remove(id);
+				} finally {
+					shard.lock.unlock();
+				}
+
+			} finally {
+				session.lock.unlock();
+			}
+
+			this.sessionCount.decrementAndGet();
+			return true;
+		}
+
+	}
+
+	/**
+	 * Evicts every session idle for longer than the TTL.
+	 * Sessions in use at that moment are skipped.
+	 * @return number of sessions evicted
+	 */
+	public int evictIdle() {
+
+		long now = System.nanoTime();
+		int evicted = 0;
+
+		for(Shard shard : this.shards) {
+
+			List<Session> expired = new ArrayList<>();
+
+			shard.lock.lock();
+
+			try {
+
+				for(Session session : shard.sessions.values()) {
+
+					if(now - session.lastAccess > this.ttlNanos && session.lock.tryLock()) {
+						session.evicted = true;
+						expired.add(session);
+					}
+
+				}
+
+			} finally {
+				shard.lock.unlock();
+			}
+
+			if(expired.isEmpty()) {
+				continue;
+			}
+
+			// Spill outside the shard lock. The sessions stay visible and locked until
+			// their spill is written, so a concurrent access waits and then restores them.
+			// Sessions that could not be spilled stay in memory.
+			for(Session session : expired) {
+				session.evicted = spill(session);
+			}
+
+			shard.lock.lock();
+
+			try {
+
+				for(Session session : expired) {
+
+					if(session.evicted) {
+						shard.sessions.remove(session.id);
+						evicted++;
+					}
+
+				}
+
+			} finally {
+				shard.lock.unlock();
+			}
+
+			for(Session session : expired) {
+				session.lock.unlock();
+			}
+
+		}
+
+		this.sessionCount.addAndGet(-evicted);
+		this.evictions.add(evicted);
+
+		return evicted;
+	}
+
+	/**
+	 * Starts a daemon thread calling {@link #evictIdle()} at a fixed period.
+	 * @param period time between sweeps
+	 */
+	public synchronized void startEviction(Duration period) {
+
+		if(this.evictor != null) {
+			return;
+		}
+
+		this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "session-evictor");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		long millis = period.toMillis();
+		this.evictor.scheduleAtFixedRate(this::evictIdle, millis, millis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops the periodic eviction thread, if any.
+	 */
+	@Override
+	public synchronized void close() {
+
+		if(this.evictor != null) {
+			this.evictor.shutdownNow();
+			this.evictor = null;
+		}
+
+	}
+
+	/**
+	 * Returns the number of sessions held in memory.
+	 * @return in-memory session count
+	 */
+	public int getSessionCount() {
+		return this.sessionCount.get();
+	}
+
+	/**
+	 * Returns the number of in-memory sessions per shard.
+	 * @return occupancy of every shard
+	 */
+	public int[] getShardOccupancy() {
+
+		int[] occupancy = new int[this.shards.length];
+
+		for(int i = 0 ; i < this.shards.length ; i++) {
+
+			Shard shard = this.shards[i];
+			shard.lock.lock();
+
+			try {
+				occupancy[i] = shard.sessions.size();
+			} finally {
+				shard.lock.unlock();
+			}
+
+		}
+
+		return occupancy;
+	}
+
+	/**
+	 * Returns how many session lock acquisitions had to wait for another thread.
+	 * @return contended acquisition count
+	 */
+	public long getContendedAcquisitions() {
+		return this.contendedAcquisitions.sum();
+	}
+
+	/**
+	 * Returns the total number of session lock acquisitions.
+	 * @return acquisition count
+	 */
+	public long getAcquisitions() {
+		return this.acquisitions.sum();
+	}
+
+	/**
+	 * Returns how many idle sessions were removed from memory: spilled, or dropped when
+	 * the registry has no spill directory.
+	 * @return eviction count
+	 */
+	public long getEvictions() {
+		return this.evictions.sum();
+	}
+
+	/**
+	 * Returns how many evicted sessions were written to their spill file.
+	 * @return spill count
+	 */
+	public long getSpills() {
+		return this.spills.sum();
+	}
+
+	/**
+	 * Returns how many spilled sessions were read back into memory on access.
+	 * @return restore count
+	 */
+	public long getRestores() {
+		return this.restores.sum();
+	}
+
+	/**
+	 * Summarizes occupancy and contention in one line.
+	 * @return statistics text
+	 */
+	@Override
+	public String toString() {
+
+		int[] occupancy = getShardOccupancy();
+		int max = 0;
+
+		for(int n : occupancy) {
+			max = Math.max(max, n);
+		}
+
+		return "sessions=" + getSessionCount() + " shards=" + occupancy.length + " maxShard=" + max
+				+ " acquisitions=" + getAcquisitions() + " contended=" + getContendedAcquisitions()
+				+ " evictions=" + getEvictions() + " spills=" + getSpills() + " restores=" + getRestores();
+	}
+
+	/**
+	 * Finds a session in memory, restoring it from the spill directory if needed.
+	 * The spill is read under the shard lock: restores are rare and a spill is a few
+	 * hundred bytes, and no other lookup can miss the game while it is being restored.
+	 */
+	private Session lookup(String id) {
+
+		Shard shard = shardFor(id);
+
+		shard.lock.lock();
+
+		try {
+
+			Session session = shard.sessions.get(id);
+
+			if(session == null) {
+
+				Sudoku game = readSpill(id);
+
+				if(game != null) {
+					session = new Session(id, game);
+					shard.sessions.put(id, session);
+					this.sessionCount.incrementAndGet();
+					this.restores.increment();
+				}
+
+			}
+
+			return session;
+
+		} finally {
+			shard.lock.unlock();
+		}
+
+	}
+
+	private Shard shardFor(String id) {
+
+		int h = id.hashCode();
+		h ^= (h >>> 16);
+
+		return this.shards[h & this.shardMask];
+	}
+
+	/**
+	 * Writes an evicting game to the spill directory.
+	 * @return false if the game could not be written and has to stay in memory
+	 */
+	private boolean spill(Session session) {
+
+		if(this.spillDirectory == null) {
+			return true;
+		}
+
+		Sudoku game = session.game;
+		byte[] board = BoardCodec.encode(game.getBoard());
+		ByteBuffer data = ByteBuffer.allocate(SPILL_HEADER + board.length);
+
+		data.putLong(System.currentTimeMillis() - game.getElapsedTime() / 1_000_000);
+		data.putInt(game.getMistakes());
+		data.putInt(game.getHints());
+		data.put(board);
+
+		try {
+			Files.write(this.spillDirectory.resolve(session.id), data.array());
+			this.spills.increment();
+			return true;
+		} catch(IOException e) {
+			System.err.println("Could not spill session " + session.id + ": " + e.getMessage());
+			return false;
+		}
+
+	}
+
+	/**
+	 * Reads and deletes the spilled copy of a session.
+	 * @return the restored game, or null if none was spilled
+	 */
+	private Sudoku readSpill(String id) {
+
+		if(this.spillDirectory == null || id.contains("/") || id.contains("\\") || id.startsWith(".")) {
+			return null;
+		}
+
+		Path file = this.spillDirectory.resolve(id);
+
+		try {
+			byte[] data = Files.readAllBytes(file);
+			Files.deleteIfExists(file);
+
+			if(data.length < SPILL_HEADER) {
+				throw new IllegalArgumentException("Truncated spill of session " + id);
+			}
+
+			ByteBuffer header = ByteBuffer.wrap(data);
+			long elapsedMillis = Math.max(0, System.currentTimeMillis() - header.getLong());
+			int mistakes = header.getInt();
+			int hints = header.getInt();
+			Board board = BoardCodec.decode(Arrays.copyOfRange(data, SPILL_HEADER, data.length));
+
+			return new Sudoku(board, elapsedMillis * 1_000_000, mistakes, hints);
+		} catch(NoSuchFileException e) {
+			return null;
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+	}
+
+	private boolean deleteSpill(String id) {
+
+		if(this.spillDirectory == null || id.contains("/") || id.contains("\\") || id.startsWith(".")) {
+			return false;
+		}
+
+		try {
+			return Files.deleteIfExists(this.spillDirectory.resolve(id));
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+	}
+
+}
@@ -0,0 +1,533 @@
+package core;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Backtracking Sudoku solver working on flat, row-major grids.
+ * The occupancy of every unit of the {@link Layout} is tracked in a bitmask (bit v set
+ * when value v is used), so every candidate test is a couple of mask operations instead
+ * of a scan. Any variant works, as long as its layout is given.
+ *
+ * Killer cages are tracked the same way: the values used in every cage, what is left of
+ * its sum and how many of its cells are empty. The candidates of a cell in a cage are
+ * then cut down by one lookup in the combination table of {@link Cages}.
+ *
+ * On Samurai boards a shared cell is in the units of both its grids, so placing a value
+ * there updates the masks of both and the grids constrain each other without any state
+ * being copied. Killer and Samurai puzzles are searched on the cell with the fewest
+ * candidates: cages without givens, or 369 cells in overlapping grids, leave row-major
+ * order with far too many dead ends.
+ *
+ * A solver instance keeps its buffers between runs and can be reused for any number
+ * of puzzles of the same layout. It is not thread-safe.
+ *
+ * Usage example:
+ * <pre>
+ * Solver solver = new Solver(9);
+ * if(solver.load(cells) &amp;&amp; solver.solve(1) == 1) {
+ *     int[] solution = solver.getSolution();
+ * }
+ * </pre>
+ */
+public class Solver {
+
+	private static final int DEADLINE_CHECK_INTERVAL = 1024;	// Nodes between clock reads
+
+	private final int size;			// Size of the board (e.g., 4 or 9)
+	private final int valueCount;	// Values of the board, 9 on a 21x21 Samurai board
+	private final Layout layout;
+	private final boolean[] isCell;	// false for void cells, from the layout
+	private final boolean fewest;	// Branch on the most constrained cell instead of row-major order
+	private final int[][] unitsOf;	// Units of every cell, from the layout
+	private final int[] grid;		// Working grid, 0 = empty
+	private final int[] solution;	// First solution found
+	private final int[] unitMask;	// Values used in every unit
+	private final int[] other;		// Second solution found, if any
+	private final Cages cages;		// null for variants without cages
+	private final int[] cageUsed;	// Values used in every cage
+	private final int[] cageSum;	// Sum still missing in every cage
+	private final int[] cageLeft;	// Empty cells of every cage
+	private final int[] free;		// Candidates of every empty cell, filled by searchFewest
+
+	private long nodes;				// Search nodes visited in the last run
+	private long deadline;			// System.nanoTime() limit, 0 = none
+	private LongSupplier deadlineSource;	// Read at every deadline check instead of deadline, null = none
+	private long nodeLimit;			// Node count limit per run, 0 = none
+	private boolean aborted;		// True if the last run hit its deadline or node limit
+
+	/**
+	 * Creates a solver for classic boards of the given size.
+	 * @param size board size, a perfect square (e.g., 4 or 9)
+	 */
+	public Solver(int size) {
+		this(Layout.standard(size));
+	}
+
+	/**
+	 * Creates a solver for boards of the given layout.
+	 * @param layout units of the variant to solve
+	 */
+	public Solver(Layout layout) {
+		this(layout, null);
+	}
+
+	/**
+	 * Creates a solver for Killer boards of the given layout and cages.
+	 * @param layout units of the variant to solve
+	 * @param cages cages of the puzzle, or null for none
+	 */
+	public Solver(Layout layout, Cages cages) {
+
+		int cellCount = layout.getSize() * layout.getSize();
+
+		this.size = layout.getSize();
+		this.valueCount = layout.getValueCount();
+		this.layout = layout;
+		this.isCell = new boolean[cellCount];
+		this.unitsOf = new int[cellCount][];
+		this.grid = new int[cellCount];
+		this.solution = new int[cellCount];
+		this.unitMask = new int[layout.getUnitCount()];
+		this.other = new int[cellCount];
+		this.free = new int[cellCount];
+		this.cages = cages;
+		this.cageUsed = cages == null ? null : new int[cages.getCageCount()];
+		this.cageSum = cages == null ? null : new int[cages.getCageCount()];
+		this.cageLeft = cages == null ? null : new int[cages.getCageCount()];
+		this.fewest = cages != null || layout.getVariant() == Layout.VARIANT_SAMURAI;
+
+		for(int k = 0 ; k < cellCount ; k++) {
+			this.unitsOf[k] = layout.getUnitsOf(k);
+			this.isCell[k] = layout.isCell(k);
+		}
+
+	}
+
+	/**
+	 * Returns the board size this solver handles.
+	 * @return board size
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the layout this solver handles.
+	 * @return layout
+	 */
+	public Layout getLayout() {
+		return this.layout;
+	}
+
+	/**
+	 * Returns the cages this solver handles.
+	 * @return cages, or null for variants without cages
+	 */
+	public Cages getCages() {
+		return this.cages;
+	}
+
+	/**
+	 * Sets a deadline for subsequent runs.
+	 * @param deadlineNanos System.nanoTime() value after which search stops, or 0 for none
+	 */
+	public void setDeadline(long deadlineNanos) {
+		this.deadline = deadlineNanos;
+		this.deadlineSource = null;
+	}
+
+	/**
+	 * Sets a deadline for subsequent runs that may move while a run is in progress:
+	 * it is read again at every deadline check.
+	 * @param deadlineNanos supplier of the System.nanoTime() value after which search stops, or 0 for none
+	 */
+	public void setDeadline(LongSupplier deadlineNanos) {
+		this.deadline = 0;
+		this.deadlineSource = deadlineNanos;
+	}
+
+	/**
+	 * Sets a node budget for subsequent runs. Unlike a deadline, it stops a run at the
+	 * same point on every machine, so seeded generation stays reproducible.
+	 * @param nodeLimit search nodes after which search stops, or 0 for none
+	 */
+	public void setNodeLimit(long nodeLimit) {
+		this.nodeLimit = nodeLimit;
+	}
+
+	/**
+	 * Loads a puzzle.
+	 * @param cells row-major values, 0 for empty cells
+	 * @return false if the givens already break a rule
+	 */
+	public boolean load(int[] cells) {
+
+		Arrays.fill(this.unitMask, 0);
+
+		if(this.cages != null) {
+
+			Arrays.fill(this.cageUsed, 0);
+
+			for(int cage = 0 ; cage < this.cageSum.length ; cage++) {
+				this.cageSum[cage] = this.cages.getSum(cage);
+				this.cageLeft[cage] = this.cages.getCells(cage).length;
+			}
+
+		}
+
+		for(int k = 0 ; k < this.grid.length ; k++) {
+
+			int value = cells[k];
+			this.grid[k] = 0;
+
+			if(value == 0) {
+				continue;
+			}
+
+			if(value < 0 || value > this.valueCount || !this.isCell[k] || !canPlace(k, value)) {
+				return false;
+			}
+
+			place(k, value);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Searches the loaded puzzle for solutions.
+	 * @param limit stop after this many solutions (1 to find one, 2 to test uniqueness)
+	 * @return number of solutions found, at most limit
+	 */
+	public int solve(int limit) {
+
+		SearchEvent event = new SearchEvent();
+		event.begin();
+
+		this.nodes = 0;
+		this.aborted = false;
+
+		int found = this.fewest ? searchFewest(limit, 0) : search(0, limit, 0);
+
+		event.end(this.size, 0, 0, this.nodes, this.aborted ? "aborted" : found == 0 ? "unsolvable" : "solved");
+		Metrics.recordSearch(this.nodes);
+
+		return found;
+	}
+
+	/**
+	 * Returns the first solution found by the last run.
+	 * @return row-major solution (shared buffer, copy it to keep it)
+	 */
+	public int[] getSolution() {
+		return this.solution;
+	}
+
+	/**
+	 * Returns the second solution found by the last run, when it found two or more. The
+	 * cells where it differs from {@link #getSolution()} are the ones a new given must
+	 * settle to make the puzzle unique.
+	 * @return row-major solution (shared buffer, copy it to keep it)
+	 */
+	public int[] getOtherSolution() {
+		return this.other;
+	}
+
+	/**
+	 * Returns the number of search nodes visited by the last run.
+	 * @return node count
+	 */
+	public long getNodes() {
+		return this.nodes;
+	}
+
+	private boolean isPastDeadline() {
+
+		long limit = this.deadlineSource != null ? this.deadlineSource.getAsLong() : this.deadline;
+
+		return limit != 0 && System.nanoTime() - limit > 0;
+	}
+
+	/**
+	 * Returns whether the last run stopped because of its deadline or node limit. The
+	 * solution count of an aborted run is a lower bound only.
+	 * @return true if aborted
+	 */
+	public boolean isAborted() {
+		return this.aborted;
+	}
+
+	/**
+	 * Checks that a classic grid is completely filled and breaks no rule.
+	 * @param size board size
+	 * @param cells row-major values
+	 * @return true if the grid is a valid solution
+	 */
+	public static boolean isSolved(int size, int[] cells) {
+		return isSolved(Layout.standard(size), cells);
+	}
+
+	/**
+	 * Checks that a grid is completely filled (void cells excepted) and breaks no rule of its layout.
+	 * @param layout units of the variant
+	 * @param cells row-major values
+	 * @return true if the grid is a valid solution
+	 */
+	public static boolean isSolved(Layout layout, int[] cells) {
+
+		int size = layout.getSize();
+		int[] units = new int[layout.getUnitCount()];
+
+		for(int k = 0 ; k < size * size ; k++) {
+
+			int value = cells[k];
+
+			if(!layout.isCell(k)) {
+				continue;
+			}
+
+			if(value < 1 || value > layout.getValueCount()) {
+				return false;
+			}
+
+			int bit = 1 << value;
+
+			for(int u : layout.getUnitsOf(k)) {
+
+				if((units[u] & bit) != 0) {
+					return false;
+				}
+
+				units[u] |= bit;
+			}
+
+		}
+
+		return true;
+	}
+
+	/**
+	 * Recursive backtracking over the empty cells in row-major order.
+	 * @param start first cell that may still be empty
+	 * @param limit solution count at which to stop
+	 * @param found solutions found so far
+	 * @return solutions found so far, including this subtree
+	 */
+	private int search(int start, int limit, int found) {
+
+		int k = start;
+
+		while(k < this.grid.length && (this.grid[k] != 0 || !this.isCell[k])) {
+			k++;
+		}
+
+		if(k == this.grid.length) {
+			return record(found);
+		}
+
+		if(++this.nodes % DEADLINE_CHECK_INTERVAL == 0 && isPastDeadline() || this.nodes == this.nodeLimit) {
+			this.aborted = true;
+		}
+
+		if(this.aborted) {
+			return found;
+		}
+
+		int free = ~used(k) & fullMask();
+
+		while(free != 0 && found < limit && !this.aborted) {
+
+			int bit = free & -free;
+			free ^= bit;
+
+			place(k, Integer.numberOfTrailingZeros(bit));
+			found = search(k + 1, limit, found);
+			remove(k);
+		}
+
+		return found;
+	}
+
+	/**
+	 * Recursive backtracking that branches on the empty cell with the fewest candidates,
+	 * or on the only cell of a unit left for one of its missing values. A branch is cut
+	 * as soon as an empty cell has no candidate or a missing value no cell of its unit.
+	 * @param limit solution count at which to stop
+	 * @param found solutions found so far
+	 * @return solutions found so far, including this subtree
+	 */
+	private int searchFewest(int limit, int found) {
+
+		int best = -1;
+		int bestFree = 0;
+		int bestCount = Integer.MAX_VALUE;
+
+		for(int k = 0 ; k < this.grid.length ; k++) {
+
+			if(this.grid[k] != 0 || !this.isCell[k]) {
+				continue;
+			}
+
+			int free = candidates(k);
+			int count = Integer.bitCount(free);
+
+			if(count == 0) {
+				return found;		// Dead end
+			}
+
+			this.free[k] = free;
+
+			if(count < bestCount) {
+				best = k;
+				bestFree = free;
+				bestCount = count;
+			}
+
+		}
+
+		if(best < 0) {
+			return record(found);
+		}
+
+		for(int u = 0 ; u < this.unitMask.length && bestCount > 1 ; u++) {
+
+			int once = 0;		// Candidates of at least one empty cell of the unit
+			int twice = 0;		// Candidates of at least two
+
+			for(int k : this.layout.getUnit(u)) {
+				int free = this.grid[k] == 0 ? this.free[k] : 0;
+				twice |= once & free;
+				once |= free;
+			}
+
+			if((fullMask() & ~this.unitMask[u] & ~once) != 0) {
+				return found;		// A missing value has no room left
+			}
+
+			int single = once & ~twice;
+
+			if(single != 0) {
+
+				int bit = single & -single;
+
+				for(int k : this.layout.getUnit(u)) {
+
+					if(this.grid[k] == 0 && (this.free[k] & bit) != 0) {
+						best = k;
+						bestFree = bit;
+						bestCount = 1;
+					}
+
+				}
+
+			}
+
+		}
+
+		if(++this.nodes % DEADLINE_CHECK_INTERVAL == 0 && isPastDeadline() || this.nodes == this.nodeLimit) {
+			this.aborted = true;
+		}
+
+		while(bestFree != 0 && found < limit && !this.aborted) {
+
+			int bit = bestFree & -bestFree;
+			bestFree ^= bit;
+
+			place(best, Integer.numberOfTrailingZeros(bit));
+			found = searchFewest(limit, found);
+			remove(best);
+		}
+
+		return found;
+	}
+
+	/**
+	 * Keeps the first two solutions.
+	 */
+	private int record(int found) {
+
+		if(found < 2) {
+			System.arraycopy(this.grid, 0, found == 0 ? this.solution : this.other, 0, this.grid.length);
+		}
+
+		return found + 1;
+	}
+
+	/**
+	 * Values an empty cell can take: unused by its units and allowed by its cage.
+	 */
+	private int candidates(int k) {
+
+		int free = ~used(k) & fullMask();
+
+		if(this.cages != null) {
+			int cage = this.cages.getCage(k);
+			free &= this.cages.allowed(this.cageLeft[cage], this.cageSum[cage], this.cageUsed[cage]);
+		}
+
+		return free;
+	}
+
+	private int fullMask() {
+		return ((1 << this.valueCount) - 1) << 1;
+	}
+
+	/**
+	 * Values used by any unit of a cell.
+	 */
+	private int used(int k) {
+
+		int used = 0;
+
+		for(int u : this.unitsOf[k]) {
+			used |= this.unitMask[u];
+		}
+
+		return used;
+	}
+
+	private boolean canPlace(int k, int value) {
+		return (candidates(k) & (1 << value)) != 0;
+	}
+
+	private void place(int k, int value) {
+
+		int bit = 1 << value;
+
+		this.grid[k] = value;
+
+		for(int u : this.unitsOf[k]) {
+			this.unitMask[u] |= bit;
+		}
+
+		if(this.cages != null) {
+			int cage = this.cages.getCage(k);
+			this.cageUsed[cage] |= bit;
+			this.cageSum[cage] -= value;
+			this.cageLeft[cage]--;
+		}
+
+	}
+
+	private void remove(int k) {
+
+		int value = this.grid[k];
+		int bit = ~(1 << value);
+
+		this.grid[k] = 0;
+
+		for(int u : this.unitsOf[k]) {
+			this.unitMask[u] &= bit;
+		}
+
+		if(this.cages != null) {
+			int cage = this.cages.getCage(k);
+			this.cageUsed[cage] &= bit;
+			this.cageSum[cage] += value;
+			this.cageLeft[cage]++;
+		}
+
+	}
+
+}
@@ -0,0 +1,413 @@
+package core;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shared solve/verify service for many concurrent callers.
+ *
+ * Requests are queued and a dispatcher thread drains them into batches that a
+ * fixed pool of workers processes, each worker reusing one {@link Solver} per board size.
+ * Identical puzzles that are already queued or being solved are coalesced:
+ * later callers attach to the pending solve instead of starting another one and
+ * extend its deadline to theirs, which the running search reads as it goes. A solve
+ * that stops at its deadline is queued again if a caller attached meanwhile with
+ * time left. Every call returns a {@link CompletableFuture} that fails with a
+ * {@link TimeoutException} once its deadline passes.
+ *
+ * Usage example:
+ * <pre>
+ * try(SolverService service = new SolverService(4, 64)) {
+ *     int[] solution = service.solve(9, cells, Duration.ofMillis(200)).join();
+ * }
+ * </pre>
+ */
+public class SolverService implements AutoCloseable {
+
+	/**
+	 * Puzzle identity used for coalescing: size plus cell values.
+	 */
+	private static final class PuzzleKey {
+
+		final int size;
+		final int[] cells;
+		final int hash;
+
+		PuzzleKey(int size, int[] cells) {
+			this.size = size;
+			this.cells = cells;
+			this.hash = 31 * size + Arrays.hashCode(cells);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof PuzzleKey key && key.size == this.size && Arrays.equals(key.cells, this.cells);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+	}
+
+	/**
+	 * A queued unit of work: either a solve or a verification.
+	 */
+	private static final class Request {
+
+		final PuzzleKey key;
+		final int[] grid;						// Submitted grid for verification, null for a solve
+		final CompletableFuture<int[]> solved;	// Completed by solve requests
+		final CompletableFuture<Boolean> verified;	// Completed by verify requests
+		final AtomicLong deadline;				// Latest deadline among coalesced callers
+
+		Request(PuzzleKey key, int[] grid, long deadline) {
+			this.key = key;
+			this.grid = grid;
+			this.solved = grid == null ? new CompletableFuture<>() : null;
+			this.verified = grid == null ? null : new CompletableFuture<>();
+			this.deadline = new AtomicLong(deadline);
+		}
+	}
+
+	/**
+	 * Requests handed to a worker at once. Kept as a type so that close() can fail
+	 * the batches the workers never started.
+	 */
+	private final class Batch implements Runnable {
+
+		final List<Request> requests;
+
+		Batch(List<Request> requests) {
+			this.requests = requests;
+		}
+
+		@Override
+		public void run() {
+			process(this.requests);
+		}
+	}
+
+	private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+	private final Map<PuzzleKey, Request> inFlight = new ConcurrentHashMap<>();
+	private final ExecutorService workers;
+	private final Thread dispatcher;
+	private final int maxBatch;
+	private final ThreadLocal<Map<Integer, Solver>> solvers = ThreadLocal.withInitial(HashMap::new);	// Per worker, by board size
+
+	private volatile boolean running = true;
+
+	// Throughput metrics
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder solves = new LongAdder();
+
+	/**
+	 * Creates the service and starts its dispatcher.
+	 * @param workerCount number of worker threads
+	 * @param maxBatch largest number of requests handed to a worker at once
+	 */
+	public SolverService(int workerCount, int maxBatch) {
+
+		this.maxBatch = maxBatch;
+		this.workers = Executors.newFixedThreadPool(workerCount, r -> {
+			Thread thread = new Thread(r, "solver-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		this.dispatcher = new Thread(this::dispatch, "solver-dispatcher");
+		this.dispatcher.setDaemon(true);
+		this.dispatcher.start();
+	}
+
+	/**
+	 * Solves a puzzle.
+	 * @param size board size (e.g., 4 or 9)
+	 * @param cells row-major puzzle, 0 for empty cells
+	 * @param timeout how long the caller is willing to wait
+	 * @return future completed with the solution, or with null if the puzzle has none
+	 */
+	public CompletableFuture<int[]> solve(int size, int[] cells, Duration timeout) {
+
+		this.requests.increment();
+
+		long deadline = System.nanoTime() + timeout.toNanos();
+		PuzzleKey key = new PuzzleKey(size, cells.clone());
+		Request fresh = new Request(key, null, deadline);
+
+		// Share a pending solve and let it run until the latest caller's deadline. Atomic
+		// with expire(), so a solve is never given up on right after a caller extended it.
+		Request request = this.inFlight.compute(key, (k, pending) -> {
+
+			if(pending == null) {
+				return fresh;
+			}
+
+			pending.deadline.accumulateAndGet(deadline, (a, b) -> b - a > 0 ? b : a);
+			return pending;
+		});
+
+		if(request == fresh) {
+			this.queue.add(fresh);
+		}
+
+		else {
+			this.coalesced.increment();
+		}
+
+		return request.solved
+				.thenApply(solution -> solution == null ? null : solution.clone())
+				.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Verifies a submitted grid: it must be complete, break no rule and keep every clue of the puzzle.
+	 * @param size board size (e.g., 4 or 9)
+	 * @param puzzle row-major puzzle the grid was played from
+	 * @param grid row-major submitted grid
+	 * @param timeout how long the caller is willing to wait
+	 * @return future completed with true if the grid is a correct solution
+	 */
+	public CompletableFuture<Boolean> verify(int size, int[] puzzle, int[] grid, Duration timeout) {
+
+		this.requests.increment();
+
+		Request request = new Request(new PuzzleKey(size, puzzle.clone()), grid.clone(), System.nanoTime() + timeout.toNanos());
+		this.queue.add(request);
+
+		return request.verified.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Stops the dispatcher and workers. Pending requests, queued or in batches that
+	 * no worker started, are failed.
+	 */
+	@Override
+	public void close() {
+
+		this.running = false;
+		this.dispatcher.interrupt();
+
+		for(Runnable task : this.workers.shutdownNow()) {
+
+			if(task instanceof Batch batch) {
+				batch.requests.forEach(this::failClosed);
+			}
+
+		}
+
+		Request request;
+
+		while((request = this.queue.poll()) != null) {
+			failClosed(request);
+		}
+
+	}
+
+	/**
+	 * Returns how many solve and verify calls were made.
+	 * @return request count
+	 */
+	public long getRequestCount() {
+		return this.requests.sum();
+	}
+
+	/**
+	 * Returns how many solve calls attached to an identical pending solve instead of queueing their own.
+	 * @return coalesced request count
+	 */
+	public long getCoalescedCount() {
+		return this.coalesced.sum();
+	}
+
+	/**
+	 * Returns how many batches the dispatcher handed to the workers.
+	 * @return batch count
+	 */
+	public long getBatchCount() {
+		return this.batches.sum();
+	}
+
+	/**
+	 * Returns how many searches the workers ran, counting a solve queued again after its deadline once per run.
+	 * @return solve count
+	 */
+	public long getSolveCount() {
+		return this.solves.sum();
+	}
+
+	/**
+	 * Drains the queue into batches and hands them to the workers.
+	 */
+	private void dispatch() {
+
+		while(this.running) {
+
+			try {
+
+				List<Request> batch = new ArrayList<>(this.maxBatch);
+				batch.add(this.queue.take());
+				this.queue.drainTo(batch, this.maxBatch - 1);
+
+				this.batches.increment();
+
+				try {
+					this.workers.execute(new Batch(batch));
+				} catch(RejectedExecutionException e) {
+					batch.forEach(this::failClosed);		// Closed between take() and execute()
+				}
+
+			} catch(InterruptedException e) {
+				return;
+			}
+
+		}
+
+	}
+
+	/**
+	 * Runs every request of a batch on this worker's solvers.
+	 */
+	private void process(List<Request> batch) {
+
+		for(Request request : batch) {
+
+			try {
+
+				if(System.nanoTime() - request.deadline.get() > 0) {
+
+					if(request.grid != null) {
+						fail(request, new TimeoutException("Deadline passed before processing"));
+					}
+
+					else {
+						expire(request, "Deadline passed before processing");
+					}
+
+				}
+
+				else if(request.grid != null) {
+					request.verified.complete(verify(request));
+				}
+
+				else {
+					solve(request);
+				}
+
+			} catch(RuntimeException e) {
+				fail(request, e);
+			}
+
+		}
+
+	}
+
+	private void solve(Request request) {
+
+		PuzzleKey key = request.key;
+		Solver solver = this.solvers.get().computeIfAbsent(key.size, Solver::new);
+
+		this.solves.increment();
+
+		int[] solution = null;
+
+		if(solver.load(key.cells)) {
+
+			solver.setDeadline(request.deadline::get);		// Coalescing callers extend a running search
+
+			if(solver.solve(1) == 1) {
+				solution = solver.getSolution().clone();
+			}
+
+			else if(solver.isAborted()) {
+				expire(request, "Deadline passed while solving");
+				return;
+			}
+
+		}
+
+		this.inFlight.remove(key, request);
+		request.solved.complete(solution);
+	}
+
+	private static boolean verify(Request request) {
+
+		int[] puzzle = request.key.cells;
+		int[] grid = request.grid;
+
+		if(grid.length != puzzle.length) {
+			return false;
+		}
+
+		for(int k = 0 ; k < puzzle.length ; k++) {
+
+			if(puzzle[k] != 0 && puzzle[k] != grid[k]) {
+				return false;
+			}
+
+		}
+
+		return Solver.isSolved(request.key.size, grid);
+	}
+
+	/**
+	 * Gives up on a solve whose deadline passed, unless a caller attached in the meantime
+	 * with time left: then the solve is queued again. The check and the removal from the
+	 * pending solves are atomic with coalescing, so nobody attaches to a given up solve.
+	 */
+	private void expire(Request request, String message) {
+
+		Request kept = this.inFlight.computeIfPresent(request.key,
+				(key, pending) -> pending == request && System.nanoTime() - request.deadline.get() > 0 ? null : pending);
+
+		if(kept == request && this.running) {
+
+			this.queue.add(request);
+
+			if(!this.running && this.queue.remove(request)) {
+				failClosed(request);		// close() drained the queue meanwhile
+			}
+
+		}
+
+		else {
+			fail(request, new TimeoutException(message));
+		}
+
+	}
+
+	private void failClosed(Request request) {
+		fail(request, new IllegalStateException("Solver service closed"));
+	}
+
+	private void fail(Request request, Throwable cause) {
+
+		if(request.grid != null) {
+			request.verified.completeExceptionally(cause);
+		}
+
+		else {
+			this.inFlight.remove(request.key, request);
+			request.solved.completeExceptionally(cause);
+		}
+
+	}
+
+}
@@ -0,0 +1,309 @@
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of solved games: solve time, mistakes and hints per board size and difficulty.
+ *
+ * Every (size, difficulty) pair keeps one {@link Histogram} per measure, so a store has a
+ * fixed footprint however many games it holds, and percentile queries walk a fixed number
+ * of buckets. The best time is tracked exactly next to the histograms. Recording is
+ * lock-free, and stores can be merged bucket by bucket, which keeps aggregating the
+ * statistics of many players cheap.
+ *
+ * Solve times are recorded in milliseconds. On disk only the non-empty buckets are
+ * written, so a file holding thousands of games is a few hundred bytes.
+ *
+ * Usage example:
+ * <pre>
+ * StatisticsStore statistics = StatisticsStore.load(StatisticsStore.DEFAULT_FILE);
+ * statistics.record(9, Board.DIFFICULTY_MEDIUM, solveMillis, mistakes, hints);
+ * statistics.save(StatisticsStore.DEFAULT_FILE);
+ * </pre>
+ */
+public class StatisticsStore {
+
+	public static final Path DEFAULT_FILE = Path.of(System.getProperty("user.home"), ".sudoku", "statistics.dat");
+
+	private static final int MAGIC = 0x53444B53;		// "SDKS"
+	private static final int VERSION = 1;
+	private static final int DIFFICULTY_SLOTS = 4;		// Difficulty levels 0..3
+
+	/**
+	 * Statistics of one board size and difficulty.
+	 */
+	private static final class Entry {
+
+		final Histogram solveTime = new Histogram();
+		final Histogram mistakes = new Histogram();
+		final Histogram hints = new Histogram();
+		final LongAdder games = new LongAdder();
+		final AtomicLong bestTime = new AtomicLong(Long.MAX_VALUE);
+	}
+
+	private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * Records a solved game.
+	 * @param size board size
+	 * @param difficulty difficulty level
+	 * @param solveMillis time taken to solve, in milliseconds
+	 * @param mistakes rejected moves
+	 * @param hints hints used
+	 */
+	public void record(int size, int difficulty, long solveMillis, int mistakes, int hints) {
+
+		Entry entry = this.entries.computeIfAbsent(keyOf(size, difficulty), k -> new Entry());
+
+		entry.solveTime.record(solveMillis);
+		entry.mistakes.record(mistakes);
+		entry.hints.record(hints);
+		entry.games.increment();
+		entry.bestTime.accumulateAndGet(solveMillis, Math::min);
+	}
+
+	/**
+	 * Returns the number of solved games.
+	 * @param size board size
+	 * @param difficulty difficulty level
+	 * @return game count
+	 */
+	public long getGames(int size, int difficulty) {
+
+		Entry entry = this.entries.get(keyOf(size, difficulty));
+
+		return entry == null ? 0 : entry.games.sum();
+	}
+
+	/**
+	 * Returns the fastest solve time.
+	 * @param size board size
+	 * @param difficulty difficulty level
+	 * @return best time in milliseconds, or -1 if no game was solved
+	 */
+	public long getBestTime(int size, int difficulty) {
+
+		Entry entry = this.entries.get(keyOf(size, difficulty));
+
+		if(entry == null || entry.bestTime.get() == Long.MAX_VALUE) {
+			return -1;
+		}
+
+		return entry.bestTime.get();
+	}
+
+	/**
+	 * Returns a solve time percentile.
+	 * @param size board size
+	 * @param difficulty difficulty level
+	 * @param percentile percentile between 0 and 100
+	 * @return solve time in milliseconds, or 0 if no game was solved
+	 */
+	public long getSolveTimePercentile(int size, int difficulty, double percentile) {
+
+		Entry entry = this.entries.get(keyOf(size, difficulty));
+
+		return entry == null ? 0 : entry.solveTime.getPercentile(percentile);
+	}
+
+	/**
+	 * Returns a percentile of the mistakes made per game.
+	 * @param size board size
+	 * @param difficulty difficulty level
+	 * @param percentile percentile between 0 and 100
+	 * @return mistakes, or 0 if no game was solved
+	 */
+	public long getMistakesPercentile(int size, int difficulty, double percentile) {
+
+		Entry entry = this.entries.get(keyOf(size, difficulty));
+
+		return entry == null ? 0 : entry.mistakes.getPercentile(percentile);
+	}
+
+	/**
+	 * Returns a percentile of the hints used per game.
+	 * @param size board size
+	 * @param difficulty difficulty level
+	 * @param percentile percentile between 0 and 100
+	 * @return hints, or 0 if no game was solved
+	 */
+	public long getHintsPercentile(int size, int difficulty, double percentile) {
+
+		Entry entry = this.entries.get(keyOf(size, difficulty));
+
+		return entry == null ? 0 : entry.hints.getPercentile(percentile);
+	}
+
+	/**
+	 * Adds every game of another store to this one.
+	 * @param other store to merge in
+	 */
+	public void add(StatisticsStore other) {
+
+		for(Map.Entry<Integer, Entry> e : other.entries.entrySet()) {
+
+			Entry from = e.getValue();
+			Entry to = this.entries.computeIfAbsent(e.getKey(), k -> new Entry());
+
+			to.solveTime.add(from.solveTime);
+			to.mistakes.add(from.mistakes);
+			to.hints.add(from.hints);
+			to.games.add(from.games.sum());
+			to.bestTime.accumulateAndGet(from.bestTime.get(), Math::min);
+		}
+
+	}
+
+	/**
+	 * Loads a store saved with {@link #save(Path)}.
+	 * @param file statistics file
+	 * @return the saved statistics, or an empty store if the file does not exist
+	 * @throws IOException if the file cannot be read or is not a statistics file
+	 */
+	public static StatisticsStore load(Path file) throws IOException {
+
+		StatisticsStore store = new StatisticsStore();
+
+		if(!Files.exists(file)) {
+			return store;
+		}
+
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+
+			if(in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+				throw new IOException("Not a statistics file: " + file);
+			}
+
+			int count = in.readUnsignedShort();
+
+			for(int i = 0 ; i < count ; i++) {
+
+				Entry entry = new Entry();
+				store.entries.put(in.readInt(), entry);
+
+				entry.games.add(in.readLong());
+				entry.bestTime.set(in.readLong());
+				readHistogram(in, entry.solveTime);
+				readHistogram(in, entry.mistakes);
+				readHistogram(in, entry.hints);
+			}
+
+		}
+
+		return store;
+	}
+
+	/**
+	 * Writes the store to a file, replacing it atomically.
+	 * @param file statistics file, its directory is created if needed
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(Path file) throws IOException {
+
+		Path directory = file.toAbsolutePath().getParent();
+
+		if(directory != null) {
+			Files.createDirectories(directory);
+		}
+
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeShort(this.entries.size());
+
+			for(Map.Entry<Integer, Entry> e : this.entries.entrySet()) {
+
+				Entry entry = e.getValue();
+
+				out.writeInt(e.getKey());
+				out.writeLong(entry.games.sum());
+				out.writeLong(entry.bestTime.get());
+				writeHistogram(out, entry.solveTime);
+				writeHistogram(out, entry.mistakes);
+				writeHistogram(out, entry.hints);
+			}
+
+		}
+
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Formats a duration in milliseconds as minutes and seconds, e.g. "4:07".
+	 * @param millis duration in milliseconds
+	 * @return formatted time
+	 */
+	public static String formatTime(long millis) {
+
+		long seconds = millis / 1000;
+
+		return String.format("%d:%02d", seconds / 60, seconds % 60);
+	}
+
+	private static int keyOf(int size, int difficulty) {
+		return size * DIFFICULTY_SLOTS + difficulty;
+	}
+
+	/**
+	 * Writes the non-empty buckets: their number, then (bucket, count) pairs.
+	 */
+	private static void writeHistogram(DataOutputStream out, Histogram histogram) throws IOException {
+
+		int used = 0;
+
+		for(int i = 0 ; i < Histogram.BUCKET_COUNT ; i++) {
+
+			if(histogram.getBucketCount(i) != 0) {
+				used++;
+			}
+
+		}
+
+		out.writeShort(used);
+
+		for(int i = 0 ; i < Histogram.BUCKET_COUNT ; i++) {
+
+			long count = histogram.getBucketCount(i);
+
+			if(count != 0) {
+				out.writeShort(i);
+				out.writeLong(count);
+			}
+
+		}
+
+	}
+
+	private static void readHistogram(DataInputStream in, Histogram histogram) throws IOException {
+
+		int used = in.readUnsignedShort();
+
+		for(int i = 0 ; i < used ; i++) {
+
+			int bucket = in.readUnsignedShort();
+			long count = in.readLong();
+
+			if(bucket >= Histogram.BUCKET_COUNT) {
+				throw new IOException("Corrupt statistics file");
+			}
+
+			histogram.record(Histogram.lowerBoundOf(bucket), count);
+		}
+
+	}
+
+}
@@ -12,15 +12,16 @@ import application.controllers.MainController;
  */
 public class Sudoku {
 	
-    // Scanner to read user input
-	private Scanner scan = new Scanner(System.in); 
-	
 	// Constants representing the type of game
 	public static final int TERMINAL_GAME = 1;
 	public static final int UI_GAME = 2;
 	
 	private Board board;    	// The Sudoku board for this game
 	private int gameType;	// Selected game type (1 = Terminal, 2 = UI)
+	private long startTime = System.nanoTime();	// When this game was created
+	private int mistakes;	// Moves rejected by the rules
+	private int hints;		// Cells revealed on request
+	private int emptyCells;	// Kept up to date by a board listener, so finished() needs no scan
 	
 	/**
      * Default constructor.
@@ -28,6 +29,7 @@ public class Sudoku {
      */
 	public Sudoku() {		
 		this.board = new Board();
+		this.countEmptyCells();
 	}
 
     /**
@@ -37,6 +39,32 @@ public class Sudoku {
      */
 	public Sudoku(int size, int difficulty) {
 		this.board = new Board(size, difficulty);
+		this.countEmptyCells();
+	}
+	
+	/**
+     * Constructor wrapping an existing board, e.g. one restored from storage.
+     * Cells already revealed on the board count as hints.
+     * @param board the board to play on
+     */
+	public Sudoku(Board board) {
+		this.board = board;
+		this.hints = board.countRevealedCells();
+		this.countEmptyCells();
+	}
+	
+	/**
+     * Constructor resuming a game restored from storage, with its clock and counters.
+     * @param board the board to play on
+     * @param elapsedTime nanoseconds the game had been running
+     * @param mistakes moves rejected so far
+     * @param hints hints used so far
+     */
+	public Sudoku(Board board, long elapsedTime, int mistakes, int hints) {
+		this(board);
+		this.startTime = System.nanoTime() - elapsedTime;
+		this.mistakes = mistakes;
+		this.hints = hints;
 	}
 	
 	/**
@@ -50,10 +78,13 @@ public class Sudoku {
 	/**
      * Starts the Sudoku game.
      * Asks the user for the game type and launches the selected mode.
+     * Only this interactive path reads the console, so it alone creates a Scanner.
      */
 	public void play() {
 		
-		this.gameType = this.getGameType();
+		Scanner scan = new Scanner(System.in);		// Read user input
+		
+		this.gameType = this.getGameType(scan);
 		
 		if(this.gameType == TERMINAL_GAME) {
             // Launch terminal game
@@ -88,29 +119,129 @@ public class Sudoku {
      * @return true if all cells are non-zero
      */
 	public boolean finished() {
+		return this.emptyCells == 0;
+	}
+	
+    /**
+     * Returns the number of empty cells.
+     * @return empty cell count
+     */
+	public int getEmptyCells() {
+		return this.emptyCells;
+	}
+	
+    /**
+     * Counts the empty cells once and keeps the count up to date with a board listener:
+     * every change adjusts it by one, and only a regenerated board is counted again.
+     */
+	private void countEmptyCells() {
 		
-		for(int i = 0 ; i < this.board.getSize() ; i++) {
+		this.emptyCells = this.scanEmptyCells();
+		
+		this.board.addListener(new BoardListener() {
 			
-			for(int j = 0 ; j < this.board.getSize() ; j++) {
-				
-				if(this.board.getValue(i, j) == 0) {
-					return false;	// Found an empty cell
-				}
-				
+			@Override
+			public void cellChanged(int row, int column, int oldValue, int newValue) {
+				emptyCells += (newValue == 0 ? 1 : 0) - (oldValue == 0 ? 1 : 0);
 			}
 			
+			@Override
+			public void boardReplaced() {
+				emptyCells = scanEmptyCells();
+			}
+			
+		});
+		
+	}
+	
+	private int scanEmptyCells() {
+		
+		int empty = 0;
+		
+		for(int i = 0 ; i < this.board.getSize() ; i++) {
+			for(int j = 0 ; j < this.board.getSize() ; j++) {
+				empty += this.board.getValue(i, j) == 0 && this.board.isCell(i, j) ? 1 : 0;		// Void Samurai cells stay empty
+			}
 		}
 		
-		return true;		// All cells filled
+		return empty;
+	}
+	
+    /**
+     * Returns how long this game has been running.
+     * @return nanoseconds since the game was created
+     */
+	public long getElapsedTime() {
+		return System.nanoTime() - this.startTime;
+	}
+	
+    /**
+     * Counts a move that was rejected by the rules.
+     */
+	public void recordMistake() {
+		this.mistakes++;
+	}
+	
+    /**
+     * Returns the number of moves rejected so far.
+     * @return mistake count
+     */
+	public int getMistakes() {
+		return this.mistakes;
+	}
+	
+    /**
+     * Reveals the solution value of a cell and counts it as a hint.
+     * @param row row index
+     * @param column column index
+     * @return value revealed, or 0 if the cell is fixed or the solution is not known
+     */
+	public int revealCell(int row, int column) {
+		
+		if(this.board.isCellFixed(row, column)) {
+			return 0;
+		}
+		
+		int value = this.board.revealCell(row, column);
+		
+		if(value != 0) {
+			this.recordHint();
+		}
+		
+		return value;
+	}
+	
+    /**
+     * Counts a cell revealed on request.
+     */
+	public void recordHint() {
+		this.hints++;
+	}
+	
+    /**
+     * Returns the number of hints used so far.
+     * @return hint count
+     */
+	public int getHints() {
+		return this.hints;
+	}
+	
+    /**
+     * Adds this game, once solved, to a statistics store.
+     * @param statistics store receiving the solve time, mistakes and hints
+     */
+	public void recordStatistics(StatisticsStore statistics) {
+		statistics.record(this.board.getSize(), this.board.getDifficultyLevel(), getElapsedTime() / 1_000_000, this.mistakes, this.hints);
 	}
 	
     /**
      * Prompts the user to select the type of game.
      * 1 = Terminal game, 2 = UI game
      * Validates input and ensures only 1 or 2 is accepted.
+     * @param scan scanner reading the user's input
      * @return Selected game type
      */
-	public int getGameType() {
+	public int getGameType(Scanner scan) {
 		
 		System.out.println("Give me the type of game you want to play: ");
 		System.out.println("1. Terminal Game");
@@ -120,6 +251,11 @@ public class Sudoku {
 		
 		do {
 			
+			 while(!scan.hasNextInt()) {
+				 System.out.println("Invalid input '" + scan.next() + "', please enter 1 or 2.");
+				 System.out.print("Enter game type: ");
+			 }
+			 
 			  type = scan.nextInt();
 			 
 			 if(type != TERMINAL_GAME && type != UI_GAME) {
@@ -144,4 +280,4 @@ public class Sudoku {
 		
 	}
 		
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,226 @@
+package core;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generates puzzles of a requested {@link DifficultyRater} rating.
+ *
+ * A random minimal puzzle lands in the hard band only a few times in a hundred, so
+ * asking for one means trying many candidates. Each call runs several speculative
+ * searches on separate worker threads; every search generates minimal puzzles from its
+ * own seeds and rates them until one falls in the requested band. The first match is
+ * returned and the other searches are cancelled (they notice the interrupt between two
+ * candidates, or inside the generation of the current one).
+ *
+ * The generator counts every candidate it rates, so the hit rate of each band, and thus
+ * the expected number of candidates a request costs, can be reported.
+ *
+ * Usage example:
+ * <pre>
+ * try(TargetedGenerator generator = new TargetedGenerator(4)) {
+ *     Board board = generator.generate(Layout.standard(9), DifficultyRater.RATING_HARD, DifficultyRater.RATING_HARD, Duration.ofMillis(500));
+ * }
+ * </pre>
+ */
+public class TargetedGenerator implements AutoCloseable {
+
+	private final ExecutorService workers;
+	private final int width;					// Searches raced per board
+	private final SplittableRandom seeds = new SplittableRandom();
+	private final LongAdder candidates = new LongAdder();
+	private final LongAdder[] rated = new LongAdder[DifficultyRater.RATING_EXPERT + 1];	// Candidates per rating
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+
+	/**
+	 * Creates a targeted generator.
+	 * @param width number of searches raced for each board, and of worker threads
+	 */
+	public TargetedGenerator(int width) {
+
+		this.width = width;
+		this.workers = Executors.newFixedThreadPool(width, r -> {
+			Thread thread = new Thread(r, "targeted-generator");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		for(int i = 0 ; i < this.rated.length ; i++) {
+			this.rated[i] = new LongAdder();
+		}
+
+	}
+
+	/**
+	 * Creates a targeted generator racing one search per available core.
+	 */
+	public TargetedGenerator() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Generates a classic board of exactly the given rating.
+	 * @param size board size
+	 * @param rating DifficultyRater.RATING_EASY to RATING_EXPERT
+	 * @param timeout maximum time to wait
+	 * @return generated board
+	 * @throws TimeoutException if no search found a matching puzzle in time
+	 * @throws InterruptedException if the calling thread was interrupted
+	 */
+	public Board generate(int size, int rating, Duration timeout) throws TimeoutException, InterruptedException {
+		return this.generate(Layout.standard(size), rating, rating, timeout);
+	}
+
+	/**
+	 * Generates a board whose rating falls in a band.
+	 * @param layout layout of the board
+	 * @param minRating lowest acceptable rating, at least DifficultyRater.RATING_EASY
+	 * @param maxRating highest acceptable rating, at most DifficultyRater.RATING_EXPERT
+	 * @param timeout maximum time to wait
+	 * @return generated board, with its cells fixed
+	 * @throws TimeoutException if no search found a matching puzzle in time
+	 * @throws InterruptedException if the calling thread was interrupted
+	 */
+	public Board generate(Layout layout, int minRating, int maxRating, Duration timeout) throws TimeoutException, InterruptedException {
+
+		if(minRating < DifficultyRater.RATING_EASY || maxRating > DifficultyRater.RATING_EXPERT || minRating > maxRating) {
+			throw new IllegalArgumentException("Invalid rating band " + minRating + ".." + maxRating);
+		}
+
+		if(layout.getVariant() == Layout.VARIANT_KILLER) {
+			throw new IllegalArgumentException("Killer puzzles cannot be rated");
+		}
+
+		this.requests.increment();
+
+		long deadline = System.nanoTime() + timeout.toNanos();
+		int difficulty = Math.min(maxRating, Board.DIFFICULTY_HARD);		// Kept with the board, e.g. for statistics
+		List<Callable<Board>> searches = new ArrayList<>(this.width);
+
+		for(int i = 0 ; i < this.width ; i++) {
+
+			searches.add(() -> {
+
+				DifficultyRater rater = new DifficultyRater(layout);
+
+				while(!Thread.currentThread().isInterrupted()) {
+
+					long remaining = deadline - System.nanoTime();
+
+					if(remaining <= 0) {
+						break;
+					}
+
+					Board board = new Board(layout, difficulty, nextSeed());
+
+					if(!board.initializeMinimalBoard(0, Duration.ofNanos(remaining))) {
+						break;		// Timed out or cancelled inside the generation
+					}
+
+					int rating = rater.rate(board);
+					this.candidates.increment();
+					this.rated[rating].increment();
+
+					if(rating >= minRating && rating <= maxRating) {
+						return board;
+					}
+
+				}
+
+				throw new TimeoutException("Search stopped without a matching puzzle");
+			});
+
+		}
+
+		try {
+			return this.workers.invokeAny(searches, timeout.toNanos(), TimeUnit.NANOSECONDS);
+		} catch(ExecutionException | TimeoutException e) {
+			this.timeouts.increment();
+			throw new TimeoutException("No puzzle rated " + minRating + ".." + maxRating + " found within " + timeout);
+		}
+
+	}
+
+	/**
+	 * Returns the number of candidates rated so far.
+	 * @return candidate count
+	 */
+	public long getCandidateCount() {
+		return this.candidates.sum();
+	}
+
+	/**
+	 * Returns the share of rated candidates that got a rating, i.e. the chance that a
+	 * single candidate hits that band.
+	 * @param rating DifficultyRater.RATING_INVALID to RATING_EXPERT
+	 * @return hit rate (0..1), 0 before the first candidate
+	 */
+	public double getHitRate(int rating) {
+
+		long total = this.candidates.sum();
+
+		return total == 0 ? 0 : (double) this.rated[rating].sum() / total;
+	}
+
+	/**
+	 * Returns the number of boards requested.
+	 * @return request count
+	 */
+	public long getRequestCount() {
+		return this.requests.sum();
+	}
+
+	/**
+	 * Returns the number of requests that timed out.
+	 * @return timeout count
+	 */
+	public long getTimeoutCount() {
+		return this.timeouts.sum();
+	}
+
+	/**
+	 * Formats the counters and the hit rate of every rating, one per line.
+	 * @return report text
+	 */
+	public String report() {
+
+		StringBuilder out = new StringBuilder(256);
+		out.append("generator.requests ").append(getRequestCount()).append('\n');
+		out.append("generator.timeouts ").append(getTimeoutCount()).append('\n');
+		out.append("generator.candidates ").append(getCandidateCount()).append('\n');
+
+		for(int rating = DifficultyRater.RATING_EASY ; rating <= DifficultyRater.RATING_EXPERT ; rating++) {
+			out.append("generator.hit_rate.").append(DifficultyRater.getRatingName(rating)).append(' ');
+			out.append(String.format("%.4f", getHitRate(rating))).append('\n');
+		}
+
+		return out.toString();
+	}
+
+	/**
+	 * Stops the worker threads.
+	 */
+	@Override
+	public void close() {
+		this.workers.shutdownNow();
+	}
+
+	private long nextSeed() {
+
+		synchronized(this.seeds) {
+			return this.seeds.nextLong();
+		}
+
+	}
+
+}
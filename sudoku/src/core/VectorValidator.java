@@ -0,0 +1,136 @@
+package core;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD screen behind {@link BulkValidator}, only loaded when the
+ * {@code jdk.incubator.vector} module is present.
+ *
+ * A grid is read one row per vector, one short lane per column, with each value
+ * turned into a bit (1 &lt;&lt; value):
+ * - columns: the row vectors are accumulated lane-wise, so a value seen twice in
+ *   a column leaves a bit in that lane's repeat mask
+ * - rows: a row repeats a value when the OR of its lanes has fewer bits than it has filled lanes
+ * - boxes: the rows of a band are OR-ed, and lanes of the same box are compared pairwise
+ *   through lane shifts (repeats inside a column are already caught above)
+ */
+final class VectorValidator {
+
+	private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_128;
+	private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_256;
+	private static final VectorMask<Short>[][] PAIR_MASKS = pairMasks();	// Per box size and lane distance
+
+	private VectorValidator() {
+	}
+
+	/**
+	 * Returns whether grids of this size fit the lane layout: one lane per unit and
+	 * one bit per value in a short lane.
+	 * @param size board size
+	 * @return true for square-box sizes up to 9
+	 */
+	static boolean supports(int size) {
+		return size == Board.SIZE_EASY || size == Board.SIZE_STANDARD;
+	}
+
+	/**
+	 * Screens grids for conflicts.
+	 * @param size board size, see {@link #supports(int)}
+	 * @param grids flat-packed grids
+	 * @param count number of grids
+	 * @param conflicts per grid, 0 if a conflict exists, {@link BulkValidator#NO_CONFLICT} otherwise
+	 */
+	static void screen(int size, byte[] grids, int count, int[] conflicts) {
+
+		int boxSize = (int) Math.sqrt(size);
+		int cells = size * size;
+		VectorMask<Byte> lanes = BYTES.indexInRange(0, size);
+		VectorMask<Short>[] pairs = PAIR_MASKS[boxSize];
+		ShortVector one = ShortVector.broadcast(SHORTS, (short) 1);
+		ShortVector limit = ShortVector.broadcast(SHORTS, (short) size);
+		short valueBits = (short) ~1;		// Drops bit 0, the bit of an empty cell
+
+		for(int g = 0 ; g < count ; g++) {
+
+			int base = g * cells;
+			boolean conflict = false;
+			ShortVector seen = ShortVector.zero(SHORTS);
+			ShortVector repeated = ShortVector.zero(SHORTS);
+			ShortVector band = ShortVector.zero(SHORTS);
+
+			for(int row = 0 ; row < size && !conflict ; row++) {
+
+				ByteVector raw = ByteVector.fromArray(BYTES, grids, base + row * size, lanes);
+				ShortVector values = (ShortVector) raw.convertShape(VectorOperators.B2S, SHORTS, 0);
+
+				if(values.compare(VectorOperators.GT, limit).or(values.compare(VectorOperators.LT, (short) 0)).anyTrue()) {
+					conflict = true;
+					break;
+				}
+
+				ShortVector bits = one.lanewise(VectorOperators.LSHL, values).and(valueBits);
+
+				// Columns
+				repeated = repeated.or(seen.and(bits));
+				seen = seen.or(bits);
+
+				// Row
+				int filled = bits.compare(VectorOperators.NE, (short) 0).trueCount();
+				int distinct = Integer.bitCount(bits.reduceLanes(VectorOperators.OR) & 0xFFFF);
+				conflict = filled != distinct;
+
+				// Boxes, once a band of boxSize rows is complete
+				band = band.or(bits);
+
+				if(row % boxSize == boxSize - 1) {
+
+					for(int distance = 1 ; distance < boxSize ; distance++) {
+						ShortVector overlap = band.and(band.slice(distance));
+						conflict |= overlap.compare(VectorOperators.NE, (short) 0, pairs[distance]).anyTrue();
+					}
+
+					band = ShortVector.zero(SHORTS);
+				}
+
+			}
+
+			conflict |= repeated.compare(VectorOperators.NE, (short) 0).anyTrue();
+			conflicts[g] = conflict ? 0 : BulkValidator.NO_CONFLICT;
+		}
+
+	}
+
+	/**
+	 * Builds, for each box size and lane distance d, the lanes l whose partner l + d
+	 * lies in the same box.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static VectorMask<Short>[][] pairMasks() {
+
+		VectorMask<Short>[][] masks = new VectorMask[4][];
+
+		for(int boxSize = 2 ; boxSize <= 3 ; boxSize++) {
+
+			masks[boxSize] = new VectorMask[boxSize];
+
+			for(int distance = 1 ; distance < boxSize ; distance++) {
+
+				boolean[] lanes = new boolean[SHORTS.length()];
+
+				for(int l = 0 ; l < boxSize * boxSize ; l++) {
+					lanes[l] = l % boxSize + distance < boxSize;
+				}
+
+				masks[boxSize][distance] = VectorMask.fromArray(SHORTS, lanes, 0);
+			}
+
+		}
+
+		return masks;
+	}
+
+}
@@ -3,6 +3,12 @@ module sudoku {
 	requires javafx.graphics;
 	requires javafx.fxml;
 	requires javafx.base;
+	requires jdk.httpserver;
+	requires java.net.http;
+	requires java.management;
+	requires jdk.management;
+	requires jdk.jfr;
+	requires static jdk.incubator.vector;
 	
 	opens application.controllers to javafx.graphics, javafx.fxml;
 }
@@ -0,0 +1,531 @@
+package server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import core.Board;
+import core.DifficultyRater;
+import core.Metrics;
+import core.MoveEvent;
+import core.SessionRegistry;
+import core.StatisticsStore;
+import core.Sudoku;
+import core.TargetedGenerator;
+
+/**
+ * Embedded HTTP/JSON server hosting many Sudoku games in one JVM.
+ * Every request is handled on its own virtual thread, so blocking on a
+ * busy game never ties up a platform thread. Games live in a
+ * {@link SessionRegistry} and are evicted after 30 idle minutes.
+ *
+ * Endpoints:
+ * <pre>
+ * POST   /games                {"size":9,"difficulty":2}          create a game ("minimal":1 for a minimal unique puzzle,
+ *                                                                  "rating":1..4 for a puzzle of a DifficultyRater rating)
+ * GET    /games/{id}                                              fetch board state
+ * POST   /games/{id}/moves     {"row":0,"column":4,"value":7}     play a move (value 0 clears)
+ * DELETE /games/{id}                                              discard a game
+ * GET    /statistics?size=9&difficulty=2                          solve statistics of finished games
+ * </pre>
+ * Races, where many players solve the same puzzle and watch each other's progress,
+ * are served under /races by a {@link RaceHandler}.
+ * Rows and columns are 0-based. Moves follow the same rules as the terminal game:
+ * fixed cells cannot change, occupied cells must be cleared first and the value
+ * must pass {@link Board#isValidMove(int, int, int)}.
+ *
+ * Usage example:
+ * <pre>
+ * GameServer server = new GameServer(8080);
+ * server.start();
+ * </pre>
+ */
+public class GameServer {
+
+	public static final int DEFAULT_PORT = 8080;
+	public static final Duration SESSION_TTL = Duration.ofMinutes(30);
+	public static final Duration GENERATION_TIMEOUT = Duration.ofMillis(250);
+	public static final Duration RATED_GENERATION_TIMEOUT = Duration.ofSeconds(1);	// Rare ratings take many candidates
+
+	private final HttpServer httpServer;
+	private final ExecutorService executor;
+	private final SessionRegistry games;		// Active games by session id
+	private final StatisticsStore statistics = new StatisticsStore();	// Games finished on this server
+	private final RaceHandler races = new RaceHandler(SESSION_TTL);
+	private final TargetedGenerator generator = new TargetedGenerator();	// Puzzles of a requested rating
+	private final String gaugePrefix;		// "server.<port>.", so servers sharing a JVM keep their own gauges
+
+	/**
+	 * Creates a server bound to the given port with its own session registry, and registers
+	 * its gauges under its port. Call {@link #start()} to accept requests.
+	 * @param port TCP port (0 picks a free port)
+	 * @throws IOException if the port cannot be bound
+	 */
+	public GameServer(int port) throws IOException {
+		this(port, new SessionRegistry(64, SESSION_TTL, null));
+		this.games.startEviction(Duration.ofMinutes(1));
+		Metrics.registerGauge(this.gaugePrefix + "sessions", this.games::getSessionCount);
+		Metrics.registerGauge(this.gaugePrefix + "session.contended", this.games::getContendedAcquisitions);
+		Metrics.registerGauge(this.gaugePrefix + "races", this.races::getRoomCount);
+		Metrics.registerGauge(this.gaugePrefix + "generator.candidates", this.generator::getCandidateCount);
+
+		for(int rating = DifficultyRater.RATING_EASY ; rating <= DifficultyRater.RATING_EXPERT ; rating++) {
+			int band = rating;
+			Metrics.registerGauge(this.gaugePrefix + "generator.hit_permille." + DifficultyRater.getRatingName(band), () -> Math.round(this.generator.getHitRate(band) * 1000));
+		}
+
+	}
+
+	/**
+	 * Creates a server bound to the given port hosting games in the given registry.
+	 * @param port TCP port (0 picks a free port)
+	 * @param games registry holding the games
+	 * @throws IOException if the port cannot be bound
+	 */
+	public GameServer(int port, SessionRegistry games) throws IOException {
+		this.games = games;
+		this.httpServer = HttpServer.create(new InetSocketAddress(port), 1024);
+		this.gaugePrefix = "server." + this.httpServer.getAddress().getPort() + ".";
+		this.executor = Executors.newVirtualThreadPerTaskExecutor();
+		this.httpServer.setExecutor(this.executor);
+		this.httpServer.createContext("/games", this::handle);
+		this.httpServer.createContext("/statistics", this::handleStatistics);
+		this.httpServer.createContext("/races", this.races::handle);
+	}
+
+	/**
+	 * Starts accepting requests.
+	 */
+	public void start() {
+		this.httpServer.start();
+	}
+
+	/**
+	 * Stops the server, waiting up to the given delay for exchanges in progress,
+	 * and removes its gauges.
+	 * @param delaySeconds seconds to wait for running exchanges
+	 */
+	public void stop(int delaySeconds) {
+		Metrics.unregisterGauges(this.gaugePrefix);
+		this.races.close();		// Ends the event streams, which would otherwise hold up the stop
+		this.httpServer.stop(delaySeconds);
+		this.executor.shutdown();
+		this.generator.close();
+		this.games.close();
+	}
+
+	/**
+	 * Returns the port the server is listening on.
+	 * @return bound port
+	 */
+	public int getPort() {
+		return this.httpServer.getAddress().getPort();
+	}
+
+	/**
+	 * Returns the number of games currently hosted.
+	 * @return active game count
+	 */
+	public int getGameCount() {
+		return this.games.getSessionCount();
+	}
+
+	/**
+	 * Returns the statistics of the games finished on this server.
+	 * @return statistics store
+	 */
+	public StatisticsStore getStatistics() {
+		return this.statistics;
+	}
+	
+	/**
+	 * Returns the handler hosting the races.
+	 * @return race handler
+	 */
+	public RaceHandler getRaces() {
+		return this.races;
+	}
+
+	/**
+	 * Returns the registry holding the hosted games.
+	 * @return session registry
+	 */
+	public SessionRegistry getRegistry() {
+		return this.games;
+	}
+
+	/**
+	 * Routes a request under /games to the matching handler.
+	 * @param exchange the HTTP exchange
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+
+		try {
+
+			String[] parts = exchange.getRequestURI().getPath().split("/");	// "", "games", id, "moves"
+			String method = exchange.getRequestMethod();
+
+			if(parts.length == 2 && method.equals("POST")) {
+				createGame(exchange);
+			}
+
+			else if(parts.length == 3 && method.equals("GET")) {
+				getGame(exchange, parts[2]);
+			}
+
+			else if(parts.length == 3 && method.equals("DELETE")) {
+				deleteGame(exchange, parts[2]);
+			}
+
+			else if(parts.length == 4 && parts[3].equals("moves") && method.equals("POST")) {
+				playMove(exchange, parts[2]);
+			}
+
+			else {
+				sendError(exchange, 404, "Unknown endpoint");
+			}
+
+		} catch(NoSuchElementException e) {
+			sendError(exchange, 404, "Unknown game");
+		} catch(IllegalArgumentException e) {
+			sendError(exchange, 400, e.getMessage());
+		} finally {
+			exchange.close();
+		}
+
+	}
+
+	/**
+	 * Returns the statistics of finished games for ?size=..&difficulty=.. (defaults 9 and 1).
+	 * @param exchange the HTTP exchange
+	 */
+	private void handleStatistics(HttpExchange exchange) throws IOException {
+
+		try {
+
+			if(!exchange.getRequestMethod().equals("GET")) {
+				sendError(exchange, 404, "Unknown endpoint");
+				return;
+			}
+
+			int size = Board.SIZE_STANDARD;
+			int difficulty = Board.DIFFICULTY_EASY;
+			String query = exchange.getRequestURI().getQuery();
+
+			if(query != null) {
+
+				for(String parameter : query.split("&")) {
+
+					String[] pair = parameter.split("=", 2);
+
+					if(pair.length == 2 && pair[0].equals("size")) {
+						size = Integer.parseInt(pair[1]);
+					}
+
+					else if(pair.length == 2 && pair[0].equals("difficulty")) {
+						difficulty = Integer.parseInt(pair[1]);
+					}
+
+				}
+
+			}
+
+			StringBuilder out = new StringBuilder(128);
+			out.append("{\"size\":").append(size);
+			out.append(",\"difficulty\":").append(difficulty);
+			out.append(",\"games\":").append(this.statistics.getGames(size, difficulty));
+			out.append(",\"bestMillis\":").append(this.statistics.getBestTime(size, difficulty));
+			out.append(",\"p50Millis\":").append(this.statistics.getSolveTimePercentile(size, difficulty, 50));
+			out.append(",\"p90Millis\":").append(this.statistics.getSolveTimePercentile(size, difficulty, 90));
+			out.append(",\"p50Mistakes\":").append(this.statistics.getMistakesPercentile(size, difficulty, 50));
+			out.append('}');
+
+			send(exchange, 200, out.toString());
+
+		} catch(IllegalArgumentException e) {
+			sendError(exchange, 400, "Invalid size or difficulty");
+		} finally {
+			exchange.close();
+		}
+
+	}
+
+	/**
+	 * Creates a new game from {"size":..,"difficulty":..,"minimal":..,"rating":..} and returns its state.
+	 */
+	private void createGame(HttpExchange exchange) throws IOException {
+
+		Map<String, Integer> fields = Json.parseIntObject(readBody(exchange));
+		int size = fields.getOrDefault("size", Board.SIZE_STANDARD);
+		int difficulty = fields.getOrDefault("difficulty", Board.DIFFICULTY_EASY);
+
+		if(size != Board.SIZE_EASY && size != Board.SIZE_STANDARD) {
+			throw new IllegalArgumentException("Invalid size, expected 4 or 9");
+		}
+
+		if(difficulty < Board.DIFFICULTY_EASY || difficulty > Board.DIFFICULTY_HARD) {
+			throw new IllegalArgumentException("Invalid difficulty, expected 1, 2 or 3");
+		}
+
+		Sudoku game = new Sudoku(size, difficulty);
+		Integer rating = fields.get("rating");
+
+		if(rating != null) {
+
+			if(rating < DifficultyRater.RATING_EASY || rating > DifficultyRater.RATING_EXPERT) {
+				throw new IllegalArgumentException("Invalid rating, expected 1, 2, 3 or 4");
+			}
+
+			try {
+				game = new Sudoku(this.generator.generate(size, rating, RATED_GENERATION_TIMEOUT));
+			} catch(TimeoutException e) {
+				sendError(exchange, 503, "No puzzle of that rating found in time, try again");
+				return;
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				sendError(exchange, 503, "Server is stopping");
+				return;
+			}
+
+		}
+
+		else if(fields.getOrDefault("minimal", 0) != 0) {
+
+			if(!game.getBoard().initializeMinimalBoard(0, GENERATION_TIMEOUT)) {
+				sendError(exchange, 503, "Minimal board generation timed out, try again");
+				return;
+			}
+
+		}
+
+		else if(!game.getBoard().initializeBoard(GENERATION_TIMEOUT)) {
+			sendError(exchange, 503, "Board generation timed out, try again");
+			return;
+		}
+
+		String id = this.games.create(game);
+
+		send(exchange, 201, this.games.withSession(id, g -> stateJson(id, g)));
+	}
+
+	/**
+	 * Returns the current state of a game.
+	 */
+	private void getGame(HttpExchange exchange, String id) throws IOException {
+
+		send(exchange, 200, this.games.withSession(id, game -> stateJson(id, game)));
+	}
+
+	/**
+	 * Removes a game.
+	 */
+	private void deleteGame(HttpExchange exchange, String id) throws IOException {
+
+		if(!this.games.remove(id)) {
+			sendError(exchange, 404, "Unknown game");
+			return;
+		}
+
+		exchange.sendResponseHeaders(204, -1);
+	}
+
+	/**
+	 * Applies a move from {"row":..,"column":..,"value":..}.
+	 * Replies with whether the move was accepted and, if not, why.
+	 */
+	private void playMove(HttpExchange exchange, String id) throws IOException {
+
+		Map<String, Integer> fields = Json.parseIntObject(readBody(exchange));
+		Integer row = fields.get("row");
+		Integer column = fields.get("column");
+		Integer value = fields.get("value");
+
+		if(row == null || column == null || value == null) {
+			throw new IllegalArgumentException("Fields row, column and value are required");
+		}
+
+		// Moves on the same game are serialized; different games never contend
+		String body = this.games.withSession(id, game -> {
+
+			MoveEvent event = new MoveEvent();
+			event.begin();
+
+			String error = checkMove(game, row, column, value);
+			Metrics.recordMove(error == null);
+
+			if(error == null) {
+				game.getBoard().setValue(row, column, value);
+
+				if(value != 0 && game.finished()) {
+					Metrics.recordCompletion(game.getElapsedTime());
+					game.recordStatistics(this.statistics);
+				}
+
+			}
+
+			else {
+				game.recordMistake();
+			}
+
+			event.end("server", game.getBoard(), row, column, value, error == null ? "accepted" : error);
+
+			StringBuilder out = new StringBuilder(64);
+			out.append("{\"accepted\":").append(error == null);
+
+			if(error != null) {
+				out.append(",\"error\":");
+				Json.appendString(out, error);
+			}
+
+			out.append(",\"finished\":").append(game.finished()).append('}');
+
+			return out.toString();
+		});
+
+		send(exchange, 200, body);
+	}
+
+	/**
+	 * Checks a move against the same rules as the terminal game.
+	 * @param game game to check against
+	 * @param row row index (0-based)
+	 * @param column column index (0-based)
+	 * @param value value to insert, or 0 to clear
+	 * @return null if the move is valid, otherwise the reason it was rejected
+	 */
+	static String checkMove(Sudoku game, int row, int column, int value) {
+
+		Board board = game.getBoard();
+		int size = board.getSize();
+
+		if(row < 0 || row >= size || column < 0 || column >= size || value < 0 || value > board.getLayout().getValueCount()) {
+			return "row, column or value outside the allowed range";
+		}
+
+		if(!board.isCell(row, column)) {
+			return "cell is not part of the puzzle";
+		}
+
+		if(board.isCellFixed(row, column)) {
+			return "cell is fixed and it cannot be modified";
+		}
+
+		if(value == 0) {
+			return board.getValue(row, column) == 0 ? "cell is already empty" : null;
+		}
+
+		if(!game.checkCellEmpty(row, column, value)) {
+			return "cell is already occupied";
+		}
+
+		int unit = board.findConflictingUnit(row, column, value);
+
+		if(unit >= 0) {
+			return "invalid " + board.getLayout().getUnitName(unit);
+		}
+
+		return board.checkCage(row, column, value) ? null : "invalid cage";
+	}
+
+	/**
+	 * Serializes a game's board and fixed-cell mask.
+	 * Must be called while holding the game's session lock.
+	 */
+	static String stateJson(String id, Sudoku game) {
+
+		Board board = game.getBoard();
+		int size = board.getSize();
+		StringBuilder out = new StringBuilder(64 + size * size * 8);
+
+		out.append("{\"id\":");
+		Json.appendString(out, id);
+		out.append(",\"size\":").append(size);
+		out.append(",\"finished\":").append(game.finished());
+		out.append(",\"board\":[");
+
+		for(int i = 0 ; i < size ; i++) {
+
+			out.append(i == 0 ? "[" : ",[");
+
+			for(int j = 0 ; j < size ; j++) {
+				out.append(j == 0 ? "" : ",").append(board.getValue(i, j));
+			}
+
+			out.append(']');
+		}
+
+		out.append("],\"fixed\":[");
+
+		for(int i = 0 ; i < size ; i++) {
+
+			out.append(i == 0 ? "[" : ",[");
+
+			for(int j = 0 ; j < size ; j++) {
+				out.append(j == 0 ? "" : ",").append(board.isCellFixed(i, j));
+			}
+
+			out.append(']');
+		}
+
+		out.append("]}");
+
+		return out.toString();
+	}
+
+	static String readBody(HttpExchange exchange) throws IOException {
+
+		try(InputStream in = exchange.getRequestBody()) {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+
+	}
+
+	static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+
+		StringBuilder out = new StringBuilder(64);
+		out.append("{\"error\":");
+		Json.appendString(out, message == null ? "Bad request" : message);
+		out.append('}');
+
+		send(exchange, status, out.toString());
+	}
+
+	static void send(HttpExchange exchange, int status, String body) throws IOException {
+
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+
+		try(OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+
+	}
+
+	/**
+	 * Runs the server until the process is stopped.
+	 * @param args optional port number (default 8080)
+	 */
+	public static void main(String[] args) throws IOException {
+
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+
+		GameServer server = new GameServer(port);
+		server.start();
+
+		Metrics.registerMBean();
+		Metrics.startReporter(Duration.ofMinutes(1), System.out);
+
+		System.out.println("Sudoku server listening on port " + server.getPort());
+	}
+
+}
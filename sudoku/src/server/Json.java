@@ -0,0 +1,94 @@
+package server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal JSON helpers for the game server.
+ * The API only exchanges flat objects with integer fields on input,
+ * so a full JSON library is not needed.
+ */
+public final class Json {
+
+	private Json() {
+	}
+
+	/**
+	 * Parses a flat JSON object whose values are integers, e.g. {"row":1,"column":2,"value":3}.
+	 * Non-integer values and nested objects are not supported.
+	 * @param body request body
+	 * @return map of field name to value
+	 * @throws IllegalArgumentException if the body is not a flat integer object
+	 */
+	public static Map<String, Integer> parseIntObject(String body) {
+
+		Map<String, Integer> fields = new HashMap<>();
+		String text = body.trim();
+
+		if(text.length() < 2 || text.charAt(0) != '{' || text.charAt(text.length() - 1) != '}') {
+			throw new IllegalArgumentException("Expected a JSON object");
+		}
+
+		text = text.substring(1, text.length() - 1).trim();
+
+		if(text.isEmpty()) {
+			return fields;
+		}
+
+		for(String pair : text.split(",")) {
+
+			int colon = pair.indexOf(':');
+
+			if(colon < 0) {
+				throw new IllegalArgumentException("Malformed field: " + pair);
+			}
+
+			String name = pair.substring(0, colon).trim();
+			String value = pair.substring(colon + 1).trim();
+
+			if(name.length() < 2 || name.charAt(0) != '"' || name.charAt(name.length() - 1) != '"') {
+				throw new IllegalArgumentException("Malformed field name: " + name);
+			}
+
+			try {
+				fields.put(name.substring(1, name.length() - 1), Integer.parseInt(value));
+			} catch(NumberFormatException e) {
+				throw new IllegalArgumentException("Field " + name + " must be an integer");
+			}
+
+		}
+
+		return fields;
+	}
+
+	/**
+	 * Appends a string value with the characters JSON requires escaped.
+	 * @param out destination builder
+	 * @param value string to write
+	 */
+	public static void appendString(StringBuilder out, String value) {
+
+		out.append('"');
+
+		for(int i = 0 ; i < value.length() ; i++) {
+
+			char c = value.charAt(i);
+
+			if(c == '"' || c == '\\') {
+				out.append('\\').append(c);
+			}
+
+			else if(c < 0x20) {
+				out.append(String.format("\\u%04x", (int) c));
+			}
+
+			else {
+				out.append(c);
+			}
+
+		}
+
+		out.append('"');
+	}
+
+}
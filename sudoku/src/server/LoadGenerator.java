@@ -0,0 +1,187 @@
+package server;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import core.Board;
+
+/**
+ * Local load generator for {@link GameServer}.
+ * Each simulated player runs on a virtual thread: it creates a game and then
+ * plays random moves against it. Request latencies are collected and
+ * summarized as throughput and percentiles at the end of the run.
+ *
+ * Usage:
+ * <pre>
+ * java server.LoadGenerator [games] [movesPerGame] [concurrency] [baseUrl]
+ * </pre>
+ * When no base URL is given, a server is started in-process on a free port.
+ */
+public class LoadGenerator {
+
+	private final HttpClient client;
+	private final URI baseUri;
+
+	/**
+	 * Creates a load generator targeting the given server.
+	 * @param baseUrl server root, e.g. http://localhost:8080
+	 */
+	public LoadGenerator(String baseUrl) {
+		this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		this.baseUri = URI.create(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/");
+	}
+
+	/**
+	 * Runs the load and prints a summary.
+	 * @param games number of simulated players (one game each)
+	 * @param movesPerGame moves each player submits
+	 * @param concurrency maximum number of requests in flight
+	 */
+	public void run(int games, int movesPerGame, int concurrency) throws Exception {
+
+		Semaphore inFlight = new Semaphore(concurrency);
+		List<Future<long[]>> results = new ArrayList<>(games);
+		long start = System.nanoTime();
+
+		try(ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+
+			for(int i = 0 ; i < games ; i++) {
+				results.add(executor.submit(() -> playGame(movesPerGame, inFlight)));
+			}
+
+		}
+
+		long elapsed = System.nanoTime() - start;
+
+		long[] latencies = new long[games * (movesPerGame + 1)];
+		int count = 0;
+		int failed = 0;
+
+		for(Future<long[]> result : results) {
+
+			try {
+				long[] samples = result.get();
+				System.arraycopy(samples, 0, latencies, count, samples.length);
+				count += samples.length;
+			} catch(Exception e) {
+				failed++;
+			}
+
+		}
+
+		Arrays.sort(latencies, 0, count);
+
+		System.out.printf("requests: %d, failed games: %d, elapsed: %.2f s%n", count, failed, elapsed / 1e9);
+		System.out.printf("throughput: %.0f req/s%n", count / (elapsed / 1e9));
+
+		if(count > 0) {
+			System.out.printf("latency p50: %.2f ms, p99: %.2f ms, p99.9: %.2f ms, max: %.2f ms%n",
+					percentile(latencies, count, 0.50) / 1e6,
+					percentile(latencies, count, 0.99) / 1e6,
+					percentile(latencies, count, 0.999) / 1e6,
+					latencies[count - 1] / 1e6);
+		}
+
+	}
+
+	/**
+	 * Plays one game: creation followed by random moves.
+	 * @return latency of every request in nanoseconds
+	 */
+	private long[] playGame(int moves, Semaphore inFlight) throws IOException, InterruptedException {
+
+		ThreadLocalRandom rand = ThreadLocalRandom.current();
+		long[] samples = new long[moves + 1];
+
+		int difficulty = rand.nextInt(Board.DIFFICULTY_EASY, Board.DIFFICULTY_HARD + 1);
+		String created = timedPost("games", "{\"size\":9,\"difficulty\":" + difficulty + "}", samples, 0, inFlight);
+
+		int idStart = created.indexOf("\"id\":\"") + 6;
+		String id = created.substring(idStart, created.indexOf('"', idStart));
+
+		for(int i = 1 ; i <= moves ; i++) {
+
+			String move = "{\"row\":" + rand.nextInt(9) + ",\"column\":" + rand.nextInt(9) + ",\"value\":" + rand.nextInt(10) + "}";
+			timedPost("games/" + id + "/moves", move, samples, i, inFlight);
+		}
+
+		return samples;
+	}
+
+	private String timedPost(String path, String body, long[] samples, int index, Semaphore inFlight) throws IOException, InterruptedException {
+
+		HttpRequest request = HttpRequest.newBuilder(this.baseUri.resolve(path))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(body))
+				.build();
+
+		inFlight.acquire();
+
+		try {
+
+			long start = System.nanoTime();
+			HttpResponse<String> response = this.client.send(request, HttpResponse.BodyHandlers.ofString());
+			samples[index] = System.nanoTime() - start;
+
+			if(response.statusCode() >= 300) {
+				throw new IOException("HTTP " + response.statusCode() + ": " + response.body());
+			}
+
+			return response.body();
+
+		} finally {
+			inFlight.release();
+		}
+
+	}
+
+	private static long percentile(long[] sorted, int count, double p) {
+		return sorted[Math.min(count - 1, (int) Math.ceil(p * count) - 1)];
+	}
+
+	/**
+	 * Entry point for a load run.
+	 * @param args [games] [movesPerGame] [concurrency] [baseUrl]
+	 */
+	public static void main(String[] args) throws Exception {
+
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int moves = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 512;
+
+		GameServer local = null;
+		String baseUrl;
+
+		if(args.length > 3) {
+			baseUrl = args[3];
+		}
+
+		else {
+			local = new GameServer(0);
+			local.start();
+			baseUrl = "http://localhost:" + local.getPort();
+		}
+
+		try {
+			new LoadGenerator(baseUrl).run(games, moves, concurrency);
+		} finally {
+
+			if(local != null) {
+				local.stop(0);
+			}
+
+		}
+
+	}
+
+}
@@ -0,0 +1,302 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import com.sun.net.httpserver.HttpExchange;
+import core.Board;
+import core.Metrics;
+import core.MoveEvent;
+
+/**
+ * Race mode of the {@link GameServer}: rooms where many players solve the same puzzle
+ * and follow each other's progress live.
+ *
+ * Endpoints:
+ * <pre>
+ * POST   /races                                {"size":9,"difficulty":2}        create a room
+ * GET    /races/{id}                                                            latest progress of every player
+ * POST   /races/{id}/players                                                    join, returns the player id and board
+ * POST   /races/{id}/players/{player}/moves    {"row":0,"column":4,"value":7}   play a move (value 0 clears)
+ * GET    /races/{id}/events                                                     progress stream (Server-Sent Events)
+ * </pre>
+ *
+ * A single broadcaster thread visits every room once per tick and publishes a progress
+ * snapshot for the rooms whose players moved since the last tick. Every event stream
+ * runs on its own virtual thread, waits on the room's {@link Topic} and writes the
+ * latest snapshot; streams that fall behind skip the snapshots they missed.
+ */
+public class RaceHandler implements AutoCloseable {
+
+	public static final Duration TICK = Duration.ofMillis(100);
+	public static final Duration HEARTBEAT = Duration.ofSeconds(15);		// Comment line keeping idle streams open
+
+	private final Map<String, RaceRoom> rooms = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService broadcaster;
+	private final long ttlNanos;
+
+	/**
+	 * Creates the handler and starts its broadcaster.
+	 * @param ttl idle time after which a room without subscribers is closed
+	 */
+	public RaceHandler(Duration ttl) {
+
+		this.ttlNanos = ttl.toNanos();
+		this.broadcaster = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "race-broadcaster");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		this.broadcaster.scheduleAtFixedRate(this::tick, TICK.toMillis(), TICK.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Returns the number of open rooms.
+	 * @return room count
+	 */
+	public int getRoomCount() {
+		return this.rooms.size();
+	}
+
+	/**
+	 * Stops the broadcaster and disconnects every subscriber.
+	 */
+	@Override
+	public void close() {
+
+		this.broadcaster.shutdownNow();
+
+		for(RaceRoom room : this.rooms.values()) {
+			room.close();
+		}
+
+		this.rooms.clear();
+	}
+
+	/**
+	 * Publishes the snapshots of the rooms that changed and closes idle rooms.
+	 */
+	private void tick() {
+
+		for(RaceRoom room : this.rooms.values()) {
+
+			try {
+
+				room.publishIfChanged();
+
+				if(room.isIdle(this.ttlNanos) && this.rooms.remove(room.getId(), room)) {
+					room.close();
+				}
+
+			} catch(RuntimeException e) {
+				System.err.println("Race " + room.getId() + ": " + e);		// Keep serving the other rooms
+			}
+
+		}
+
+	}
+
+	/**
+	 * Routes a request under /races to the matching handler.
+	 * @param exchange the HTTP exchange
+	 */
+	void handle(HttpExchange exchange) throws IOException {
+
+		try {
+
+			String[] parts = exchange.getRequestURI().getPath().split("/");	// "", "races", id, "players", player, "moves"
+			String method = exchange.getRequestMethod();
+
+			if(parts.length == 2 && method.equals("POST")) {
+				createRoom(exchange);
+			}
+
+			else if(parts.length == 3 && method.equals("GET")) {
+				GameServer.send(exchange, 200, room(parts[2]).snapshotJson());
+			}
+
+			else if(parts.length == 4 && parts[3].equals("players") && method.equals("POST")) {
+				join(exchange, room(parts[2]));
+			}
+
+			else if(parts.length == 4 && parts[3].equals("events") && method.equals("GET")) {
+				stream(exchange, room(parts[2]));
+			}
+
+			else if(parts.length == 6 && parts[3].equals("players") && parts[5].equals("moves") && method.equals("POST")) {
+				playMove(exchange, room(parts[2]), parts[4]);
+			}
+
+			else {
+				GameServer.sendError(exchange, 404, "Unknown endpoint");
+			}
+
+		} catch(NoSuchElementException e) {
+			GameServer.sendError(exchange, 404, e.getMessage());
+		} catch(IllegalArgumentException e) {
+			GameServer.sendError(exchange, 400, e.getMessage());
+		} finally {
+			exchange.close();
+		}
+
+	}
+
+	/**
+	 * Creates a room from {"size":..,"difficulty":..}; every player of the room gets this puzzle.
+	 */
+	private void createRoom(HttpExchange exchange) throws IOException {
+
+		Map<String, Integer> fields = Json.parseIntObject(GameServer.readBody(exchange));
+		int size = fields.getOrDefault("size", Board.SIZE_STANDARD);
+		int difficulty = fields.getOrDefault("difficulty", Board.DIFFICULTY_EASY);
+
+		if(size != Board.SIZE_EASY && size != Board.SIZE_STANDARD) {
+			throw new IllegalArgumentException("Invalid size, expected 4 or 9");
+		}
+
+		if(difficulty < Board.DIFFICULTY_EASY || difficulty > Board.DIFFICULTY_HARD) {
+			throw new IllegalArgumentException("Invalid difficulty, expected 1, 2 or 3");
+		}
+
+		Board board = new Board(size, difficulty);
+
+		if(!board.initializeBoard(GameServer.GENERATION_TIMEOUT)) {
+			GameServer.sendError(exchange, 503, "Board generation timed out, try again");
+			return;
+		}
+
+		RaceRoom room = new RaceRoom(board);
+		this.rooms.put(room.getId(), room);
+
+		StringBuilder out = new StringBuilder(64);
+		out.append("{\"id\":");
+		Json.appendString(out, room.getId());
+		out.append(",\"size\":").append(size).append('}');
+
+		GameServer.send(exchange, 201, out.toString());
+	}
+
+	/**
+	 * Adds a player and returns their id, number and board.
+	 */
+	private void join(HttpExchange exchange, RaceRoom room) throws IOException {
+
+		RaceRoom.Player player = room.join();
+		String state = GameServer.stateJson(player.id, player.game);
+
+		GameServer.send(exchange, 201, "{\"number\":" + player.number + "," + state.substring(1));
+	}
+
+	/**
+	 * Applies a move from {"row":..,"column":..,"value":..} to a player's board.
+	 */
+	private void playMove(HttpExchange exchange, RaceRoom room, String playerId) throws IOException {
+
+		RaceRoom.Player player = room.getPlayer(playerId);
+
+		if(player == null) {
+			throw new NoSuchElementException("Unknown player");
+		}
+
+		Map<String, Integer> fields = Json.parseIntObject(GameServer.readBody(exchange));
+		Integer row = fields.get("row");
+		Integer column = fields.get("column");
+		Integer value = fields.get("value");
+
+		if(row == null || column == null || value == null) {
+			throw new IllegalArgumentException("Fields row, column and value are required");
+		}
+
+		MoveEvent event = new MoveEvent();
+		event.begin();
+
+		String error = room.play(player, row, column, value);
+		Metrics.recordMove(error == null);
+		event.end("race", player.game.getBoard(), row, column, value, error == null ? "accepted" : error);
+
+		StringBuilder out = new StringBuilder(64);
+		out.append("{\"accepted\":").append(error == null);
+
+		if(error != null) {
+			out.append(",\"error\":");
+			Json.appendString(out, error);
+		}
+
+		out.append(",\"finished\":").append(player.finishMillis >= 0).append('}');
+
+		GameServer.send(exchange, 200, out.toString());
+	}
+
+	/**
+	 * Streams the room's progress as Server-Sent Events until the client disconnects
+	 * or the room closes. The current progress is sent first.
+	 */
+	private void stream(HttpExchange exchange, RaceRoom room) throws IOException {
+
+		exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+		exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+		exchange.sendResponseHeaders(200, 0);		// Chunked, open-ended
+
+		Topic<String> progress = room.getProgress();
+		long seen = 0;
+		room.subscribed(1);
+
+		try(OutputStream out = exchange.getResponseBody()) {
+
+			Topic.Message<String> message = progress.latest();
+
+			if(message.version() == 0) {
+				message = new Topic.Message<>(0, room.snapshotJson());		// Nothing published yet
+			}
+
+			while(true) {
+
+				if(message == null) {
+					out.write(": keepalive\n\n".getBytes(StandardCharsets.UTF_8));
+				}
+
+				else {
+					out.write(("data: " + message.value() + "\n\n").getBytes(StandardCharsets.UTF_8));
+					seen = Math.max(seen, message.version());
+				}
+
+				out.flush();		// Fails once the client is gone
+
+				message = progress.await(seen, HEARTBEAT.toNanos());
+
+				if(message == null && progress.isClosed()) {
+					break;
+				}
+
+			}
+
+		} catch(IOException e) {
+			// Client disconnected
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			room.subscribed(-1);
+		}
+
+	}
+
+	private RaceRoom room(String id) {
+
+		RaceRoom room = this.rooms.get(id);
+
+		if(room == null) {
+			throw new NoSuchElementException("Unknown race");
+		}
+
+		return room;
+	}
+
+}
@@ -0,0 +1,244 @@
+package server;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import core.Board;
+import core.BoardCodec;
+import core.Sudoku;
+
+/**
+ * A race: every player solves their own copy of the same puzzle, and the progress of all
+ * players (share of the empty cells filled, mistakes, finish time) is broadcast to everyone.
+ *
+ * Players only ever lock their own game. Their progress lives in volatile fields that the
+ * broadcaster reads without locking, and a move only raises the room's dirty flag; the
+ * broadcaster turns the progress of all players into one snapshot per tick at most and
+ * publishes it on the room's {@link Topic}. However fast the players move, subscribers
+ * therefore receive at most one message per tick, and the snapshot is built once for all
+ * of them.
+ */
+public class RaceRoom {
+
+	/**
+	 * One player of the race.
+	 */
+	static final class Player {
+
+		final String id;
+		final int number;			// 1-based join order, shown to the other players
+		final Sudoku game;
+		final int emptyCells;		// Cells to fill at the start
+		volatile int filled;		// Empty cells filled so far
+		volatile int mistakes;
+		volatile long finishMillis = -1;	// Time from the start of the room, -1 while racing
+
+		Player(String id, int number, Sudoku game) {
+			this.id = id;
+			this.number = number;
+			this.game = game;
+			this.emptyCells = game.getEmptyCells();
+		}
+
+		int getPercent() {
+			return this.emptyCells == 0 ? 100 : this.filled * 100 / this.emptyCells;
+		}
+	}
+
+	private final String id;
+	private final byte[] puzzle;			// The shared puzzle, in BoardCodec form
+	private final int size;
+	private final long startTime = System.nanoTime();
+	private final Map<String, Player> players = new ConcurrentHashMap<>();
+	private final AtomicInteger playerCount = new AtomicInteger();
+	private final AtomicInteger subscriberCount = new AtomicInteger();
+	private final AtomicBoolean dirty = new AtomicBoolean(true);		// Progress changed since the last snapshot
+	private final Topic<String> progress = new Topic<>();
+	private volatile long lastActivity = System.nanoTime();
+
+	/**
+	 * Creates a room for a generated puzzle.
+	 * @param board puzzle every player gets a copy of
+	 */
+	RaceRoom(Board board) {
+		this.id = UUID.randomUUID().toString();
+		this.puzzle = BoardCodec.encode(board);
+		this.size = board.getSize();
+	}
+
+	/**
+	 * Returns the room id.
+	 * @return room id
+	 */
+	public String getId() {
+		return this.id;
+	}
+
+	/**
+	 * Returns the board size of the puzzle.
+	 * @return board size
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the number of players who joined.
+	 * @return player count
+	 */
+	public int getPlayerCount() {
+		return this.playerCount.get();
+	}
+
+	/**
+	 * Returns the topic carrying the progress snapshots of the room.
+	 * @return progress topic
+	 */
+	public Topic<String> getProgress() {
+		return this.progress;
+	}
+
+	/**
+	 * Adds a player with a fresh copy of the puzzle.
+	 * @return the new player
+	 */
+	Player join() {
+
+		Player player = new Player(UUID.randomUUID().toString(), this.playerCount.incrementAndGet(), new Sudoku(BoardCodec.decode(this.puzzle)));
+
+		this.players.put(player.id, player);
+		touch();
+
+		return player;
+	}
+
+	/**
+	 * Finds a player of the room.
+	 * @param playerId player id returned on join
+	 * @return the player, or null if there is no such player
+	 */
+	Player getPlayer(String playerId) {
+		return this.players.get(playerId);
+	}
+
+	/**
+	 * Applies a move to a player's game with the same rules as a single game and
+	 * updates the player's progress.
+	 * @param player player making the move
+	 * @param row row index (0-based)
+	 * @param column column index (0-based)
+	 * @param value value to insert, or 0 to clear
+	 * @return null if the move was accepted, otherwise the reason it was rejected
+	 */
+	String play(Player player, int row, int column, int value) {
+
+		String error;
+
+		synchronized(player) {
+
+			Board board = player.game.getBoard();
+			error = GameServer.checkMove(player.game, row, column, value);
+
+			if(error != null) {
+				player.game.recordMistake();
+				player.mistakes = player.game.getMistakes();
+			}
+
+			else {
+
+				player.filled += value == 0 ? -1 : 1;		// Clears only succeed on filled cells, placements on empty ones
+				board.setValue(row, column, value);
+
+				if(player.finishMillis < 0 && value != 0 && player.game.finished()) {
+					player.finishMillis = (System.nanoTime() - this.startTime) / 1_000_000;
+				}
+
+			}
+
+		}
+
+		this.dirty.set(true);
+		touch();
+
+		return error;
+	}
+
+	/**
+	 * Publishes a snapshot of every player's progress if anything changed since the last one.
+	 * Called by the broadcaster once per tick.
+	 * @return true if a snapshot was published
+	 */
+	boolean publishIfChanged() {
+
+		if(!this.dirty.getAndSet(false)) {
+			return false;
+		}
+
+		this.progress.publish(snapshotJson());
+
+		return true;
+	}
+
+	/**
+	 * Builds the progress of all players as JSON, reading their volatile fields without locking.
+	 * @return e.g. {"race":"..","size":9,"players":[{"number":1,"percent":42,"mistakes":0,"finishMillis":-1}]}
+	 */
+	String snapshotJson() {
+
+		StringBuilder out = new StringBuilder(64 + this.players.size() * 64);
+
+		out.append("{\"race\":");
+		Json.appendString(out, this.id);
+		out.append(",\"size\":").append(this.size);
+		out.append(",\"players\":[");
+
+		boolean first = true;
+
+		for(Player player : this.players.values()) {
+
+			out.append(first ? "{" : ",{");
+			out.append("\"number\":").append(player.number);
+			out.append(",\"percent\":").append(player.getPercent());
+			out.append(",\"mistakes\":").append(player.mistakes);
+			out.append(",\"finishMillis\":").append(player.finishMillis);
+			out.append('}');
+			first = false;
+		}
+
+		out.append("]}");
+
+		return out.toString();
+	}
+
+	/**
+	 * Counts a subscriber in or out; subscribed rooms are never considered idle.
+	 * @param delta +1 when a subscriber connects, -1 when it leaves
+	 */
+	void subscribed(int delta) {
+		this.subscriberCount.addAndGet(delta);
+		touch();
+	}
+
+	/**
+	 * Returns whether nobody used the room for longer than the given time.
+	 * @param ttlNanos idle time after which the room may be closed
+	 * @return true if the room is idle
+	 */
+	boolean isIdle(long ttlNanos) {
+		return this.subscriberCount.get() == 0 && System.nanoTime() - this.lastActivity > ttlNanos;
+	}
+
+	/**
+	 * Ends the room: subscribers are disconnected.
+	 */
+	void close() {
+		this.progress.close();
+	}
+
+	private void touch() {
+		this.lastActivity = System.nanoTime();
+	}
+
+}
@@ -0,0 +1,147 @@
+package server;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publish/subscribe channel that only keeps its latest message.
+ *
+ * Publishing swaps in a new immutable message with a compare-and-set, so concurrent
+ * publishers still number their messages one after the other, and wakes every waiting
+ * subscriber; subscribers read the message through the same atomic reference, so
+ * neither side ever takes a lock and a slow subscriber never holds up the publisher or the others. A subscriber
+ * that falls behind skips straight to the latest message: updates coalesce instead of
+ * queuing, so memory stays constant however many subscribers there are.
+ *
+ * Usage example:
+ * <pre>
+ * Topic&lt;String&gt; topic = new Topic&lt;&gt;();
+ * // Subscriber thread
+ * long seen = 0;
+ * Topic.Message&lt;String&gt; message;
+ * while((message = topic.await(seen, timeoutNanos)) != null) {
+ *     send(message.value());
+ *     seen = message.version();
+ * }
+ * // Publisher thread
+ * topic.publish("update");
+ * </pre>
+ * @param <T> message type, should be immutable
+ */
+public class Topic<T> {
+
+	/**
+	 * A published message and its position in the sequence of messages (1 for the first).
+	 * @param version sequence number
+	 * @param value message
+	 * @param <T> message type
+	 */
+	public record Message<T>(long version, T value) {
+	}
+
+	private final AtomicReference<Message<T>> latest = new AtomicReference<>(new Message<>(0, null));
+	private final Set<Thread> waiting = ConcurrentHashMap.newKeySet();
+	private volatile boolean closed;
+
+	/**
+	 * Publishes a message and wakes every subscriber waiting for one.
+	 * @param value message
+	 */
+	public void publish(T value) {
+
+		this.latest.updateAndGet(message -> new Message<>(message.version() + 1, value));
+
+		for(Thread thread : this.waiting) {
+			LockSupport.unpark(thread);
+		}
+
+	}
+
+	/**
+	 * Returns the latest message without waiting.
+	 * @return latest message, with version 0 and a null value if nothing was published yet
+	 */
+	public Message<T> latest() {
+		return this.latest.get();
+	}
+
+	/**
+	 * Waits for a message newer than the given version.
+	 * @param afterVersion version the subscriber has already seen, 0 for none
+	 * @param timeoutNanos longest time to wait
+	 * @return the latest message, or null on timeout or once the topic is closed
+	 * @throws InterruptedException if the waiting thread is interrupted
+	 */
+	public Message<T> await(long afterVersion, long timeoutNanos) throws InterruptedException {
+
+		long deadline = System.nanoTime() + timeoutNanos;
+		Thread current = Thread.currentThread();
+
+		this.waiting.add(current);
+
+		try {
+
+			while(true) {
+
+				Message<T> message = this.latest.get();
+
+				if(this.closed) {
+					return null;
+				}
+
+				if(message.version() > afterVersion) {
+					return message;
+				}
+
+				long remaining = deadline - System.nanoTime();
+
+				if(remaining <= 0) {
+					return null;
+				}
+
+				LockSupport.parkNanos(this, remaining);
+
+				if(Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+
+			}
+
+		} finally {
+			this.waiting.remove(current);
+		}
+
+	}
+
+	/**
+	 * Returns the number of subscribers currently waiting for a message.
+	 * @return waiting subscribers
+	 */
+	public int getWaitingCount() {
+		return this.waiting.size();
+	}
+
+	/**
+	 * Returns whether the topic was closed.
+	 * @return true once {@link #close()} was called
+	 */
+	public boolean isClosed() {
+		return this.closed;
+	}
+
+	/**
+	 * Closes the topic: every waiting and future {@link #await(long, long)} returns null.
+	 */
+	public void close() {
+
+		this.closed = true;
+
+		for(Thread thread : this.waiting) {
+			LockSupport.unpark(thread);
+		}
+
+	}
+
+}
@@ -0,0 +1,212 @@
+package simulation;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import core.Board;
+import core.Histogram;
+
+/**
+ * Headless load test of the game itself: thousands of {@link SyntheticPlayer}s play
+ * concurrently, each on its own virtual thread, without any front end or network.
+ *
+ * The run has two phases. First every player generates its board and solution; the heap
+ * growth over that phase gives the memory cost of one live game. Then all players start
+ * together and move until their board is solved or they reach the move cap, optionally
+ * pausing between moves like a human would. Move latencies go to a shared
+ * {@link Histogram}.
+ *
+ * Allocation is reported twice:
+ * - per move on the rule path, measured exactly on a calibration player running on the
+ *   main (platform) thread, since the JDK does not count allocation per virtual thread
+ * - per move overall, from the allocation of every thread during the move phase, which
+ *   also includes scheduling and parking the virtual threads
+ *
+ * Usage:
+ * <pre>
+ * java simulation.Simulation [games] [size] [invalidPercent] [clearPercent] [thinkMillis] [maxMoves]
+ * </pre>
+ */
+public class Simulation {
+
+	private static final int CALIBRATION_MOVES = 100_000;
+
+	private final int games;
+	private final int size;
+	private final double invalidRate;
+	private final double clearRate;
+	private final long thinkMillis;
+	private final int maxMoves;
+
+	private final Histogram latency = new Histogram();		// Nanoseconds per move
+	private final LongAdder[] moves = {new LongAdder(), new LongAdder(), new LongAdder()};	// Per kind of move
+	private final LongAdder finished = new LongAdder();
+
+	/**
+	 * Creates a simulation.
+	 * @param games number of concurrent games
+	 * @param size board size (e.g., 4 or 9)
+	 * @param invalidRate share of moves that break a rule (0..1)
+	 * @param clearRate share of moves that clear a cell (0..1)
+	 * @param thinkMillis pause between two moves of a player, 0 for none
+	 * @param maxMoves moves after which a player gives up
+	 */
+	public Simulation(int games, int size, double invalidRate, double clearRate, long thinkMillis, int maxMoves) {
+
+		if(invalidRate < 0 || clearRate < 0 || invalidRate + clearRate >= 1) {
+			throw new IllegalArgumentException("Invalid and clear rates must not be negative and must leave room for valid moves");
+		}
+
+		this.games = games;
+		this.size = size;
+		this.invalidRate = invalidRate;
+		this.clearRate = clearRate;
+		this.thinkMillis = thinkMillis;
+		this.maxMoves = maxMoves;
+	}
+
+	/**
+	 * Runs the simulation and prints a summary.
+	 */
+	public void run() throws InterruptedException {
+
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+		System.out.printf("games: %d, size: %d, invalid: %.0f%%, clear: %.0f%%, think: %d ms, max moves: %d%n",
+				this.games, this.size, this.invalidRate * 100, this.clearRate * 100, this.thinkMillis, this.maxMoves);
+		System.out.printf("allocation per move (rule path): %.0f bytes%n", calibrate(threads));
+
+		SyntheticPlayer[] players = new SyntheticPlayer[this.games];
+		CountDownLatch ready = new CountDownLatch(this.games);
+		CountDownLatch go = new CountDownLatch(1);
+
+		System.gc();
+		long heapBefore = memory.getHeapMemoryUsage().getUsed();
+		long setupStart = System.nanoTime();
+		long allocated = 0;
+		long start = 0;
+
+		try(ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+
+			for(int i = 0 ; i < this.games ; i++) {
+
+				int index = i;
+
+				executor.submit(() -> {
+
+					try {
+						players[index] = new SyntheticPlayer(this.size, Board.DIFFICULTY_HARD, this.invalidRate, this.clearRate, index);
+					} finally {
+						ready.countDown();		// A failed setup must not hold back the others
+					}
+
+					go.await();
+					play(players[index]);
+
+					return null;
+				});
+
+			}
+
+			ready.await();
+
+			long setup = System.nanoTime() - setupStart;
+			System.gc();
+			long heapPerGame = (memory.getHeapMemoryUsage().getUsed() - heapBefore) / this.games;
+			System.out.printf("setup: %.2f s, heap per game: %d bytes%n", setup / 1e9, heapPerGame);
+
+			allocated = threads.getTotalThreadAllocatedBytes();
+			start = System.nanoTime();
+			go.countDown();
+		}
+
+		long elapsed = System.nanoTime() - start;
+		allocated = threads.getTotalThreadAllocatedBytes() - allocated;
+
+		long total = this.moves[SyntheticPlayer.VALID].sum() + this.moves[SyntheticPlayer.INVALID].sum() + this.moves[SyntheticPlayer.CLEAR].sum();
+
+		System.out.printf("moves: %d (valid: %d, invalid: %d, clear: %d), finished games: %d, elapsed: %.2f s%n",
+				total, this.moves[SyntheticPlayer.VALID].sum(), this.moves[SyntheticPlayer.INVALID].sum(),
+				this.moves[SyntheticPlayer.CLEAR].sum(), this.finished.sum(), elapsed / 1e9);
+		System.out.printf("throughput: %.0f moves/s%n", total / (elapsed / 1e9));
+
+		if(total > 0) {
+			System.out.printf("latency p50: %.2f us, p99: %.2f us, p99.9: %.2f us, max: %.2f us%n",
+					this.latency.getPercentile(50) / 1e3, this.latency.getPercentile(99) / 1e3,
+					this.latency.getPercentile(99.9) / 1e3, this.latency.getMax() / 1e3);
+			System.out.printf("allocation per move (overall): %.0f bytes%n", (double) allocated / total);
+		}
+
+	}
+
+	/**
+	 * Moves until the board is solved or the move cap is reached.
+	 */
+	private void play(SyntheticPlayer player) throws InterruptedException {
+
+		for(int i = 0 ; i < this.maxMoves ; i++) {
+
+			long moveStart = System.nanoTime();
+			int kind = player.move();
+			this.latency.record(System.nanoTime() - moveStart);
+			this.moves[kind].increment();
+
+			if(player.isFinished()) {
+				this.finished.increment();
+				return;
+			}
+
+			if(this.thinkMillis > 0) {
+				Thread.sleep(this.thinkMillis);
+			}
+
+		}
+
+	}
+
+	/**
+	 * Measures the allocation of the rule path: one player moves on the current thread,
+	 * starting a new game whenever the board is solved. Setup is excluded.
+	 * @return bytes allocated per move
+	 */
+	private double calibrate(com.sun.management.ThreadMXBean threads) {
+
+		SyntheticPlayer player = new SyntheticPlayer(this.size, Board.DIFFICULTY_HARD, this.invalidRate, this.clearRate, -1);
+		long allocated = 0;
+
+		for(int i = 0 ; i < CALIBRATION_MOVES ; i++) {
+
+			long before = threads.getCurrentThreadAllocatedBytes();
+			player.move();
+			allocated += threads.getCurrentThreadAllocatedBytes() - before;
+
+			if(player.isFinished()) {
+				player = new SyntheticPlayer(this.size, Board.DIFFICULTY_HARD, this.invalidRate, this.clearRate, -i);
+			}
+
+		}
+
+		return (double) allocated / CALIBRATION_MOVES;
+	}
+
+	/**
+	 * Entry point for a simulation run.
+	 * @param args [games] [size] [invalidPercent] [clearPercent] [thinkMillis] [maxMoves]
+	 */
+	public static void main(String[] args) throws InterruptedException {
+
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int size = args.length > 1 ? Integer.parseInt(args[1]) : Board.SIZE_STANDARD;
+		int invalidPercent = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		int clearPercent = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+		long thinkMillis = args.length > 4 ? Long.parseLong(args[4]) : 0;
+		int maxMoves = args.length > 5 ? Integer.parseInt(args[5]) : 1000;
+
+		new Simulation(games, size, invalidPercent / 100.0, clearPercent / 100.0, thinkMillis, maxMoves).run();
+	}
+
+}
@@ -0,0 +1,232 @@
+package simulation;
+
+import java.time.Duration;
+import java.util.Random;
+import core.Board;
+import core.Metrics;
+import core.MoveEvent;
+import core.Solver;
+import core.Sudoku;
+
+/**
+ * Simulated player of one game. Knows the solution of its board and makes moves of three
+ * kinds, picked at random with configurable rates:
+ * - valid: places the solution value of a random empty cell
+ * - invalid: places a value already used by a peer of a random empty cell
+ * - clear: empties a random cell the player filled earlier
+ *
+ * Every move goes through the same rule path as the terminal front end: the cell must be
+ * empty, the value must not conflict with any unit of the cell, the board's conflict
+ * tracker is kept up to date, and the move is counted in {@link Metrics} and a
+ * {@link MoveEvent}. Since only solution values are placed, the game always stays
+ * solvable and ends once every valid move has been made.
+ */
+public class SyntheticPlayer {
+
+	// Kinds of move
+	public static final int VALID = 0;
+	public static final int INVALID = 1;
+	public static final int CLEAR = 2;
+
+	private static final Duration GENERATION_TIMEOUT = Duration.ofSeconds(10);	// Far beyond any seed, only stops a runaway generation
+
+	private final Sudoku game;
+	private final Board board;
+	private final int size;
+	private final int[] solution;		// Row-major solution of the board
+	private final Random random;
+	private final double invalidRate;
+	private final double clearRate;
+
+	/**
+	 * Creates a player for a freshly generated board.
+	 * @param size board size (e.g., 4 or 9)
+	 * @param difficulty difficulty level
+	 * @param invalidRate share of moves that break a rule (0..1)
+	 * @param clearRate share of moves that clear a cell (0..1)
+	 * @param seed seed of the board and of the player's choices
+	 * @throws IllegalStateException if the board cannot be generated
+	 */
+	public SyntheticPlayer(int size, int difficulty, double invalidRate, double clearRate, long seed) {
+
+		this.board = new Board(size, difficulty, seed);
+
+		if(!this.board.initializeBoard(GENERATION_TIMEOUT)) {
+			throw new IllegalStateException("Board with seed " + seed + " not generated within " + GENERATION_TIMEOUT);
+		}
+
+		this.board.getConflictTracker();		// Kept up to date by every move, as in the front ends
+		this.game = new Sudoku(this.board);
+		this.size = size;
+		this.random = new Random(seed);
+		this.invalidRate = invalidRate;
+		this.clearRate = clearRate;
+
+		int[] cells = new int[size * size];
+
+		for(int k = 0 ; k < cells.length ; k++) {
+			cells[k] = this.board.getValue(k / size, k % size);
+		}
+
+		Solver solver = new Solver(this.board.getLayout(), this.board.getCages());
+
+		if(!solver.load(cells) || solver.solve(1) != 1) {
+			throw new IllegalStateException("Generated board has no solution");
+		}
+
+		this.solution = solver.getSolution().clone();
+	}
+
+	/**
+	 * Returns the game being played.
+	 * @return game
+	 */
+	public Sudoku getGame() {
+		return this.game;
+	}
+
+	/**
+	 * Makes one move of a random kind.
+	 * @return kind of the move made (VALID, INVALID or CLEAR); a kind that is not possible
+	 *         on the current board (nothing to clear, no conflicting value) falls back to VALID
+	 */
+	public int move() {
+
+		double r = this.random.nextDouble();
+
+		if(r < this.invalidRate && playInvalid()) {
+			return INVALID;
+		}
+
+		if(r >= this.invalidRate && r < this.invalidRate + this.clearRate && playClear()) {
+			return CLEAR;
+		}
+
+		playValid();
+
+		return VALID;
+	}
+
+	/**
+	 * Returns whether the board is solved.
+	 * @return true if every cell is filled
+	 */
+	public boolean isFinished() {
+		return this.game.finished();
+	}
+
+	private void playValid() {
+
+		int k = randomCell(true);
+
+		if(k >= 0) {
+			play(k / this.size, k % this.size, this.solution[k]);
+		}
+
+	}
+
+	/**
+	 * Plays the value of a peer into an empty cell.
+	 * @return false if no empty cell has a filled peer
+	 */
+	private boolean playInvalid() {
+
+		int k = randomCell(true);
+
+		if(k < 0) {
+			return false;
+		}
+
+		int[] peers = this.board.getLayout().getPeers(k);
+		int offset = this.random.nextInt(peers.length);
+
+		for(int i = 0 ; i < peers.length ; i++) {
+
+			int peer = peers[(offset + i) % peers.length];
+			int value = this.board.getValue(peer / this.size, peer % this.size);
+
+			if(value != 0) {
+				play(k / this.size, k % this.size, value);
+				return true;
+			}
+
+		}
+
+		return false;
+	}
+
+	/**
+	 * Clears a cell filled by the player.
+	 * @return false if the player has not filled any cell
+	 */
+	private boolean playClear() {
+
+		int k = randomCell(false);
+
+		if(k < 0) {
+			return false;
+		}
+
+		play(k / this.size, k % this.size, 0);
+
+		return true;
+	}
+
+	/**
+	 * Validates and applies a move like the terminal front end does.
+	 */
+	private void play(int row, int column, int value) {
+
+		MoveEvent event = new MoveEvent();
+		event.begin();
+
+		String error = null;
+
+		if(!this.game.checkCellEmpty(row, column, value)) {
+			error = "occupied";
+		}
+
+		else if(value > 0 && this.board.findConflictingUnit(row, column, value) >= 0) {
+			error = "conflict";
+		}
+
+		Metrics.recordMove(error == null);
+		event.end("simulation", this.board, row, column, value, error == null ? "accepted" : error);
+
+		if(error != null) {
+			this.game.recordMistake();
+		}
+
+		else if(!this.board.isCellFixed(row, column)) {
+			this.board.setValue(row, column, value);
+		}
+
+	}
+
+	/**
+	 * Picks a random cell, scanning forward from a random start.
+	 * @param empty true for an empty cell, false for a cell the player filled
+	 * @return cell index, or -1 if there is none
+	 */
+	private int randomCell(boolean empty) {
+
+		int cellCount = this.size * this.size;
+		int start = this.random.nextInt(cellCount);
+
+		for(int i = 0 ; i < cellCount ; i++) {
+
+			int k = (start + i) % cellCount;
+			int row = k / this.size;
+			int column = k % this.size;
+			boolean isEmpty = this.board.getValue(row, column) == 0;
+
+			if(empty ? isEmpty : !isEmpty && !this.board.isCellFixed(row, column)) {
+				return k;
+			}
+
+		}
+
+		return -1;
+	}
+
+}
@@ -0,0 +1,381 @@
+package terminal;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import core.Metrics;
+import core.StatisticsStore;
+
+/**
+ * Serves the terminal game over plain TCP, telnet style, so many players share one process.
+ *
+ * Every connection is a session playing its own {@link TerminalGame} on a virtual thread,
+ * reading through a Scanner over the socket and printing to a buffered stream of its own.
+ * The game is a sequence of blocking prompts, which a virtual thread runs as it is: while
+ * a player thinks, the session's thread is parked without holding a platform thread, so
+ * hundreds of mostly idle sessions cost their buffers and a small stack each. The output
+ * of a session is flushed when it waits for input, once per prompt instead of once per line.
+ *
+ * Clients are served in line mode: telnet option negotiation is dropped from the input and
+ * line breaks are sent as CR LF. Sessions without input for {@link #IDLE_TIMEOUT} are closed,
+ * and connections beyond the session limit are turned away. Games are not saved; solved
+ * games count in the statistics of the server.
+ *
+ * Usage example:
+ * <pre>
+ * TelnetServer server = new TelnetServer(2323, 500);
+ * server.start();
+ * </pre>
+ * Players then connect with e.g. {@code telnet host 2323} or {@code nc host 2323}.
+ */
+public class TelnetServer {
+
+	public static final int DEFAULT_PORT = 2323;
+	public static final int DEFAULT_MAX_SESSIONS = 500;
+	public static final Duration IDLE_TIMEOUT = Duration.ofMinutes(30);
+
+	private static final int OUTPUT_BUFFER = 4096;		// Bytes per session, a 9x9 board with its prompt fits
+
+	private final ServerSocket serverSocket;
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+	private final int maxSessions;
+	private final Semaphore slots;				// One permit per session that may still start
+	private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();		// Open sessions, closed on stop
+	private final StatisticsStore statistics = new StatisticsStore();		// Games solved on this server
+	private final AtomicLong rejected = new AtomicLong();		// Connections turned away, server full
+	private final String gaugePrefix;		// "telnet.<port>.", so servers sharing a JVM keep their own gauges
+	private Thread acceptor;
+
+	/**
+	 * Creates a server bound to the given port. Call {@link #start()} to accept players.
+	 * @param port TCP port (0 picks a free port)
+	 * @param maxSessions largest number of simultaneous sessions
+	 * @throws IOException if the port cannot be bound
+	 */
+	public TelnetServer(int port, int maxSessions) throws IOException {
+		this.serverSocket = new ServerSocket(port, 1024);
+		this.gaugePrefix = "telnet." + this.serverSocket.getLocalPort() + ".";
+		this.maxSessions = maxSessions;
+		this.slots = new Semaphore(maxSessions);
+	}
+
+	/**
+	 * Starts accepting connections on a thread of its own, and registers the server's gauges under its port.
+	 */
+	public void start() {
+		Metrics.registerGauge(this.gaugePrefix + "sessions", this::getSessionCount);
+		Metrics.registerGauge(this.gaugePrefix + "rejected", this.rejected::get);
+		this.acceptor = new Thread(this::acceptLoop, "telnet-acceptor");
+		this.acceptor.start();
+	}
+
+	/**
+	 * Stops accepting connections, closes every session and removes the server's gauges.
+	 */
+	public void stop() {
+
+		Metrics.unregisterGauges(this.gaugePrefix);
+
+		try {
+			this.serverSocket.close();
+		} catch(IOException e) {
+			// Closing anyway
+		}
+
+		for(Socket socket : this.sockets) {
+			closeQuietly(socket);		// The session's next read fails and its thread ends
+		}
+
+		this.executor.shutdown();
+	}
+
+	/**
+	 * Returns the port the server is listening on.
+	 * @return bound port
+	 */
+	public int getPort() {
+		return this.serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Returns the number of sessions currently playing.
+	 * @return session count
+	 */
+	public int getSessionCount() {
+		return this.maxSessions - this.slots.availablePermits();
+	}
+
+	/**
+	 * Returns the statistics of the games solved on this server.
+	 * @return statistics store
+	 */
+	public StatisticsStore getStatistics() {
+		return this.statistics;
+	}
+
+	private void acceptLoop() {
+
+		while(!this.serverSocket.isClosed()) {
+
+			Socket socket;
+
+			try {
+				socket = this.serverSocket.accept();
+			} catch(IOException e) {
+				continue;		// Closed by stop(), or a connection that failed before it was accepted
+			}
+
+			if(!this.slots.tryAcquire()) {
+				this.rejected.incrementAndGet();
+				this.executor.execute(() -> reject(socket));
+				continue;
+			}
+
+			this.sockets.add(socket);
+			this.executor.execute(() -> serve(socket));
+		}
+
+	}
+
+	/**
+	 * Plays one game with a client, then closes the connection.
+	 */
+	private void serve(Socket socket) {
+
+		try(socket) {
+
+			socket.setSoTimeout((int) IDLE_TIMEOUT.toMillis());
+			socket.setTcpNoDelay(true);		// Output is flushed once per prompt anyway
+
+			PrintStream out = new PrintStream(new LineBreakOutputStream(new BufferedOutputStream(socket.getOutputStream(), OUTPUT_BUFFER)),
+					false, StandardCharsets.UTF_8);
+			Scanner scan = new Scanner(new TelnetInputStream(socket.getInputStream(), out), StandardCharsets.UTF_8);
+
+			try {
+				out.println("Welcome to Sudoku! Rows and columns start from 1, 0,0=0 leaves the game.");
+				new TerminalGame(out, null, this.statistics).playTerminalGame(scan);
+			} catch(NoSuchElementException e) {
+				out.println("Input closed, goodbye.");		// Only reaches clients that are still connected
+			}
+
+			out.flush();
+
+		} catch(IOException e) {
+			// The client went away
+		} finally {
+			this.sockets.remove(socket);
+			this.slots.release();
+		}
+
+	}
+
+	private static void reject(Socket socket) {
+
+		try(socket) {
+			socket.getOutputStream().write("The server is full, please try again later.\r\n".getBytes(StandardCharsets.UTF_8));
+		} catch(IOException e) {
+			// The client went away
+		}
+
+	}
+
+	private static void closeQuietly(Socket socket) {
+
+		try {
+			socket.close();
+		} catch(IOException e) {
+			// Closing anyway
+		}
+
+	}
+
+	/**
+	 * Runs the server until the process is stopped.
+	 * @param args optional port number (default 2323) and session limit (default 500)
+	 */
+	public static void main(String[] args) throws IOException {
+
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int maxSessions = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_SESSIONS;
+
+		TelnetServer server = new TelnetServer(port, maxSessions);
+		server.start();
+
+		Metrics.startReporter(Duration.ofMinutes(1), System.out);
+
+		System.out.println("Sudoku telnet server listening on port " + server.getPort());
+	}
+
+	/**
+	 * Input of a session: flushes the session's output before waiting for the client, and
+	 * drops telnet commands (IAC sequences), which a telnet client may send at any time.
+	 */
+	private static final class TelnetInputStream extends FilterInputStream {
+
+		private static final int IAC = 255, SB = 250, SE = 240, WILL = 251;
+
+		// Position in a command
+		private static final int DATA = 0, COMMAND = 1, OPTION = 2, SUBNEGOTIATION = 3, SUBNEGOTIATION_IAC = 4;
+
+		private final PrintStream out;
+		private int state = DATA;
+
+		TelnetInputStream(InputStream in, PrintStream out) {
+			super(in);
+			this.out = out;
+		}
+
+		@Override
+		public int read() throws IOException {
+
+			byte[] one = new byte[1];
+
+			return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+
+			if(length == 0) {
+				return 0;
+			}
+
+			if(this.in.available() == 0) {
+				this.out.flush();		// The prompt has to reach the client before it can answer
+			}
+
+			while(true) {
+
+				int count;
+
+				try {
+					count = this.in.read(buffer, offset, length);
+				} catch(SocketException e) {
+					return -1;		// Reset by the client or closed by stop()
+				}
+
+				if(count < 0) {
+					return -1;
+				}
+
+				int kept = filter(buffer, offset, count);
+
+				if(kept > 0) {
+					return kept;
+				}
+
+			}
+
+		}
+
+		/**
+		 * Removes telnet commands in place.
+		 * @return number of data bytes left at the start of the range
+		 */
+		private int filter(byte[] buffer, int offset, int count) {
+
+			int kept = offset;
+
+			for(int i = offset ; i < offset + count ; i++) {
+
+				int b = buffer[i] & 0xFF;
+
+				switch(this.state) {
+					case DATA:
+						if(b == IAC) {
+							this.state = COMMAND;
+						} else {
+							buffer[kept++] = buffer[i];
+						}
+						break;
+					case COMMAND:
+						if(b == IAC) {
+							buffer[kept++] = buffer[i];		// Escaped 255
+							this.state = DATA;
+						} else {
+							this.state = b == SB ? SUBNEGOTIATION : b >= WILL ? OPTION : DATA;		// WILL, WONT, DO and DONT name an option
+						}
+						break;
+					case OPTION:
+						this.state = DATA;
+						break;
+					case SUBNEGOTIATION:
+						this.state = b == IAC ? SUBNEGOTIATION_IAC : SUBNEGOTIATION;
+						break;
+					default:
+						this.state = b == SE ? DATA : SUBNEGOTIATION;
+						break;
+				}
+
+			}
+
+			return kept - offset;
+		}
+
+	}
+
+	/**
+	 * Output of a session: sends every line break as CR LF, as telnet clients expect.
+	 */
+	private static final class LineBreakOutputStream extends FilterOutputStream {
+
+		private int last;		// Last byte written
+
+		LineBreakOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+
+			if(b == '\n' && this.last != '\r') {
+				this.out.write('\r');
+			}
+
+			this.out.write(b);
+			this.last = b;
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length) throws IOException {
+
+			int start = offset;
+
+			for(int i = offset ; i < offset + length ; i++) {
+
+				if(buffer[i] == '\n' && (i > offset ? buffer[i - 1] : this.last) != '\r') {
+					this.out.write(buffer, start, i - start);
+					this.out.write('\r');
+					start = i;
+				}
+
+			}
+
+			this.out.write(buffer, start, offset + length - start);
+
+			if(length > 0) {
+				this.last = buffer[offset + length - 1];
+			}
+
+		}
+
+	}
+
+}
@@ -2,6 +2,22 @@ package terminal;
 
 import java.util.Scanner;
 import core.Board;
+import core.Cages;
+import core.BoardListener;
+import core.ConflictTracker;
+import core.Journal;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeoutException;
+import core.Layout;
+import core.Metrics;
+import core.MoveEvent;
+import core.Notes;
+import core.PortfolioGenerator;
+import core.StatisticsStore;
 import core.Sudoku;
 
 /**
@@ -9,6 +25,9 @@ import core.Sudoku;
  * Provides methods to interact with the user, get board size and difficulty,
  * validate moves, and print the board in a readable format.
  * 
+ * A game only talks to the Scanner it is given and its own output stream, so one process
+ * can run many games at once, as the {@link TelnetServer} does.
+ * 
  * Usage example:
  * <pre>
  * Scanner scan = new Scanner(System.in);
@@ -20,13 +39,31 @@ public class TerminalGame {
 	
 	private UserChoice choice;	// Handles user input and choices
 	private Sudoku game;			// The Sudoku game instance
+	private String[] rows;		// Drawn board rows, null when a cell of the row changed since
+	private final PrintStream out;		// Board, prompts and messages
+	private final Path journalFile;		// Autosave journal, null to play without autosave
+	private final StatisticsStore statistics;	// Solve statistics, null to use the statistics file
 	
 	/**
-     * Default constructor initializing UserChoice and Sudoku.
+     * Default constructor initializing UserChoice and Sudoku, playing on System.out
+     * with the autosave journal and statistics file of the user.
      */
 	public TerminalGame() {
-		this.choice = new UserChoice();
+		this(System.out, Journal.DEFAULT_FILE, null);
+	}
+	
+	/**
+     * Creates a game printing to the given stream.
+     * @param out stream receiving the board, prompts and messages
+     * @param journalFile autosave journal, null to neither resume nor save games
+     * @param statistics store receiving solved games, null to use StatisticsStore.DEFAULT_FILE
+     */
+	public TerminalGame(PrintStream out, Path journalFile, StatisticsStore statistics) {
+		this.choice = new UserChoice(out);
 		this.game = new Sudoku();
+		this.out = out;
+		this.journalFile = journalFile;
+		this.statistics = statistics;
 	}
 
     /**
@@ -35,27 +72,73 @@ public class TerminalGame {
      */
 	public void playTerminalGame(Scanner scan) {
 		
-		int N = getSize(scan);
+		Board saved = this.journalFile == null ? null : Journal.resume(this.journalFile);
 		
-		int difficultyLevel = getDifficultyLevel(scan);
+		if(saved != null && resumeSavedGame(scan)) {
+			game = new Sudoku(saved);
+		}
 		
-		game = new Sudoku(N, difficultyLevel);
-				
-		game.getBoard().initializeBoard();
+		else {
+		
+			int N = getSize(scan);
+			
+			int difficultyLevel = getDifficultyLevel(scan);
+			
+			int variant = getVariant(scan);
+			
+			game = new Sudoku(generateBoard(Layout.of(variant, N, new Random()), difficultyLevel));
+		
+		}
 		
 		scan.nextLine();
 		
+		Journal journal = this.journalFile == null ? null : Journal.start(this.journalFile, game.getBoard());		// Records every change from now on
+		this.rows = new String[game.getBoard().getSize()];
+		
+		game.getBoard().addListener(new BoardListener() {
+			
+			@Override
+			public void cellChanged(int row, int column, int oldValue, int newValue) {
+				rows[row] = null;		// Only this row is drawn again
+			}
+			
+			@Override
+			public void boardReplaced() {
+				Arrays.fill(rows, null);
+			}
+			
+		});
+		
 		while(!game.finished()) {
 						
 			do {
 				
 				this.print();
+				this.printConflicts();
 				
 				if(this.choice.getUserChoice(scan, game.getBoard())) {
+					
+					if(journal != null) {
+						journal.close();		// Keep the journal so the game can be resumed
+					}
+					
 					return;
 				}
+				
+				if(this.choice.getCommand() == UserChoice.COMMAND_SHOW_NOTES) {
+					this.printNotes();
+				}
+				
+				else if(this.choice.getCommand() == UserChoice.COMMAND_NOTE && this.isMoveWithinBounds()) {
+					this.editNote(this.choice.getRow(), this.choice.getColumn(), this.choice.getValue());
+				}
+				
+				else if(this.choice.getCommand() == UserChoice.COMMAND_REVEAL && this.isMoveWithinBounds()
+						&& this.revealCell(this.choice.getRow(), this.choice.getColumn()) && game.finished()) {
+					break;		// The hint filled the last empty cell, which is now fixed
+				}
 			
-			} while(!this.choice.isMoveWithinBounds(game.getBoard().getSize()) || !this.isValidMove(this.choice.getRow(), this.choice.getColumn(), this.choice.getValue()));
+			} while(this.choice.getCommand() != UserChoice.COMMAND_MOVE || !this.isMoveWithinBounds() || !this.isValidMove(this.choice.getRow(), this.choice.getColumn(), this.choice.getValue()));
 			
 			if(!game.getBoard().isCellFixed(this.choice.getRow(), this.choice.getColumn())) {
 				game.getBoard().setValue(choice.getRow(), choice.getColumn(), choice.getValue());		
@@ -63,13 +146,59 @@ public class TerminalGame {
 		
 		}
 		
-		System.out.println("Congratulations! You have solved the Sudoku.");
+		if(journal != null) {
+			journal.discard();
+		}
+		
+		Metrics.recordCompletion(game.getElapsedTime());
+		this.out.println("Congratulations! You have solved the Sudoku.");
+		this.printStatistics();
+		
+	}
+	
+	/**
+     * Checks whether the entered move is on the board, with a value the board can hold.
+     * Prints an error message if not.
+     * @return true if row, column and value are within range
+     */
+	private boolean isMoveWithinBounds() {
+		return this.choice.isMoveWithinBounds(game.getBoard().getSize(), game.getBoard().getLayout().getValueCount());
+	}
+	
+    /**
+     * Adds the solved game to the statistics file, or to the store the game was created
+     * with, and prints how it compares with earlier games of the same size and difficulty.
+     */
+	public void printStatistics() {
+		
+		int size = game.getBoard().getSize();
+		int difficulty = game.getBoard().getDifficultyLevel();
+		
+		try {
+			
+			StatisticsStore statistics = this.statistics != null ? this.statistics : StatisticsStore.load(StatisticsStore.DEFAULT_FILE);
+			game.recordStatistics(statistics);
+			
+			if(this.statistics == null) {
+				statistics.save(StatisticsStore.DEFAULT_FILE);
+			}
+			
+			
+			this.out.println("Time: " + StatisticsStore.formatTime(game.getElapsedTime() / 1_000_000) + ", mistakes: " + game.getMistakes() + ", hints: " + game.getHints());
+			this.out.println("Best time: " + StatisticsStore.formatTime(statistics.getBestTime(size, difficulty))
+					+ ", median: " + StatisticsStore.formatTime(statistics.getSolveTimePercentile(size, difficulty, 50))
+					+ " (" + statistics.getGames(size, difficulty) + " games solved)");
+			
+		} catch(IOException e) {
+			this.out.println("Could not update statistics: " + e.getMessage());
+		}
 		
 	}
 	
     /**
      * Checks if a user's move is valid according to Sudoku rules.
-     * Prints an error message if invalid.
+     * Prints an error message if invalid. Only values breaking a rule or differing from
+     * the solution count as mistakes; moves on occupied or missing cells are input errors.
      * @param row row index of the move
      * @param column column index of the move
      * @param value value to insert
@@ -77,31 +206,255 @@ public class TerminalGame {
      */
 	public boolean isValidMove(int row, int column, int value) {
 		
-		if(value > 0) {
+		MoveEvent event = new MoveEvent();
+		event.begin();
+		
+		String error = null;
+		boolean mistake = false;
+		
+		if(!game.getBoard().isCell(row, column)) {
+			error = "Error: this cell is not part of the puzzle!";
+		}
+		
+		else if(value > 0) {
 		
 			if(!game.checkCellEmpty(row, column, value)) {
-				System.out.println("Error: cell is already occupied!");
-				return false;
+				error = "Error: cell is already occupied!";
+			}
+			
+			else {
+				
+				int unit = game.getBoard().findConflictingUnit(row, column, value);
+				
+				if(unit >= 0) {
+					error = "Error: Illegal value insertion! Invalid " + game.getBoard().getLayout().getUnitName(unit) + ".";
+				}
+				
+				else if(!game.getBoard().checkCage(row, column, value)) {
+					error = "Error: Illegal value insertion! Invalid cage.";
+				}
+				
+				else if(!game.getBoard().isCorrect(row, column, value)) {
+					error = "Error: " + value + " breaks no rule yet, but it is not the value of this cell.";
+				}
+				
+				mistake = error != null;		// Breaks a rule or differs from the solution
+				
+			}
+		
+		}
+		
+		Metrics.recordMove(error == null);
+		event.end("terminal", game.getBoard(), row, column, value, error == null ? "accepted" : error);
+		
+		if(mistake) {
+			game.recordMistake();
+		}
+		
+		if(error != null) {
+			this.out.println(error);
+			return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+     * Reveals the value of an empty cell and counts it as a hint.
+     * Prints an error message if the cell is not empty.
+     * @param row row index
+     * @param column column index
+     * @return true if a value was revealed
+     */
+	public boolean revealCell(int row, int column) {
+		
+		if(!game.getBoard().isCell(row, column)) {
+			this.out.println("Error: this cell is not part of the puzzle.");
+			return false;
+		}
+		
+		if(game.getBoard().getValue(row, column) != 0) {
+			this.out.println("Error: only empty cells can be revealed.");
+			return false;
+		}
+		
+		MoveEvent event = new MoveEvent();
+		event.begin();
+		
+		int value = game.revealCell(row, column);
+		
+		String error = value == 0 ? "Error: the solution of this board is not known." : null;
+		
+		event.end("terminal", game.getBoard(), row, column, value, error == null ? "hint" : error);
+		
+		if(error != null) {
+			this.out.println(error);
+			return false;
+		}
+		
+		this.out.println("Hint: the value of this cell is " + value + ".");
+		return true;
+	}
+	
+	/**
+     * Adds or removes a note of an empty cell, or clears its notes when value is 0.
+     * Prints an error message if the cell holds a value.
+     * @param row row index
+     * @param column column index
+     * @param value candidate value, 0 to clear every note of the cell
+     */
+	public void editNote(int row, int column, int value) {
+		
+		Notes notes = game.getBoard().getNotes();
+		
+		if(!game.getBoard().isCell(row, column)) {
+			this.out.println("Error: this cell is not part of the puzzle.");
+		}
+		
+		else if(game.getBoard().getValue(row, column) != 0) {
+			this.out.println("Error: notes can only be added to empty cells.");
+		}
+		
+		else if(value == 0) {
+			notes.clear(row, column);
+			this.out.println("Notes cleared.");
+		}
+		
+		else if(notes.toggle(row, column, value)) {
+			this.out.println("Note " + value + " added.");
+		}
+		
+		else {
+			this.out.println("Note " + value + " removed.");
+		}
+		
+	}
+	
+	/**
+     * Prints the board with the notes of every empty cell, each cell drawn as a small
+     * grid of its candidates (3x3 on a 9x9 board). Filled cells show their value in the
+     * middle, fixed cells in parentheses. Region borders are drawn as in {@link #printJigsaw()}.
+     */
+	public void printNotes() {
+		
+		Notes notes = game.getBoard().getNotes();
+		int N = game.getBoard().getSize();
+		int side = notes.getSide();
+		int width = 2 * side - 1;		// Candidates separated by one blank
+		String border = "-".repeat(width + 2);
+		String open = " ".repeat(width + 2);
+		
+		for(int i = 0 ; i <= N ; i++) {
+			
+			// Horizontal borders above row i
+			StringBuilder line = new StringBuilder().append(this.corner(i, 0) ? '+' : ' ');
+			
+			for(int j = 0 ; j < N ; j++) {
+				boolean closed = this.isBorder(i == 0 ? -1 : (i - 1) * N + j, i == N ? -1 : i * N + j);
+				line.append(closed ? border : open).append(this.corner(i, j + 1) ? '+' : ' ');
 			}
 			
-			if(!game.getBoard().checkRow(row, value)) {
-				System.out.println("Error: Illegal value insertion! Invalid row.");
-				return false;
+			this.out.println(line);
+			
+			if(i == N) {
+				break;
 			}
 			
-			if(!game.getBoard().checkColumn(column, value)) {
-				System.out.println("Error: Illegal value insertion! Invalid column.");
-				return false;			
+			String[][] cells = new String[N][];
+			
+			for(int j = 0 ; j < N ; j++) {
+				cells[j] = notes.format(i, j).split("\n", -1);
 			}
 			
-			if(!game.getBoard().checkBox(row, column, value)) {
-				System.out.println("Error: Illegal value insertion! Invalid box.");
-				return false;
+			for(int l = 0 ; l < side ; l++) {
+				
+				line = new StringBuilder();
+				
+				for(int j = 0 ; j < N ; j++) {
+					
+					boolean closed = this.isBorder(j == 0 ? -1 : i * N + j - 1, i * N + j);
+					line.append(closed ? '|' : ' ').append(' ');
+					
+					int value = game.getBoard().getValue(i, j);
+					
+					if(value == 0) {
+						line.append(cells[j][l]);
+					}
+					
+					else {
+						String text = l != side / 2 ? "" : game.getBoard().isCellFixed(i, j) ? "(" + value + ")" : String.valueOf(value);
+						int left = (width - text.length()) / 2;
+						line.append(" ".repeat(left)).append(text).append(" ".repeat(width - left - text.length()));
+					}
+					
+					line.append(' ');
+				}
+				
+				this.out.println(line.append(this.isBorder(i * N + N - 1, -1) ? '|' : ' '));
 			}
-		
+			
 		}
 		
-		return true;
+	}
+	
+	/**
+     * Prompts the user to choose the variant of the rules.
+     * @param scan Scanner object to read user input
+     * @return chosen variant (Layout.VARIANT_CLASSIC, VARIANT_DIAGONAL, VARIANT_WINDOKU, VARIANT_JIGSAW, VARIANT_KILLER or VARIANT_SAMURAI)
+     */
+	public int getVariant(Scanner scan) {
+		
+		this.out.println("Give me the variant: ");
+		this.out.println("1. Classic");
+		this.out.println("2. Diagonal (both diagonals hold every number once)");
+		this.out.println("3. Windoku (the extra windows hold every number once)");
+		this.out.println("4. Jigsaw (irregular regions instead of boxes)");
+		this.out.println("5. Killer (cages must add up to their sums, without repeating a number)");
+		this.out.println("6. Samurai (five 9x9 grids sharing their corner boxes, the size is ignored)");
+	    this.out.print("Enter choice: ");
+		
+		int choice;
+		
+		do {
+			
+			 choice = readNumber(scan);
+			 
+			 if(choice < 1 || choice > 6) {
+			    this.out.println("Invalid choice, please select 1, 2, 3, 4, 5 or 6.");
+			    this.out.print("Enter choice: ");
+			 }
+			 
+		} while(choice < 1 || choice > 6);
+		
+		return choice - 1;		// Menu entries follow the Layout.VARIANT_ constants
+	}
+	
+	/**
+     * Asks whether to continue the game found in the autosave journal.
+     * @param scan Scanner object to read user input
+     * @return true to resume the saved game, false to start a new one
+     */
+	public boolean resumeSavedGame(Scanner scan) {
+		
+		this.out.println("A saved game was found. Do you want to resume it?");
+		this.out.println("1. Yes");
+		this.out.println("2. No");
+	    this.out.print("Enter choice: ");
+		
+		int answer;
+		
+		do {
+			
+			 answer = readNumber(scan);
+			 
+			 if(answer != 1 && answer != 2) {
+			    this.out.println("Invalid choice, please select 1 or 2.");
+			    this.out.print("Enter choice: ");
+			 }
+			 
+		} while(answer != 1 && answer != 2);
+		
+		return answer == 1;
 	}
 	
 	 /**
@@ -112,17 +465,17 @@ public class TerminalGame {
      */
 	public int getSize(Scanner scan) {
 		
-        System.out.print("Give me the size of the sudoku you would like to play (4 or 9): ");
+        this.out.print("Give me the size of the sudoku you would like to play (4 or 9): ");
 		
 		int N;
 		
 		do {
 			
-			 N = scan.nextInt();
+			 N = readNumber(scan);
 			 
 			 if(N != Board.SIZE_EASY && N != Board.SIZE_STANDARD) {
-				 System.out.println("Invalid size, please enter 4 or 9.");
-				 System.out.print("Enter size: ");
+				 this.out.println("Invalid size, please enter 4 or 9.");
+				 this.out.print("Enter size: ");
 		     }
 			 
 		} while(N != Board.SIZE_EASY && N != Board.SIZE_STANDARD);
@@ -137,21 +490,21 @@ public class TerminalGame {
      */
 	public int getDifficultyLevel(Scanner scan) {
 				
-		System.out.println("Give me the difficulty level: ");
-		System.out.println("1. Easy");
-		System.out.println("2. Medium");
-		System.out.println("3. Hard");
-	    System.out.print("Enter choice: ");
+		this.out.println("Give me the difficulty level: ");
+		this.out.println("1. Easy");
+		this.out.println("2. Medium");
+		this.out.println("3. Hard");
+	    this.out.print("Enter choice: ");
 		
 		int difficultyLevel;
 		
 		do {
 			
-			 difficultyLevel = scan.nextInt();
+			 difficultyLevel = readNumber(scan);
 			 
 			 if(difficultyLevel != Board.DIFFICULTY_EASY && difficultyLevel != Board.DIFFICULTY_MEDIUM && difficultyLevel != Board.DIFFICULTY_HARD) {
-			    System.out.println("Invalid choice, please select 1, 2, or 3.");
-			    System.out.print("Enter choice: ");
+			    this.out.println("Invalid choice, please select 1, 2, or 3.");
+			    this.out.print("Enter choice: ");
 			 }
 			 
 		} while(difficultyLevel != Board.DIFFICULTY_EASY && difficultyLevel != Board.DIFFICULTY_MEDIUM && difficultyLevel != Board.DIFFICULTY_HARD);
@@ -160,80 +513,299 @@ public class TerminalGame {
 		return difficultyLevel;
 	}
 	
+	/**
+     * Generates a new board, starting over with new seeds whenever the generation times out.
+     * @param layout layout of the board
+     * @param difficultyLevel chosen difficulty level
+     * @return generated board
+     */
+	private Board generateBoard(Layout layout, int difficultyLevel) {
+		
+		while(true) {
+			
+			try {
+				return PortfolioGenerator.getShared().generate(layout, difficultyLevel, PortfolioGenerator.INTERACTIVE_TIMEOUT);
+			} catch(TimeoutException e) {
+				this.out.println("Generating the board takes longer than usual, trying again...");
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while generating a board", e);
+			}
+			
+		}
+		
+	}
+	
+	/**
+     * Reads a number for a menu, skipping and reporting anything else the user types.
+     * @param scan Scanner object to read user input
+     * @return number entered
+     */
+	private int readNumber(Scanner scan) {
+		
+		while(!scan.hasNextInt()) {
+			this.out.println("Invalid input '" + scan.next() + "', please enter a number.");
+			this.out.print("Enter choice: ");
+		}
+		
+		return scan.nextInt();
+	}
+	
+	/**
+     * Prints every value repeated in a row, column, box or cage, and every broken cage sum, grouped by unit.
+     * Prints nothing when the board has no conflicts.
+     */
+	public void printConflicts() {
+		
+		ConflictTracker conflicts = game.getBoard().getConflictTracker();
+		
+		if(!conflicts.hasConflicts()) {
+			return;
+		}
+		
+		this.out.println("Conflicts:");
+		
+		for(ConflictTracker.Conflict conflict : conflicts.getConflicts()) {
+			this.out.println("  " + conflict);
+		}
+		
+	}
+	
 	/**
      * Prints the current state of the Sudoku board in a readable format.
      * Fixed cells are displayed in parentheses.
      */
 	public void print() {
 		
+		Layout layout = game.getBoard().getLayout();
+		int N = game.getBoard().getSize();
+		
+		if(layout.getVariant() == Layout.VARIANT_JIGSAW || layout.getVariant() == Layout.VARIANT_KILLER || layout.getVariant() == Layout.VARIANT_SAMURAI) {
+			this.printJigsaw();
+			this.printExtraUnits();
+			return;
+		}
+		
 		for(int i = 0 ; i < game.getBoard().getSize() ; i++) {
 			
-			if(i % Math.sqrt(game.getBoard().getSize()) == 0) {
+			if(i == 0 || layout.getRegion((i - 1) * N) != layout.getRegion(i * N)) {
 				
 				if(game.getBoard().getSize() == Board.SIZE_EASY) {
-					System.out.println("+------+------+");
+					this.out.println("+------+------+");
 				}
 				
 				else if(game.getBoard().getSize() == Board.SIZE_STANDARD) {
-					System.out.println("+---------+---------+---------+");
+					this.out.println("+---------+---------+---------+");
 				}
 			
 			}
 			
-			for(int j = 0 ; j < game.getBoard().getSize() ; j++) {
-								
-				if(j % Math.sqrt(game.getBoard().getSize()) == 0) {
-					
-					if(game.getBoard().getValue(i, j) != 0) {
-					
-						if(game.getBoard().isCellFixed(i, j)) {
-							System.out.print("|(" + game.getBoard().getValue(i, j) + ")");
-						}
-						
-						else {
-							System.out.print("| " + game.getBoard().getValue(i, j) + " ");
-						}
-					
-					}
-					
-					else {
-						System.out.print("|   ");
-					}
-					
-				}
+			this.out.println(this.row(i));
+			
+		}
+		
+		if(game.getBoard().getSize() == Board.SIZE_EASY) {
+			this.out.println("+------+------+");
+		}
+		
+		else if(game.getBoard().getSize() == Board.SIZE_STANDARD) {
+			this.out.println("+---------+---------+---------+");
+		}
+		
+		this.printExtraUnits();
+		
+	}
+	
+	/**
+     * Prints a jigsaw board. Region borders are irregular, so every cell gets its own
+     * column and row separators: a border is drawn between two cells of different regions.
+     * Killer boards are printed the same way, with the cages as regions, and so are
+     * Samurai boards, whose void cells between the grids are left blank.
+     */
+	public void printJigsaw() {
+		
+		int N = game.getBoard().getSize();
+		
+		for(int i = 0 ; i <= N ; i++) {
+			
+			// Horizontal borders above row i
+			StringBuilder line = new StringBuilder().append(this.corner(i, 0) ? '+' : ' ');
+			
+			for(int j = 0 ; j < N ; j++) {
+				boolean border = this.isBorder(i == 0 ? -1 : (i - 1) * N + j, i == N ? -1 : i * N + j);
+				line.append(border ? "---" : "   ").append(this.corner(i, j + 1) ? '+' : ' ');
+			}
+			
+			this.out.println(line);
+			
+			if(i == N) {
+				break;
+			}
+			
+			this.out.println(this.row(i));
+			
+		}
+		
+	}
+	
+	/**
+     * Returns the drawing of a board row, drawing it again only if one of its cells
+     * changed since it was last printed.
+     * @param i row index
+     * @return the row's cells between their borders
+     */
+	private String row(int i) {
+		
+		if(this.rows == null) {
+			return this.drawRow(i);		// Not playing, nothing is cached
+		}
+		
+		if(this.rows[i] == null) {
+			this.rows[i] = this.drawRow(i);
+		}
+		
+		return this.rows[i];
+	}
+	
+	/**
+     * Draws the cells of a board row. A border is drawn between two cells of different
+     * regions, fixed cells are in parentheses. On Killer boards, a line above the cells
+     * shows the sum of every cage in its first cell.
+     * @param i row index
+     * @return the row's cells between their borders
+     */
+	private String drawRow(int i) {
+		
+		Layout layout = game.getBoard().getLayout();
+		Cages cages = game.getBoard().getCages();
+		int N = game.getBoard().getSize();
+		boolean jigsaw = layout.getVariant() == Layout.VARIANT_JIGSAW || layout.getVariant() == Layout.VARIANT_SAMURAI || cages != null;
+		StringBuilder line = new StringBuilder(N * 8 + 3);
+		
+		if(cages != null) {
+			
+			for(int j = 0 ; j < N ; j++) {
 				
-				else {
-					
-					if(game.getBoard().getValue(i, j) != 0) {
-
-						if(game.getBoard().isCellFixed(i, j)) {
-							System.out.print("(" + game.getBoard().getValue(i, j) + ")");
-						}
-						
-						else {						
-							System.out.print(" " + game.getBoard().getValue(i, j) + " ");
-						}
-					
-					}
-					
-					else {
-						System.out.print("   ");
-					}
-					
-				}
+				int cage = cages.getCage(i * N + j);
 				
+				line.append(this.isBorder(j == 0 ? -1 : i * N + j - 1, i * N + j) ? '|' : ' ');
+				line.append(cages.getFirstCell(cage) == i * N + j ? String.format("%-3d", cages.getSum(cage)) : "   ");
 			}
 			
-			System.out.println("|");
+			line.append('|').append(System.lineSeparator());
+		}
+		
+		for(int j = 0 ; j < N ; j++) {
+			
+			boolean border = this.isBorder(j == 0 ? -1 : i * N + j - 1, i * N + j);
+			
+			if(border || jigsaw) {
+				line.append(border ? '|' : ' ');		// Jigsaw rows keep a separator column between every two cells
+			}
+			
+			int value = game.getBoard().getValue(i, j);
+			
+			if(value == 0) {
+				line.append("   ");
+			}
+			
+			else if(game.getBoard().isCellFixed(i, j)) {
+				line.append('(').append(value).append(')');
+			}
+			
+			else {
+				line.append(' ').append(value).append(' ');
+			}
 			
 		}
 		
-		if(game.getBoard().getSize() == Board.SIZE_EASY) {
-			System.out.println("+------+------+");
+		return line.append(this.isBorder(i * N + N - 1, -1) ? '|' : ' ').toString();
+	}
+	
+	/**
+     * Returns the area a cell is drawn in: its cage on Killer boards, otherwise its region.
+     * @param cell row-major cell index
+     * @return cage or region index
+     */
+	private int area(int cell) {
+		
+		Cages cages = game.getBoard().getCages();
+		
+		return cages != null ? cages.getCage(cell) : game.getBoard().getLayout().getRegion(cell);
+	}
+	
+	/**
+     * Checks whether a border is drawn between two neighbouring cells: they are in
+     * different areas and at least one of them is part of the puzzle.
+     * @param a row-major index of the first cell, -1 outside the board
+     * @param b row-major index of the second cell, -1 outside the board
+     * @return true if a border separates the cells
+     */
+	private boolean isBorder(int a, int b) {
+		
+		Layout layout = game.getBoard().getLayout();
+		boolean inA = a >= 0 && layout.isCell(a);
+		boolean inB = b >= 0 && layout.isCell(b);
+		
+		return (inA || inB) && (!inA || !inB || this.area(a) != this.area(b));
+	}
+	
+	/**
+     * Checks whether a corner is drawn, i.e. whether one of the four cells around it is
+     * part of the puzzle.
+     * @param i row below the corner
+     * @param j column right of the corner
+     * @return true if the corner is drawn
+     */
+	private boolean corner(int i, int j) {
+		
+		Board board = game.getBoard();
+		int N = board.getSize();
+		
+		for(int r = i - 1 ; r <= i ; r++) {
+			for(int c = j - 1 ; c <= j ; c++) {
+				if(r >= 0 && r < N && c >= 0 && c < N && board.isCell(r, c)) {
+					return true;
+				}
+			}
 		}
 		
-		else if(game.getBoard().getSize() == Board.SIZE_STANDARD) {
-			System.out.println("+---------+---------+---------+");
+		return false;
+	}
+	
+	/**
+     * Prints the units that the board drawing does not show: the diagonals or windows of
+     * the variant, the cage rule of Killer boards or the grid rule of Samurai boards.
+     */
+	private void printExtraUnits() {
+		
+		Layout layout = game.getBoard().getLayout();
+		int N = game.getBoard().getSize();
+		
+		if(layout.getVariant() == Layout.VARIANT_DIAGONAL) {
+			this.out.println("Both diagonals must also hold every number once.");
+		}
+		
+		if(layout.getVariant() == Layout.VARIANT_SAMURAI) {
+			this.out.println("Every row, column and box of each of the five 9x9 grids holds every number once; the corner boxes belong to two grids.");
+		}
+		
+		if(layout.getVariant() == Layout.VARIANT_KILLER) {
+			this.out.println("The numbers of every cage add up to the sum shown in its first cell and never repeat.");
+		}
+		
+		for(int u = 0 ; u < layout.getUnitCount() ; u++) {
+			
+			if(layout.getUnitType(u) == Layout.UNIT_WINDOW) {
+				
+				int[] cells = layout.getUnit(u);
+				int first = cells[0];
+				int last = cells[cells.length - 1];
+				
+				this.out.println("Window " + (layout.getUnitIndex(u) + 1) + ": rows " + (first / N + 1) + "-" + (last / N + 1)
+						+ ", columns " + (first % N + 1) + "-" + (last % N + 1) + " must also hold every number once.");
+			}
+			
 		}
 		
 	}
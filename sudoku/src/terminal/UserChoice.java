@@ -1,6 +1,9 @@
 package terminal;
 
+import java.io.PrintStream;
 import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import core.Board;
 
 /**
@@ -10,18 +13,38 @@ import core.Board;
  */
 public class UserChoice {
 	
+	// Kinds of command
+	public static final int COMMAND_MOVE = 0;		// row,column=value
+	public static final int COMMAND_NOTE = 1;		// row,column+value
+	public static final int COMMAND_SHOW_NOTES = 2;	// notes
+	public static final int COMMAND_REVEAL = 3;		// row,column=?
+	
+	// row,column=value, row,column+value or row,column=?; longer numbers are off every board anyway
+	private static final Pattern COMMAND_FORMAT = Pattern.compile("(\\d{1,4}),(\\d{1,4})(?:([=+])(\\d{1,4})|=(\\?))");
+	
 	// Move values
 	private int value;
 	private int row;
 	private int column;
+	private int command;
+	private final PrintStream out;	// Prompts and errors
 	
 	/**
-     * Default constructor initializes move values to zero.
+     * Default constructor initializes move values to zero, prompting on System.out.
      */
 	public UserChoice() {
+		this(System.out);
+	}
+	
+	/**
+     * Initializes move values to zero.
+     * @param out stream receiving the prompts and error messages
+     */
+	public UserChoice(PrintStream out) {
 		this.value = 0;
 		this.row = 0;
 		this.column = 0;
+		this.out = out;
 	}
 	
 	// Setters
@@ -50,15 +73,30 @@ public class UserChoice {
 		return this.column;
 	}
 	
+	public int getCommand() {
+		return this.command;
+	}
+	
 	 /**
      * Checks whether the move is within the board's bounds.
      * @param size size of the board
      * @return true if row, column, and value are within range
      */
 	public boolean isMoveWithinBounds(int size) {
+		return this.isMoveWithinBounds(size, size);
+	}
+	
+	 /**
+     * Checks whether the move is within the board's bounds, on boards where the values
+     * do not go up to the board size (Samurai boards are 21 cells wide, with values up to 9).
+     * @param size size of the board
+     * @param values largest value
+     * @return true if row, column, and value are within range
+     */
+	public boolean isMoveWithinBounds(int size, int values) {
 				
-		if(this.row < 0 || this.row >= size || this.column < 0 || this.column >= size || this.value < 0 || this.value > size) {
-			System.out.println("Error: i,j or val are outside the allowed range [1.." + size + "]!");
+		if(this.row < 0 || this.row >= size || this.column < 0 || this.column >= size || this.value < 0 || this.value > values) {
+			this.out.println("Error: i,j or val are outside the allowed range [1.." + size + "]" + (values != size ? ", values [1.." + values + "]" : "") + "!");
 			return false;
 		}
 		
@@ -78,7 +116,7 @@ public class UserChoice {
 					
 		if(value == 0 && row == 0 && column == 0) {
 			
-			System.out.println("Are you sure you want to exit? (enter 'Yes' or 'No')");
+			this.out.println("Are you sure you want to exit? (enter 'Yes' or 'No')");
 			String answer;
 			
 			do {
@@ -90,11 +128,11 @@ public class UserChoice {
 		        }
 		        
 		        else if(answer.equalsIgnoreCase("no")){
-		            System.out.println("Exit canceled, continue playing.");
+		            this.out.println("Exit canceled, continue playing.");
 		        }
 				
 		        else {
-		        	 	System.out.println("Invalid input. Please type 'Yes' or 'No'.");
+		        	 	this.out.println("Invalid input. Please type 'Yes' or 'No'.");
 		        	}
 			 
 			} while(!answer.equalsIgnoreCase("yes") && !answer.equalsIgnoreCase("no"));
@@ -110,6 +148,9 @@ public class UserChoice {
      * Expected format: row,column=value
      * Special cases:
      *  - row,column=0 → clears the cell
+     *  - row,column+value → adds or removes a note, row,column+0 clears the notes of the cell
+     *  - row,column=? → reveals the value of the cell (counted as a hint)
+     *  - notes → shows the board with its notes
      *  - 0,0=0 → exit command
      * @param scan Scanner for input
      * @param board Sudoku board for validation
@@ -119,54 +160,68 @@ public class UserChoice {
 				
 		int row, column, value;
 		
-		System.out.println("Enter your command in the following format:");
-		System.out.println("+ row,column=value : enter 'value' at position (row,column), where row and column start from 1");
-		System.out.println("+ row,column=0   : clear the cell at position (row,column)");
-		System.out.println("+ 0,0=0   : exit the game"); 
+		this.out.println("Enter your command in the following format:");
+		this.out.println("+ row,column=value : enter 'value' at position (row,column), where row and column start from 1");
+		this.out.println("+ row,column=0   : clear the cell at position (row,column)");
+		this.out.println("+ row,column+value : add or remove 'value' as a note of (row,column), +0 clears its notes");
+		this.out.println("+ row,column=? : reveal the value of (row,column), counted as a hint");
+		this.out.println("+ notes   : show the board with its notes");
+		this.out.println("+ 0,0=0   : exit the game"); 
 		
 		String input;
-	    String[] parts;
+	    Matcher parts;
 
 	    do {
             
-            do{
-            		System.out.print("Enter input (row,column=value): ");
-            		input = scan.nextLine();
-            } while(input.length() != 5);
+            this.out.print("Enter input (row,column=value): ");
+            input = scan.nextLine().trim();
+            
+            if(input.equalsIgnoreCase("notes")) {
+            		this.command = COMMAND_SHOW_NOTES;
+            		return false;
+            }
+            
+            parts = COMMAND_FORMAT.matcher(input);
+            
+            if(!parts.matches() && !input.isEmpty()) {
+            		this.out.println("Error: invalid input, expected e.g. 3,5=7, 3,5+7 or 3,5=?.");
+            }
             
-            parts = input.split("[,=]");
-        } while (parts.length != 3);
+        } while (!parts.matches());
+        
+        this.command = parts.group(5) != null ? COMMAND_REVEAL : parts.group(3).equals("+") ? COMMAND_NOTE : COMMAND_MOVE;
 
-        row = Integer.parseInt(parts[0]);
-        column = Integer.parseInt(parts[1]);
-        value = Integer.parseInt(parts[2]);
+        row = Integer.parseInt(parts.group(1));
+        column = Integer.parseInt(parts.group(2));
+        value = this.command == COMMAND_REVEAL ? 0 : Integer.parseInt(parts.group(4));
 		
         // Handle exit command
-		if(isExitCommand(row, column, value, scan)) {
-			System.out.println("Exit!");
+		if(this.command == COMMAND_MOVE && isExitCommand(row, column, value, scan)) {
+			this.out.println("Exit!");
 		    return true; 
 		}
 		
-		else if(row > 0 && column > 0) {
+		else if((row > 0 && column > 0) || this.command != COMMAND_MOVE) {		// Notes and reveals outside the board are rejected by the bounds check
 		
 			this.row = row - 1;
 			this.column = column - 1;
 			this.value = value;
 	
 			// Handle clearing a cell
-			if(value == 0) {
+			// Cells off the board or outside the grids of a Samurai board are rejected by the game
+			if(value == 0 && this.command == COMMAND_MOVE && this.row < board.getSize() && this.column < board.getSize() && board.isCell(this.row, this.column)) {
 				
 				if (board.isCellFixed(this.row, this.column)) {
-					System.out.println("Error: cell is fixed and it cannot be modified.");
+					this.out.println("Error: cell is fixed and it cannot be modified.");
 				    return false;
 				}
 				
 				if(board.getValue(this.row, this.column) == 0) {
-					System.out.println("Error: cell is already empty.");
+					this.out.println("Error: cell is already empty.");
 				    return false;
 				}
 				
-				System.out.println("Clearing the cell");
+				this.out.println("Clearing the cell");
 			}
 			
 		}